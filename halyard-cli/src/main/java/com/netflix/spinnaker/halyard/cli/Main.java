@@ -22,6 +22,8 @@ import com.netflix.spinnaker.halyard.cli.command.v1.GlobalOptions;
 import com.netflix.spinnaker.halyard.cli.command.v1.HalCommand;
 import com.netflix.spinnaker.halyard.cli.ui.v1.AnsiUi;
 
+import java.util.Arrays;
+
 
 public class Main {
   public static void main(String[] args) {
@@ -29,7 +31,7 @@ public class Main {
 
     HalCommand hal = new HalCommand();
     JCommander jc = new JCommander(hal);
-    hal.setCommander(jc).configureSubcommands();
+    hal.setCommander(jc).configureSubcommands(HalCommand.requiresAllSubcommands(args) ? null : Arrays.asList(args));
 
     try {
       jc.parse(args);
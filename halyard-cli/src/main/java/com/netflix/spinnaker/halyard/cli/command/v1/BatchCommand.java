@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.command.v1;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+import com.netflix.spinnaker.halyard.cli.command.v1.config.AbstractConfigCommand;
+import com.netflix.spinnaker.halyard.cli.services.v1.Daemon;
+import com.netflix.spinnaker.halyard.cli.services.v1.OperationHandler;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@Parameters(separators = "=")
+public class BatchCommand extends NestableCommand {
+  @Getter(AccessLevel.PUBLIC)
+  private String commandName = "batch";
+
+  @Getter(AccessLevel.PUBLIC)
+  private String shortDescription = "Run many `hal config` commands as a single change to your halconfig.";
+
+  @Getter(AccessLevel.PUBLIC)
+  private String longDescription = String.join(" ",
+      "Reads `hal config` commands, one per line, and runs them as one transaction. Every command",
+      "is parsed before any is sent, and each sees the edits made by the ones before it, but your",
+      "halconfig is only validated and written once all have succeeded. If any command fails,",
+      "none of the batch's edits are kept. Blank lines and lines starting with # are ignored, and",
+      "the leading `hal` on each line is optional."
+  );
+
+  @Parameter(
+      names = { "-f", "--file" },
+      description = "The file to read commands from. Defaults to stdin."
+  )
+  private String file;
+
+  @Parameter(names = { "--no-validate" }, description = "Skip validation.")
+  private boolean noValidate = false;
+
+  @Override
+  protected void executeThis() {
+    List<NestableCommand> commands = parseCommands(readLines());
+    if (commands.isEmpty()) {
+      return;
+    }
+
+    String batchId = new OperationHandler<String>()
+        .setFailureMesssage("Failed to start a batch.")
+        .setOperation(Daemon.openBatch())
+        .get();
+
+    // A failed command exits straight away, don't leave its batch behind.
+    Thread abortHook = new Thread(() -> {
+      try {
+        Daemon.setBatch(null);
+        Daemon.abortBatch(batchId);
+      } catch (Exception ignored) {
+        // The daemon expires abandoned batches anyway.
+      }
+    });
+    Runtime.getRuntime().addShutdownHook(abortHook);
+
+    Daemon.setBatch(batchId);
+    try {
+      for (NestableCommand command : commands) {
+        command.execute();
+      }
+    } finally {
+      Daemon.setBatch(null);
+    }
+
+    Runtime.getRuntime().removeShutdownHook(abortHook);
+
+    new OperationHandler<Void>()
+        .setFailureMesssage("Failed to apply the batch of " + commands.size() + " commands.")
+        .setSuccessMessage("Applied the batch of " + commands.size() + " commands.")
+        .setOperation(Daemon.commitBatch(batchId, !noValidate))
+        .get();
+  }
+
+  private List<String> readLines() {
+    List<String> lines = new ArrayList<>();
+    try (InputStream in = file == null ? System.in : new FileInputStream(file);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read commands from " + (file == null ? "stdin" : file) + ": " + e.getMessage(), e);
+    }
+
+    return lines;
+  }
+
+  private static List<NestableCommand> parseCommands(List<String> lines) {
+    List<NestableCommand> commands = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      List<String> args = tokenize(line, i + 1);
+      if (!args.isEmpty() && args.get(0).equals("hal")) {
+        args.remove(0);
+      }
+
+      HalCommand hal = new HalCommand();
+      JCommander jc = new JCommander(hal);
+      hal.setCommander(jc).configureSubcommands(args);
+
+      try {
+        jc.parse(args.toArray(new String[0]));
+      } catch (ParameterException e) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+      }
+
+      if (!"config".equals(jc.getParsedCommand())) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": only `hal config` commands can be batched.");
+      }
+
+      // The whole halconfig is validated once, when the batch is committed.
+      NestableCommand command = hal.getParsedCommand();
+      if (command instanceof AbstractConfigCommand) {
+        ((AbstractConfigCommand) command).noValidate = true;
+      }
+
+      commands.add(hal);
+    }
+
+    return commands;
+  }
+
+  /**
+   * Splits a line into arguments the way a shell would, honoring single quotes, double quotes and backslashes.
+   */
+  static List<String> tokenize(String line, int lineNumber) {
+    List<String> result = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    boolean inToken = false;
+    char quote = 0;
+
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        } else if (c == '\\' && quote == '"' && i + 1 < line.length()) {
+          current.append(line.charAt(++i));
+        } else {
+          current.append(c);
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+        inToken = true;
+      } else if (c == '\\' && i + 1 < line.length()) {
+        current.append(line.charAt(++i));
+        inToken = true;
+      } else if (Character.isWhitespace(c)) {
+        if (inToken) {
+          result.add(current.toString());
+          current.setLength(0);
+          inToken = false;
+        }
+      } else {
+        current.append(c);
+        inToken = true;
+      }
+    }
+
+    if (quote != 0) {
+      throw new IllegalArgumentException("Line " + lineNumber + ": unterminated " + quote + " quote.");
+    }
+
+    if (inToken) {
+      result.add(current.toString());
+    }
+
+    return result;
+  }
+}
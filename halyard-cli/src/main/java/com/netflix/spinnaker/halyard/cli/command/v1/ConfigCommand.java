@@ -37,15 +37,15 @@ public class ConfigCommand extends NestableCommand {
   private String description = "Configure, validate, and view your halconfig.";
 
   ConfigCommand() {
-    registerSubcommand(new DeploymentEnvironmentCommand());
-    registerSubcommand(new FeaturesCommand());
-    registerSubcommand(new GenerateCommand());
-    registerSubcommand(new MetricStoresCommand());
-    registerSubcommand(new PersistentStorageCommand());
-    registerSubcommand(new ProviderCommand());
-    registerSubcommand(new SecurityCommand());
-    registerSubcommand(new VersionConfigCommand());
-    registerSubcommand(new CiCommand());
+    registerSubcommand("deploy", DeploymentEnvironmentCommand::new);
+    registerSubcommand("features", FeaturesCommand::new);
+    registerSubcommand("generate", GenerateCommand::new);
+    registerSubcommand("metric-stores", MetricStoresCommand::new);
+    registerSubcommand("storage", PersistentStorageCommand::new);
+    registerSubcommand("provider", ProviderCommand::new);
+    registerSubcommand("security", SecurityCommand::new);
+    registerSubcommand("version", VersionConfigCommand::new);
+    registerSubcommand("ci", CiCommand::new);
   }
 
   @Override
@@ -22,6 +22,7 @@ import com.netflix.spinnaker.halyard.cli.services.v1.Daemon;
 import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -68,10 +69,19 @@ public class HalCommand extends NestableCommand {
   private boolean docs;
 
   public HalCommand() {
-    registerSubcommand(new AdminCommand());
-    registerSubcommand(new ConfigCommand());
-    registerSubcommand(new DeployCommand());
-    registerSubcommand(new VersionCommand());
+    registerSubcommand("admin", AdminCommand::new);
+    registerSubcommand("batch", BatchCommand::new);
+    registerSubcommand("config", ConfigCommand::new);
+    registerSubcommand("deploy", DeployCommand::new);
+    registerSubcommand("version", VersionCommand::new);
+    registerSubcommand("task", TaskCommand::new);
+  }
+
+  /**
+   * The docs & bash completion are generated from the full command tree, so every subcommand must be configured.
+   */
+  public static boolean requiresAllSubcommands(String[] args) {
+    return Arrays.stream(args).anyMatch(a -> a.equals("--docs") || a.equals("--print-bash-completion"));
   }
 
   private String getVersion() {
@@ -36,6 +36,7 @@ import retrofit.RetrofitError;
 import java.net.ConnectException;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Parameters(separators = "=")
 public abstract class NestableCommand {
@@ -106,10 +107,18 @@ public abstract class NestableCommand {
         safeExecuteThis();
       }
     } else {
-      subcommands.get(subCommand).execute();
+      getSubcommand(subCommand).execute();
     }
   }
 
+  /**
+   * @return the command that execute() runs once arguments have been parsed, i.e. the last in the chain.
+   */
+  public NestableCommand getParsedCommand() {
+    String subCommand = commander.getParsedCommand();
+    return subCommand == null ? this : getSubcommand(subCommand).getParsedCommand();
+  }
+
   protected List<String> options(String fieldName) {
     return new ArrayList<>();
   }
@@ -200,7 +209,7 @@ public abstract class NestableCommand {
       usage += " [parameters]";
     }
 
-    if (!subcommands.isEmpty()) {
+    if (!getSubcommandNames().isEmpty()) {
       usage += " [subcommands]";
     }
 
@@ -253,9 +262,9 @@ public abstract class NestableCommand {
       }
     }
 
-    if (!subcommands.isEmpty()) {
+    if (!getSubcommandNames().isEmpty()) {
       int maxLen = -1;
-      for (String key : subcommands.keySet()) {
+      for (String key : getSubcommandNames()) {
         if (key.length() > maxLen) {
           maxLen = key.length();
         }
@@ -265,7 +274,7 @@ public abstract class NestableCommand {
       paragraph.addSnippet("SUBCOMMANDS").addStyle(AnsiStyle.BOLD);
       story.addNewline();
 
-      List<String> keys = new ArrayList<>(subcommands.keySet());
+      List<String> keys = new ArrayList<>(getSubcommandNames());
       keys.sort(String::compareTo);
 
       for (String key : keys) {
@@ -273,7 +282,7 @@ public abstract class NestableCommand {
         paragraph.addSnippet(key).addStyle(AnsiStyle.BOLD);
 
         paragraph = story.addParagraph().setIndentWidth(indentWidth * 2);
-        NestableCommand subcommand = subcommands.get(key);
+        NestableCommand subcommand = getSubcommand(key);
         String shortDescription = subcommand.getShortDescription() != null ? subcommand.getShortDescription() : subcommand.getDescription();
         paragraph.addSnippet(shortDescription);
         story.addNewline();
@@ -319,8 +328,8 @@ public abstract class NestableCommand {
     commandDocs(body);
     commandLink(toc);
 
-    for (NestableCommand command : subcommands.values()) {
-      command.nestedCommandDocs(toc, body);
+    for (String name : getSubcommandNames()) {
+      getSubcommand(name).nestedCommandDocs(toc, body);
     }
   }
 
@@ -367,7 +376,7 @@ public abstract class NestableCommand {
       result.append(" [parameters]");
     }
 
-    if (!subcommands.isEmpty()) {
+    if (!getSubcommandNames().isEmpty()) {
       result.append(" [subcommands]");
     }
 
@@ -407,14 +416,14 @@ public abstract class NestableCommand {
       }
     }
 
-    if (!subcommands.isEmpty()) {
+    if (!getSubcommandNames().isEmpty()) {
       result.append("#### Subcommands\n");
 
-      List<String> keys = new ArrayList<>(subcommands.keySet());
+      List<String> keys = new ArrayList<>(getSubcommandNames());
       keys.sort(String::compareTo);
 
       for (String key : keys) {
-        NestableCommand subcommand = subcommands.get(key);
+        NestableCommand subcommand = getSubcommand(key);
         String shortDescription = subcommand.getShortDescription() != null ? subcommand.getShortDescription() : subcommand.getDescription();
 
         result.append(" * ")
@@ -470,9 +479,8 @@ public abstract class NestableCommand {
         .map(ParameterDescription::getLongestName)
         .reduce("", (a, b) -> a + " " + b);
 
-    String subcommandNames = subcommands.entrySet()
+    String subcommandNames = getSubcommandNames()
         .stream()
-        .map(Map.Entry::getKey)
         .reduce("", (a, b) -> a + " " + b);
 
     bindings.put("subcommands", subcommandNames);
@@ -481,9 +489,9 @@ public abstract class NestableCommand {
     bindings.put("depth", depth + "");
     bindings.put("next", (depth + 1) + "");
 
-    String subCases = subcommands.entrySet()
+    String subCases = getSubcommandNames()
         .stream()
-        .map(c -> c.getValue().commandCompletorCase(depth + 1))
+        .map(n -> getSubcommand(n).commandCompletorCase(depth + 1))
         .reduce("", (a, b) -> a + b);
 
     bindings.put("recurse", subCases.isEmpty() ? ":" : subCases);
@@ -509,35 +517,74 @@ public abstract class NestableCommand {
     return null;
   }
 
-  private Map<String, NestableCommand> subcommands = new HashMap<>();
+  private Map<String, Supplier<? extends NestableCommand>> subcommands = new HashMap<>();
+
+  private Map<String, NestableCommand> instantiatedSubcommands = new HashMap<>();
 
   protected void registerSubcommand(NestableCommand subcommand) {
-    String subcommandName = subcommand.getCommandName();
+    registerSubcommand(subcommand.getCommandName(), () -> subcommand);
+  }
+
+  /**
+   * Register a subcommand that is only instantiated once it is needed, i.e. when it appears on the command line, or
+   * when the whole tree is walked for docs & completion. Use this for subcommands with large trees of their own.
+   */
+  protected void registerSubcommand(String subcommandName, Supplier<? extends NestableCommand> subcommand) {
     if (subcommands.containsKey(subcommandName)) {
       throw new RuntimeException("Unable to register duplicate subcommand " + subcommandName + " for command " + getCommandName());
     }
     subcommands.put(subcommandName, subcommand);
   }
 
+  protected Set<String> getSubcommandNames() {
+    return subcommands.keySet();
+  }
+
+  protected NestableCommand getSubcommand(String subcommandName) {
+    return instantiatedSubcommands.computeIfAbsent(subcommandName, n -> {
+      NestableCommand subcommand = subcommands.get(n).get();
+      if (!subcommand.getCommandName().equals(n)) {
+        throw new RuntimeException("Subcommand " + subcommand.getCommandName() + " was registered as " + n + " for command " + getCommandName());
+      }
+      return subcommand;
+    });
+  }
+
   /**
    * Register all subcommands with this class's commander, and then recursively set the subcommands, configuring their
    * command names along the way.
    */
   public void configureSubcommands() {
+    configureSubcommands(null);
+  }
+
+  /**
+   * Only register the subcommands that appear in args (and recursively, theirs). Since JCommander can only parse a
+   * token as a subcommand if it is one of the registered names, this parses args exactly as configuring the whole tree
+   * would, without instantiating and configuring the hundreds of commands the user didn't ask for.
+   *
+   * @param args are the command-line arguments, or null to configure every subcommand.
+   */
+  public void configureSubcommands(Collection<String> args) {
     if (fullCommandName.isEmpty()) {
       fullCommandName = getCommandName();
     }
 
-    for (NestableCommand subCommand: subcommands.values()) {
-      subCommand.fullCommandName = fullCommandName + " " + subCommand.getCommandName();
+    for (String subcommandName : getSubcommandNames()) {
+      if (args != null && !args.contains(subcommandName)) {
+        continue;
+      }
+
+      NestableCommand subCommand = getSubcommand(subcommandName);
+      subCommand.fullCommandName = fullCommandName + " " + subcommandName;
 
-      commander.addCommand(subCommand.getCommandName(), subCommand);
+      commander.addCommand(subcommandName, subCommand);
 
       // We need to provide the subcommand with its own commander before recursively populating its subcommands, since
       // they need to be registered with this subcommander we retrieve here.
-      JCommander subCommander = commander.getCommands().get(subCommand.getCommandName());
+      JCommander subCommander = commander.getCommands().get(subcommandName);
       subCommand.setCommander(subCommander);
-      subCommand.configureSubcommands();
+      subCommand.configureSubcommands(args);
     }
   }
 
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.command.v1;
+
+import com.beust.jcommander.Parameters;
+import com.netflix.spinnaker.halyard.cli.command.v1.task.AttachTaskCommand;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+@Parameters(separators = "=")
+public class TaskCommand extends NestableCommand {
+  @Getter(AccessLevel.PUBLIC)
+  private String commandName = "task";
+
+  @Getter(AccessLevel.PUBLIC)
+  private String shortDescription = "Inspect the tasks the daemon is running or has recently run.";
+
+  @Getter(AccessLevel.PUBLIC)
+  private String longDescription = String.join(" ",
+      "Every command that asks the daemon to do something runs as a task with its own ID.",
+      "The daemon keeps a journal of its tasks, so if it restarts, or you lose your connection",
+      "to it, you can still find out what happened to a task using these commands. Run",
+      "`hal --tasks` to list the tasks the daemon is tracking."
+  );
+
+  public TaskCommand() {
+    registerSubcommand(new AttachTaskCommand());
+  }
+
+  @Override
+  protected void executeThis() {
+    showHelp();
+  }
+}
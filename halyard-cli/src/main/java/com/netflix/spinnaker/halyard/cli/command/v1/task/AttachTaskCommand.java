@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.command.v1.task;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.netflix.spinnaker.halyard.cli.command.v1.NestableCommand;
+import com.netflix.spinnaker.halyard.cli.services.v1.Daemon;
+import com.netflix.spinnaker.halyard.cli.services.v1.OperationHandler;
+import com.netflix.spinnaker.halyard.cli.ui.v1.AnsiFormatUtils;
+import com.netflix.spinnaker.halyard.cli.ui.v1.AnsiPrinter;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Parameters(separators = "=")
+public class AttachTaskCommand extends NestableCommand {
+  @Parameter(description = "The ID of the task to attach to.", arity = 1)
+  List<String> uuids = new ArrayList<>();
+
+  @Getter(AccessLevel.PUBLIC)
+  private String commandName = "attach";
+
+  @Getter(AccessLevel.PUBLIC)
+  private String shortDescription = "Follow a task's progress until it completes, and print its result.";
+
+  @Getter(AccessLevel.PUBLIC)
+  private String longDescription = String.join(" ",
+      "Attaches to a task the daemon is running or has recently run, e.g. one started by",
+      "a command you interrupted or lost your connection during. If the daemon restarted",
+      "while the task was running, the task is reported as having failed for that reason."
+  );
+
+  @Override
+  public String getMainParameter() {
+    return "TASK_ID";
+  }
+
+  public String getUuid() {
+    switch (uuids.size()) {
+      case 0:
+        throw new IllegalArgumentException("No task ID supplied");
+      case 1:
+        return uuids.get(0);
+      default:
+        throw new IllegalArgumentException("More than one task ID supplied");
+    }
+  }
+
+  @Override
+  protected void executeThis() {
+    String uuid = getUuid();
+    Object result = new OperationHandler<Object>()
+        .setOperation(Daemon.attachTask(uuid))
+        .setFailureMesssage("Task " + uuid + " failed.")
+        .setSuccessMessage("Task " + uuid + " completed.")
+        .get();
+
+    // Results arrive as plain maps, lists and strings, only maps are worth formatting.
+    AnsiFormatUtils.Format format = result instanceof Map ? AnsiFormatUtils.Format.YAML : AnsiFormatUtils.Format.STRING;
+    String formatted = AnsiFormatUtils.format(format, result);
+    if (!formatted.isEmpty()) {
+      AnsiPrinter.println(formatted);
+    }
+  }
+}
@@ -16,8 +16,13 @@
 
 package com.netflix.spinnaker.halyard.cli.services.v1;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.spinnaker.halyard.cli.command.v1.GlobalOptions;
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigBatch;
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigVersion;
 import com.netflix.spinnaker.halyard.config.model.v1.node.*;
 import com.netflix.spinnaker.halyard.config.model.v1.security.*;
 import com.netflix.spinnaker.halyard.core.DaemonOptions;
@@ -25,14 +30,23 @@ import com.netflix.spinnaker.halyard.core.RemoteAction;
 import com.netflix.spinnaker.halyard.core.registry.v1.BillOfMaterials;
 import com.netflix.spinnaker.halyard.core.registry.v1.Versions;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskDelta;
 import com.netflix.spinnaker.halyard.deploy.deployment.v1.DeployOption;
 import com.netflix.spinnaker.halyard.deploy.spinnaker.v1.RunningServiceDetails;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
 import lombok.extern.slf4j.Slf4j;
 import retrofit.RestAdapter;
+import retrofit.RetrofitError;
+import retrofit.client.Header;
 import retrofit.client.OkClient;
+import retrofit.client.Response;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 @Slf4j
@@ -41,19 +55,38 @@ public class Daemon {
     return getService().getTasks();
   }
 
+  public static Supplier<String> openBatch() {
+    return () -> getService().openBatch("").get("id");
+  }
+
+  public static Supplier<Void> commitBatch(String batchId, boolean validate) {
+    return () -> {
+      ResponseUnwrapper.get(getService().commitBatch(batchId, validate, ""));
+      return null;
+    };
+  }
+
+  public static void abortBatch(String batchId) {
+    getService().abortBatch(batchId);
+  }
+
+  /**
+   * Makes every following request part of the given batch, or of none when null.
+   */
+  public static void setBatch(String batchId) {
+    Daemon.batchId = batchId;
+  }
+
   public static boolean isHealthy() {
     return getService().getHealth().get("status").equalsIgnoreCase("up");
   }
 
   public static Supplier<String> getCurrentDeployment() {
-    return () -> ResponseUnwrapper.get(getService().getCurrentDeployment());
+    return cachedRead(false, String.class, () -> getService().getCurrentDeployment(true), "getCurrentDeployment");
   }
 
   public static Supplier<DeploymentEnvironment> getDeploymentEnvironment(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawDeploymentEnvironment = ResponseUnwrapper.get(getService().getDeploymentEnvironment(deploymentName, validate));
-      return getObjectMapper().convertValue(rawDeploymentEnvironment, DeploymentEnvironment.class);
-    };
+    return cachedRead(validate, DeploymentEnvironment.class, () -> getService().getDeploymentEnvironment(deploymentName, validate, !validate), "getDeploymentEnvironment", deploymentName);
   }
 
   public static Supplier<Void> setDeploymentEnvironment(String deploymentName, boolean validate, DeploymentEnvironment deploymentEnvironment) {
@@ -64,10 +97,7 @@ public class Daemon {
   }
 
   public static Supplier<BakeryDefaults> getBakeryDefaults(String deploymentName, String providerName, boolean validate) {
-    return () -> {
-      Object rawBakeryDefaults = ResponseUnwrapper.get(getService().getBakeryDefaults(deploymentName, providerName, validate));
-      return getObjectMapper().convertValue(rawBakeryDefaults, Providers.translateBakeryDefaultsType(providerName));
-    };
+    return cachedRead(validate, Providers.translateBakeryDefaultsType(providerName), () -> getService().getBakeryDefaults(deploymentName, providerName, validate, !validate), "getBakeryDefaults", deploymentName, providerName);
   }
 
   public static Supplier<Void> setBakeryDefaults(String deploymentName, String providerName, boolean validate, BakeryDefaults bakeryDefaults) {
@@ -78,10 +108,7 @@ public class Daemon {
   }
 
   public static Supplier<Features> getFeatures(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawFeatures = ResponseUnwrapper.get(getService().getFeatures(deploymentName, validate));
-      return getObjectMapper().convertValue(rawFeatures, Features.class);
-    };
+    return cachedRead(validate, Features.class, () -> getService().getFeatures(deploymentName, validate, !validate), "getFeatures", deploymentName);
   }
 
   public static Supplier<Void> setFeatures(String deploymentName, boolean validate, Features features) {
@@ -92,10 +119,7 @@ public class Daemon {
   }
 
   public static Supplier<PersistentStorage> getPersistentStorage(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawStorage = ResponseUnwrapper.get(getService().getPersistentStorage(deploymentName, validate));
-      return getObjectMapper().convertValue(rawStorage, PersistentStorage.class);
-    };
+    return cachedRead(validate, PersistentStorage.class, () -> getService().getPersistentStorage(deploymentName, validate, !validate), "getPersistentStorage", deploymentName);
   }
 
   public static Supplier<Void> setPersistentStorage(String deploymentName, boolean validate, PersistentStorage persistentStorage) {
@@ -106,10 +130,7 @@ public class Daemon {
   }
 
   public static Supplier<BaseImage> getBaseImage(String deploymentName, String providerName, String baseImageId, boolean validate) {
-    return () -> {
-      Object rawBaseImage = ResponseUnwrapper.get(getService().getBaseImage(deploymentName, providerName, baseImageId, validate));
-      return getObjectMapper().convertValue(rawBaseImage, Providers.translateBaseImageType(providerName));
-    };
+    return cachedRead(validate, Providers.translateBaseImageType(providerName), () -> getService().getBaseImage(deploymentName, providerName, baseImageId, validate, !validate), "getBaseImage", deploymentName, providerName, baseImageId);
   }
 
   public static Supplier<Void> addBaseImage(String deploymentName, String providerName, boolean validate, BaseImage baseImage) {
@@ -134,10 +155,7 @@ public class Daemon {
   }
 
   public static Supplier<Account> getAccount(String deploymentName, String providerName, String accountName, boolean validate) {
-    return () -> {
-      Object rawAccount = ResponseUnwrapper.get(getService().getAccount(deploymentName, providerName, accountName, validate));
-      return getObjectMapper().convertValue(rawAccount, Providers.translateAccountType(providerName));
-    };
+    return cachedRead(validate, Providers.translateAccountType(providerName), () -> getService().getAccount(deploymentName, providerName, accountName, validate, !validate), "getAccount", deploymentName, providerName, accountName);
   }
 
   public static Supplier<Void> addAccount(String deploymentName, String providerName, boolean validate, Account account) {
@@ -164,22 +182,23 @@ public class Daemon {
   public static Supplier<List<String>> getNewAccountOptions(String deploymentName, String providerName, String fieldName, Account account) {
     return () -> {
       DaemonOptions<Account> accountOptions = new DaemonOptions<Account>().setField(fieldName).setResource(account);
-      return ResponseUnwrapper.get(getService().getNewAccountOptions(deploymentName, providerName, accountOptions));
+      String key = cacheKey("getNewAccountOptions", deploymentName, providerName, fieldName, toJson(account));
+      return ResponseCache.<List>get(key, List.class, OPTIONS_MAX_AGE_MILLIS,
+          () -> ResponseUnwrapper.get(getService().getNewAccountOptions(deploymentName, providerName, accountOptions)));
     };
   }
 
   public static Supplier<List<String>> getExistingAccountOptions(String deploymentName, String providerName, String accountName, String fieldName) {
     return () -> {
       DaemonOptions<Void> accountOptions = new DaemonOptions<Void>().setField(fieldName);
-      return ResponseUnwrapper.get(getService().getExistingAccountOptions(deploymentName, providerName, accountName, accountOptions));
+      String key = cacheKey("getExistingAccountOptions", deploymentName, providerName, accountName, fieldName);
+      return ResponseCache.<List>get(key, List.class, OPTIONS_MAX_AGE_MILLIS,
+          () -> ResponseUnwrapper.get(getService().getExistingAccountOptions(deploymentName, providerName, accountName, accountOptions)));
     };
   }
 
   public static Supplier<Provider> getProvider(String deploymentName, String providerName, boolean validate) {
-    return () -> {
-      Object provider = ResponseUnwrapper.get(getService().getProvider(deploymentName, providerName, validate));
-      return getObjectMapper().convertValue(provider, Providers.translateProviderType(providerName));
-    };
+    return cachedRead(validate, Providers.translateProviderType(providerName), () -> getService().getProvider(deploymentName, providerName, validate, !validate), "getProvider", deploymentName, providerName);
   }
 
   public static Supplier<Void> setProviderEnableDisable(String deploymentName, String providerName, boolean validate, boolean enable) {
@@ -190,10 +209,7 @@ public class Daemon {
   }
 
   public static Supplier<Master> getMaster(String deploymentName, String ciName, String masterName, boolean validate) {
-    return () -> {
-      Object rawMaster = ResponseUnwrapper.get(getService().getMaster(deploymentName, ciName, masterName, validate));
-      return getObjectMapper().convertValue(rawMaster, Cis.translateMasterType(ciName));
-    };
+    return cachedRead(validate, Cis.translateMasterType(ciName), () -> getService().getMaster(deploymentName, ciName, masterName, validate, !validate), "getMaster", deploymentName, ciName, masterName);
   }
 
   public static Supplier<Void> addMaster(String deploymentName, String ciName, boolean validate, Master master) {
@@ -218,10 +234,7 @@ public class Daemon {
   }
 
   public static Supplier<Ci> getCi(String deploymentName, String ciName, boolean validate) {
-    return () -> {
-      Object ci = ResponseUnwrapper.get(getService().getCi(deploymentName, ciName, validate));
-      return getObjectMapper().convertValue(ci, Cis.translateCiType(ciName));
-    };
+    return cachedRead(validate, Cis.translateCiType(ciName), () -> getService().getCi(deploymentName, ciName, validate, !validate), "getCi", deploymentName, ciName);
   }
 
   public static Supplier<Void> setCiEnableDisable(String deploymentName, String ciName, boolean validate, boolean enable) {
@@ -239,10 +252,7 @@ public class Daemon {
   }
 
   public static Supplier<RemoteAction> deployDeployment(String deploymentName, boolean validate, List<DeployOption> deployOptions, List<String> serviceNames) {
-    return () -> {
-      Object rawDeployResult = ResponseUnwrapper.get(getService().deployDeployment(deploymentName, validate, deployOptions, serviceNames, ""));
-      return getObjectMapper().convertValue(rawDeployResult, RemoteAction.class);
-    };
+    return () -> ResponseUnwrapper.get(getService().deployDeployment(deploymentName, validate, deployOptions, serviceNames, ""), RemoteAction.class);
   }
 
   public static Supplier<Void> rollbackDeployment(String deploymentName, boolean validate, List<String> serviceNames) {
@@ -253,17 +263,11 @@ public class Daemon {
   }
 
   public static Supplier<NodeDiff> configDiff(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawDiff = ResponseUnwrapper.get(getService().configDiff(deploymentName, validate));
-      return getObjectMapper().convertValue(rawDiff, NodeDiff.class);
-    };
+    return () -> ResponseUnwrapper.get(getService().configDiff(deploymentName, validate), NodeDiff.class);
   }
 
   public static Supplier<MetricStores> getMetricStores(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawMetricStores = ResponseUnwrapper.get(getService().getMetricStores(deploymentName, validate));
-      return getObjectMapper().convertValue(rawMetricStores, MetricStores.class);
-    };
+    return cachedRead(validate, MetricStores.class, () -> getService().getMetricStores(deploymentName, validate, !validate), "getMetricStores", deploymentName);
   }
 
   public static Supplier<Void> setMetricStores(String deploymentName, boolean validate, MetricStores metricStores) {
@@ -274,10 +278,7 @@ public class Daemon {
   }
 
   public static Supplier<MetricStore> getMetricStore(String deploymentName, String metricStoreType, boolean validate) {
-    return () -> {
-      Object rawMetricStore = ResponseUnwrapper.get(getService().getMetricStore(deploymentName, metricStoreType, validate));
-      return getObjectMapper().convertValue(rawMetricStore, MetricStores.translateMetricStoreType(metricStoreType));
-    };
+    return cachedRead(validate, MetricStores.translateMetricStoreType(metricStoreType), () -> getService().getMetricStore(deploymentName, metricStoreType, validate, !validate), "getMetricStore", deploymentName, metricStoreType);
   }
 
   public static Supplier<Void> setMetricStore(String deploymentName, String metricStoreType, boolean validate, MetricStore metricStore) {
@@ -296,10 +297,7 @@ public class Daemon {
   }
 
   public static Supplier<Security> getSecurity(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawSecurity = ResponseUnwrapper.get(getService().getSecurity(deploymentName, validate));
-      return getObjectMapper().convertValue(rawSecurity, Security.class);
-    };
+    return cachedRead(validate, Security.class, () -> getService().getSecurity(deploymentName, validate, !validate), "getSecurity", deploymentName);
   }
 
   public static Supplier<Void> setSecurity(String deploymentName, boolean validate, Security security) {
@@ -310,10 +308,7 @@ public class Daemon {
   }
 
   public static Supplier<ApiSecurity> getApiSecurity(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawApiSecurity = ResponseUnwrapper.get(getService().getApiSecurity(deploymentName, validate));
-      return getObjectMapper().convertValue(rawApiSecurity, ApiSecurity.class);
-    };
+    return cachedRead(validate, ApiSecurity.class, () -> getService().getApiSecurity(deploymentName, validate, !validate), "getApiSecurity", deploymentName);
   }
 
   public static Supplier<Void> setApiSecurity(String deploymentName, boolean validate, ApiSecurity apiSecurity) {
@@ -324,10 +319,7 @@ public class Daemon {
   }
 
   public static Supplier<SpringSsl> getSpringSsl(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawSpringSsl = ResponseUnwrapper.get(getService().getSpringSsl(deploymentName, validate));
-      return getObjectMapper().convertValue(rawSpringSsl, SpringSsl.class);
-    };
+    return cachedRead(validate, SpringSsl.class, () -> getService().getSpringSsl(deploymentName, validate, !validate), "getSpringSsl", deploymentName);
   }
 
   public static Supplier<Void> setSpringSsl(String deploymentName, boolean validate, SpringSsl apacheSsl) {
@@ -345,10 +337,7 @@ public class Daemon {
   }
 
   public static Supplier<UiSecurity> getUiSecurity(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawUiSecurity = ResponseUnwrapper.get(getService().getUiSecurity(deploymentName, validate));
-      return getObjectMapper().convertValue(rawUiSecurity, UiSecurity.class);
-    };
+    return cachedRead(validate, UiSecurity.class, () -> getService().getUiSecurity(deploymentName, validate, !validate), "getUiSecurity", deploymentName);
   }
 
   public static Supplier<Void> setUiSecurity(String deploymentName, boolean validate, UiSecurity uiSecurity) {
@@ -359,10 +348,7 @@ public class Daemon {
   }
 
   public static Supplier<ApacheSsl> getApacheSsl(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawApacheSsl = ResponseUnwrapper.get(getService().getApacheSsl(deploymentName, validate));
-      return getObjectMapper().convertValue(rawApacheSsl, ApacheSsl.class);
-    };
+    return cachedRead(validate, ApacheSsl.class, () -> getService().getApacheSsl(deploymentName, validate, !validate), "getApacheSsl", deploymentName);
   }
 
   public static Supplier<Void> setApacheSsl(String deploymentName, boolean validate, ApacheSsl apacheSsl) {
@@ -380,10 +366,7 @@ public class Daemon {
   }
 
   public static Supplier<AuthnMethod> getAuthnMethod(String deploymentName, String methodName, boolean validate) {
-    return () -> {
-      Object rawOAuth2 = ResponseUnwrapper.get(getService().getAuthnMethod(deploymentName, methodName, validate));
-      return getObjectMapper().convertValue(rawOAuth2, AuthnMethod.translateAuthnMethodName(methodName));
-    };
+    return cachedRead(validate, AuthnMethod.translateAuthnMethodName(methodName), () -> getService().getAuthnMethod(deploymentName, methodName, validate, !validate), "getAuthnMethod", deploymentName, methodName);
   }
 
   public static Supplier<Void> setAuthnMethod(String deploymentName, String methodName, boolean validate, AuthnMethod authnMethod) {
@@ -401,17 +384,11 @@ public class Daemon {
   }
 
   public static Supplier<GroupMembership> getGroupMembership(String deploymentName, boolean validate) {
-    return () -> {
-      Object rawGroupMembership = ResponseUnwrapper.get(getService().getGroupMembership(deploymentName, validate));
-      return getObjectMapper().convertValue(rawGroupMembership, GroupMembership.class);
-    };
+    return cachedRead(validate, GroupMembership.class, () -> getService().getGroupMembership(deploymentName, validate, !validate), "getGroupMembership", deploymentName);
   }
 
   public static Supplier<RoleProvider> getRoleProvider(String deploymentName, String roleProviderName, boolean validate) {
-    return () -> {
-      Object rawRoleProvider = ResponseUnwrapper.get(getService().getRoleProvider(deploymentName, roleProviderName, validate));
-      return getObjectMapper().convertValue(rawRoleProvider, GroupMembership.translateRoleProviderType(roleProviderName));
-    };
+    return cachedRead(validate, GroupMembership.translateRoleProviderType(roleProviderName), () -> getService().getRoleProvider(deploymentName, roleProviderName, validate, !validate), "getRoleProvider", deploymentName, roleProviderName);
   }
 
   public static Supplier<Void> setRoleProvider(String deploymentName, String roleProviderName, boolean validate, RoleProvider authnMethod) {
@@ -436,10 +413,7 @@ public class Daemon {
   }
 
   public static Supplier<Versions> getVersions() {
-    return () -> {
-      Object rawVersions = ResponseUnwrapper.get(getService().getVersions());
-      return getObjectMapper().convertValue(rawVersions, Versions.class);
-    };
+    return () -> ResponseUnwrapper.get(getService().getVersions(), Versions.class);
   }
 
   public static Supplier<String> getLatest() {
@@ -447,17 +421,11 @@ public class Daemon {
   }
 
   public static Supplier<RunningServiceDetails> getServiceDetails(String deploymentName, String serviceName, boolean validate) {
-    return () -> {
-      Object rawDetails = ResponseUnwrapper.get(getService().getServiceDetails(deploymentName, serviceName, validate));
-      return getObjectMapper().convertValue(rawDetails, RunningServiceDetails.class);
-    };
+    return () -> ResponseUnwrapper.get(getService().getServiceDetails(deploymentName, serviceName, validate), RunningServiceDetails.class);
   }
 
   public static Supplier<BillOfMaterials> getBillOfMaterials(String version) {
-    return () -> {
-      Object rawBillOfMaterials = ResponseUnwrapper.get(getService().getBillOfMaterials(version));
-      return getObjectMapper().convertValue(rawBillOfMaterials, BillOfMaterials.class);
-    };
+    return () -> ResponseUnwrapper.get(getService().getBillOfMaterials(version), BillOfMaterials.class);
   }
 
   public static Supplier<Void> publishProfile(String bomPath, String artifactName, String profilePath) {
@@ -475,7 +443,7 @@ public class Daemon {
   }
 
   public static Supplier<String> getVersion(String deploymentName, boolean validate) {
-    return () -> ResponseUnwrapper.get(getService().getVersion(deploymentName, validate));
+    return cachedRead(validate, String.class, () -> getService().getVersion(deploymentName, validate, !validate), "getVersion", deploymentName);
   }
 
   public static Supplier<Void> setVersion(String deploymentName, boolean validate, String versionName) {
@@ -486,10 +454,77 @@ public class Daemon {
     };
   }
 
+  public static Supplier<Object> attachTask(String uuid) {
+    return () -> ResponseUnwrapper.get(uuid);
+  }
+
+  /**
+   * @return the version of the halconfig the daemon is serving, or null if the daemon is too old to say.
+   */
+  static String getHalconfigVersion() {
+    try {
+      return getService().getHalconfigVersion()
+          .getHeaders()
+          .stream()
+          .filter(h -> HalconfigVersion.HEADER.equalsIgnoreCase(h.getName()))
+          .map(Header::getValue)
+          .findFirst()
+          .orElse(null);
+    } catch (RetrofitError e) {
+      if (e.getResponse() != null && e.getResponse().getStatus() == 404) {
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Reads through the ResponseCache, unless validating: validation reports on the world outside the halconfig, and
+   * its problems should be shown every time.
+   *
+   * Non-validating reads ask the daemon to answer synchronously, so the response is usually a task that has already
+   * completed. Daemons that don't support that return one to wait on as usual.
+   */
+  private static <T> Supplier<T> cachedRead(boolean validate, Class<? extends T> responseType, Supplier<Response> request, String... key) {
+    Supplier<T> read = () -> ResponseUnwrapper.get(request.get(), responseType);
+    if (validate) {
+      return read;
+    }
+
+    return () -> ResponseCache.get(cacheKey(key), responseType, read);
+  }
+
+  private static String cacheKey(String... parts) {
+    return endpoint + " " + String.join(" ", parts);
+  }
+
+  private static String toJson(Object value) {
+    try {
+      return getObjectMapper().writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
   static <C, T> DaemonTask<C, T> getTask(String uuid) {
     return getService().getTask(uuid);
   }
 
+  static <T> DaemonTaskDelta<T> getTaskDelta(String uuid, String since, JavaType deltaType) throws IOException {
+    Response response = getService().getTaskDelta(uuid, since);
+    try (InputStream body = response.getBody().in()) {
+      return getObjectMapper().readValue(body, deltaType);
+    }
+  }
+
+  static void cancelTask(String uuid) {
+    getService().cancelTask(uuid);
+  }
+
+  static Response streamTask(String uuid, String since) {
+    return getService().streamTask(uuid, since);
+  }
+
 
   private static DaemonService getService() {
     if (service == null) {
@@ -500,9 +535,11 @@ public class Daemon {
     return service;
   }
 
-  private static ObjectMapper getObjectMapper() {
+  static ObjectMapper getObjectMapper() {
     if (objectMapper == null) {
-      objectMapper = new ObjectMapper();
+      objectMapper = new ObjectMapper()
+          .registerModule(new DaemonResponseModule())
+          .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
     return objectMapper;
@@ -512,12 +549,35 @@ public class Daemon {
   static final private String endpoint = "http://localhost:8064";
 
   static private DaemonService service;
+  static private volatile String batchId;
   static private ObjectMapper objectMapper;
 
+  // The CLI only ever talks to one daemon, so one or two connections kept open are plenty.
+  static final private int MAX_IDLE_CONNECTIONS = 2;
+  // Options can depend on more than the halconfig (e.g. the contents of a kubeconfig), so aren't reused for long.
+  static final private long OPTIONS_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  static final private long KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  static final private long CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+  // Task streams send a heartbeat every second, so this only trips on a daemon that has stopped responding.
+  static final private long READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
   private static DaemonService createService(boolean log) {
+    // OkHttp asks for gzip'd responses and transparently decompresses them.
+    OkHttpClient client = new OkHttpClient();
+    client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MILLIS));
+    client.setConnectTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    client.setReadTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    client.setRetryOnConnectionFailure(true);
+
     return new RestAdapter.Builder()
         .setEndpoint(endpoint)
-        .setClient(new OkClient())
+        .setClient(new OkClient(client))
+        .setRequestInterceptor(request -> {
+          String batch = batchId;
+          if (batch != null) {
+            request.addHeader(HalconfigBatch.HEADER, batch);
+          }
+        })
         .setLogLevel(log ? RestAdapter.LogLevel.FULL : RestAdapter.LogLevel.NONE)
         .build()
         .create(DaemonService.class);
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.services.v1;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.netflix.spinnaker.halyard.core.DaemonResponse;
+import com.netflix.spinnaker.halyard.core.problem.v1.Problem;
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet;
+
+import java.util.List;
+
+/**
+ * Lets jackson build the immutable types the daemon sends back with every task, so a task's response can be read
+ * straight into the type the caller expects.
+ */
+class DaemonResponseModule extends SimpleModule {
+  DaemonResponseModule() {
+    super("DaemonResponseModule");
+    setMixInAnnotation(DaemonResponse.class, DaemonResponseMixin.class);
+    setMixInAnnotation(Problem.class, ProblemMixin.class);
+  }
+
+  abstract static class DaemonResponseMixin<T> {
+    @JsonCreator
+    DaemonResponseMixin(@JsonProperty("responseBody") T responseBody,
+        @JsonProperty("problemSet") ProblemSet problemSet) { }
+  }
+
+  abstract static class ProblemMixin {
+    @JsonCreator
+    ProblemMixin(@JsonProperty("message") String message,
+        @JsonProperty("remediation") String remediation,
+        @JsonProperty("options") List<String> options,
+        @JsonProperty("severity") Problem.Severity severity,
+        @JsonProperty("location") String location) { }
+  }
+}
@@ -22,8 +22,10 @@ import com.netflix.spinnaker.halyard.core.DaemonOptions;
 import com.netflix.spinnaker.halyard.core.registry.v1.BillOfMaterials;
 import com.netflix.spinnaker.halyard.core.registry.v1.Versions;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskDelta;
 import com.netflix.spinnaker.halyard.deploy.deployment.v1.DeployOption;
 import com.netflix.spinnaker.halyard.deploy.spinnaker.v1.RunningServiceDetails;
+import retrofit.client.Response;
 import retrofit.http.*;
 
 import java.util.List;
@@ -36,14 +38,39 @@ public interface DaemonService {
   @GET("/v1/tasks/")
   List<String> getTasks();
 
+  @POST("/v1/batch/")
+  Map<String, String> openBatch(@Body String _ignore);
+
+  @POST("/v1/batch/{batchId}/commit/")
+  DaemonTask<Halconfig, Void> commitBatch(
+      @Path("batchId") String batchId,
+      @Query("validate") boolean validate,
+      @Body String _ignore);
+
+  @DELETE("/v1/batch/{batchId}/")
+  Response abortBatch(@Path("batchId") String batchId);
+
   @GET("/v1/tasks/{uuid}/")
   <C, T> DaemonTask<C, T> getTask(@Path("uuid") String uuid);
 
+  @DELETE("/v1/tasks/{uuid}/")
+  Response cancelTask(@Path("uuid") String uuid);
+
+  @GET("/v1/tasks/{uuid}/delta/")
+  Response getTaskDelta(@Path("uuid") String uuid, @Query("since") String since);
+
+  @Streaming
+  @GET("/v1/tasks/{uuid}/stream/")
+  Response streamTask(@Path("uuid") String uuid, @Query("since") String since);
+
   @GET("/v1/config/")
   DaemonTask<Halconfig, Halconfig> getHalconfig();
 
   @GET("/v1/config/currentDeployment/")
-  DaemonTask<Halconfig, String> getCurrentDeployment();
+  Response getCurrentDeployment(@Query("sync") boolean sync);
+
+  @GET("/v1/config/version/")
+  Response getHalconfigVersion();
 
   @GET("/v1/config/deployments/")
   DaemonTask<Halconfig, List<DeploymentConfiguration>> getDeployments();
@@ -80,9 +107,10 @@ public interface DaemonService {
       @Query("validate") boolean validate);
 
   @GET("/v1/config/deployments/{deploymentName}/deploymentEnvironment/")
-  DaemonTask<Halconfig, DeploymentEnvironment> getDeploymentEnvironment(
+  Response getDeploymentEnvironment(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/deploymentEnvironment/")
   DaemonTask<Halconfig, Void> setDeploymentEnvironment(
@@ -91,9 +119,10 @@ public interface DaemonService {
       @Body DeploymentEnvironment deploymentEnvironment);
 
   @GET("/v1/config/deployments/{deploymentName}/features/")
-  DaemonTask<Halconfig, Features> getFeatures(
+  Response getFeatures(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/features/")
   DaemonTask<Halconfig, Void> setFeatures(
@@ -108,10 +137,11 @@ public interface DaemonService {
       @Body PersistentStorage persistentStorage);
 
   @GET("/v1/config/deployments/{deploymentName}/providers/{providerName}/")
-  DaemonTask<Halconfig, Object> getProvider(
+  Response getProvider(
       @Path("deploymentName") String deploymentName,
       @Path("providerName") String providerName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/providers/{providerName}/enabled/")
   DaemonTask<Halconfig, Void> setProviderEnabled(
@@ -128,11 +158,12 @@ public interface DaemonService {
       @Body Account account);
 
   @GET("/v1/config/deployments/{deploymentName}/providers/{providerName}/accounts/account/{accountName}/")
-  DaemonTask<Halconfig, Object> getAccount(
+  Response getAccount(
       @Path("deploymentName") String deploymentName,
       @Path("providerName") String providerName,
       @Path("accountName") String accountName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/providers/{providerName}/accounts/account/{accountName}/")
   DaemonTask<Halconfig, Void> setAccount(
@@ -163,9 +194,10 @@ public interface DaemonService {
       @Body DaemonOptions<Void> options);
 
   @GET("/v1/config/deployments/{deploymentName}/security/")
-  DaemonTask<Halconfig, Security> getSecurity(
+  Response getSecurity(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/security/")
   DaemonTask<Halconfig, Void> setSecurity(
@@ -174,9 +206,10 @@ public interface DaemonService {
       @Body Security security);
 
   @GET("/v1/config/deployments/{deploymentName}/metricStores/")
-  DaemonTask<Halconfig, MetricStores> getMetricStores(
+  Response getMetricStores(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/metricStores/")
   DaemonTask<Halconfig, Void> setMetricStores(
@@ -185,10 +218,11 @@ public interface DaemonService {
       @Body MetricStores metricStores);
 
   @GET("/v1/config/deployments/{deploymentName}/metricStores/{metricStoreType}/")
-  DaemonTask<Halconfig, Object> getMetricStore(
+  Response getMetricStore(
       @Path("deploymentName") String deploymentName,
       @Path("metricStoreType") String metricStoreType,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/metricStores/{metricStoreType}/")
   DaemonTask<Halconfig, Void> setMetricStore(
@@ -205,9 +239,10 @@ public interface DaemonService {
       @Body boolean enabled);
 
   @GET("/v1/config/deployments/{deploymentName}/version/")
-  DaemonTask<Halconfig, String> getVersion(
+  Response getVersion(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/version/")
   DaemonTask<Halconfig, Void> setVersion(
@@ -222,9 +257,10 @@ public interface DaemonService {
       @Query("validate") boolean validate);
 
   @GET("/v1/config/deployments/{deploymentName}/security/api/")
-  DaemonTask<Halconfig, Object> getApiSecurity(
+  Response getApiSecurity(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/security/api/")
   DaemonTask<Halconfig, Void> setApiSecurity(
@@ -233,9 +269,10 @@ public interface DaemonService {
       @Body ApiSecurity apiSecurity);
 
   @GET("/v1/config/deployments/{deploymentName}/security/api/ssl/")
-  DaemonTask<Halconfig, Object> getSpringSsl(
+  Response getSpringSsl(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/security/api/ssl/")
   DaemonTask<Halconfig, Void> setSpringSsl(
@@ -250,9 +287,10 @@ public interface DaemonService {
       @Body boolean enabled);
 
   @GET("/v1/config/deployments/{deploymentName}/security/ui/")
-  DaemonTask<Halconfig, Object> getUiSecurity(
+  Response getUiSecurity(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/security/ui/")
   DaemonTask<Halconfig, Void> setUiSecurity(
@@ -261,9 +299,10 @@ public interface DaemonService {
       @Body UiSecurity uiSecurity);
 
   @GET("/v1/config/deployments/{deploymentName}/security/ui/ssl/")
-  DaemonTask<Halconfig, Object> getApacheSsl(
+  Response getApacheSsl(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/security/ui/ssl/")
   DaemonTask<Halconfig, Void> setApacheSsl(
@@ -278,10 +317,11 @@ public interface DaemonService {
       @Body boolean enabled);
 
   @GET("/v1/config/deployments/{deploymentName}/security/authn/{methodName}/")
-  DaemonTask<Halconfig, Object> getAuthnMethod(
+  Response getAuthnMethod(
       @Path("deploymentName") String deploymentName,
       @Path("methodName") String methodName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/security/authn/{methodName}/")
   DaemonTask<Halconfig, Void> setAuthnMethod(
@@ -304,15 +344,17 @@ public interface DaemonService {
       @Body GroupMembership membership);
 
   @GET("/v1/config/deployments/{deploymentName}/security/authz/groupMembership")
-  DaemonTask<Halconfig, Object> getGroupMembership(
+  Response getGroupMembership(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @GET("/v1/config/deployments/{deploymentName}/security/authz/groupMembership/{roleProviderName}/")
-  DaemonTask<Halconfig, Object> getRoleProvider(
+  Response getRoleProvider(
       @Path("deploymentName") String deploymentName,
       @Path("roleProviderName") String roleProviderName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/security/authz/groupMembership/{roleProviderName}/")
   DaemonTask<Halconfig, Void> setRoleProvider(
@@ -328,9 +370,10 @@ public interface DaemonService {
       @Body boolean enabled);
 
   @GET("/v1/config/deployments/{deploymentName}/persistentStorage/")
-  DaemonTask<Halconfig, PersistentStorage> getPersistentStorage(
+  Response getPersistentStorage(
       @Path("deploymentName") String deploymentName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/providers/{providerName}/bakery/defaults/")
   DaemonTask<Halconfig, Void> setBakeryDefaults(
@@ -340,10 +383,11 @@ public interface DaemonService {
       @Body BakeryDefaults bakeryDefaults);
 
   @GET("/v1/config/deployments/{deploymentName}/providers/{providerName}/bakery/defaults/")
-  DaemonTask<Halconfig, Object> getBakeryDefaults(
+  Response getBakeryDefaults(
       @Path("deploymentName") String deploymentName,
       @Path("providerName") String providerName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @POST("/v1/config/deployments/{deploymentName}/providers/{providerName}/bakery/defaults/baseImage/")
   DaemonTask<Halconfig, Void> addBaseImage(
@@ -353,11 +397,12 @@ public interface DaemonService {
       @Body BaseImage baseImage);
 
   @GET("/v1/config/deployments/{deploymentName}/providers/{providerName}/bakery/defaults/baseImage/{baseImageId}/")
-  DaemonTask<Halconfig, Object> getBaseImage(
+  Response getBaseImage(
       @Path("deploymentName") String deploymentName,
       @Path("providerName") String providerName,
       @Path("baseImageId") String baseImageId,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/providers/{providerName}/bakery/defaults/baseImage/{baseImageId}/")
   DaemonTask<Halconfig, Void> setBaseImage(
@@ -375,10 +420,11 @@ public interface DaemonService {
       @Query("validate") boolean validate);
 
   @GET("/v1/config/deployments/{deploymentName}/ci/{ciName}/")
-  DaemonTask<Halconfig, Object> getCi(
+  Response getCi(
       @Path("deploymentName") String deploymentName,
       @Path("ciName") String ciName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/ci/{ciName}/enabled/")
   DaemonTask<Halconfig, Void> setCiEnabled(
@@ -395,11 +441,12 @@ public interface DaemonService {
       @Body Master master);
 
   @GET("/v1/config/deployments/{deploymentName}/ci/{ciName}/masters/{masterName}/")
-  DaemonTask<Halconfig, Object> getMaster(
+  Response getMaster(
       @Path("deploymentName") String deploymentName,
       @Path("ciName") String ciName,
       @Path("masterName") String masterName,
-      @Query("validate") boolean validate);
+      @Query("validate") boolean validate,
+      @Query("sync") boolean sync);
 
   @PUT("/v1/config/deployments/{deploymentName}/ci/{ciName}/masters/{masterName}/")
   DaemonTask<Halconfig, Void> setMaster(
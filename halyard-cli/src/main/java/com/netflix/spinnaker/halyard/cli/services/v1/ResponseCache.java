@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.services.v1;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A small on-disk cache of read-only daemon responses, so that e.g. repeatedly asking for an account's options while
+ * editing it doesn't repeatedly submit & wait on the same tasks. Entries are keyed by request, and tagged with the
+ * halconfig version they were read at; they're only reused while the daemon reports that same version.
+ *
+ * Only cache reads that are fully determined by the halconfig, and never ones that validate, since those report
+ * problems found against the outside world.
+ *
+ * Cached responses can hold credentials from the halconfig, so the cache is only readable by its owner.
+ */
+@Slf4j
+class ResponseCache {
+  private static final int MAX_ENTRIES = 256;
+  private static final String VERSION = "version";
+  private static final String STORED = "stored";
+  private static final String BODY = "body";
+  private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+
+  private static File cacheDirectory = new File(System.getProperty("user.home"), ".hal/.cache/cli");
+
+  static <T> T get(String key, Class<? extends T> responseType, Supplier<T> fetch) {
+    return get(key, responseType, Long.MAX_VALUE, fetch);
+  }
+
+  /**
+   * @param maxAgeMillis bounds how long an entry is reused for, for reads that also depend on something other than the
+   *                     halconfig, e.g. options read from a kubeconfig.
+   */
+  static <T> T get(String key, Class<? extends T> responseType, long maxAgeMillis, Supplier<T> fetch) {
+    String version;
+    try {
+      version = Daemon.getHalconfigVersion();
+    } catch (RuntimeException e) {
+      log.debug("Unable to read the halconfig version, not caching " + key, e);
+      return fetch.get();
+    }
+
+    if (version == null) {
+      return fetch.get();
+    }
+
+    ObjectMapper mapper = Daemon.getObjectMapper();
+    File entry = new File(cacheDirectory, hash(key));
+    if (entry.exists()) {
+      try {
+        JsonNode cached = mapper.readTree(entry);
+        long age = System.currentTimeMillis() - cached.path(STORED).asLong();
+        if (version.equals(cached.path(VERSION).asText()) && age < maxAgeMillis) {
+          return mapper.treeToValue(cached.get(BODY), responseType);
+        }
+      } catch (IOException e) {
+        log.debug("Ignoring unreadable cache entry for " + key, e);
+      }
+    }
+
+    T result = fetch.get();
+    store(mapper, entry, version, result);
+    return result;
+  }
+
+  private static void store(ObjectMapper mapper, File entry, String version, Object body) {
+    try {
+      // Without POSIX permissions there's no telling who could read what's cached.
+      if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        return;
+      }
+
+      Path directory = cacheDirectory.toPath();
+      if (!Files.isDirectory(directory)) {
+        Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+      }
+
+      // Also restricts a directory left behind by an older hal.
+      Files.setPosixFilePermissions(directory, DIRECTORY_PERMISSIONS);
+
+      ObjectNode cached = mapper.createObjectNode();
+      cached.put(VERSION, version);
+      cached.put(STORED, System.currentTimeMillis());
+      cached.set(BODY, mapper.valueToTree(body));
+
+      // Written aside & renamed, so a concurrent hal never reads half an entry. Unlike File.createTempFile, this
+      // creates the file readable by its owner only.
+      File temp = Files.createTempFile(directory, entry.getName(), ".tmp").toFile();
+      mapper.writeValue(temp, cached);
+      if (!temp.renameTo(entry)) {
+        temp.delete();
+      }
+
+      evict();
+    } catch (IOException | IllegalArgumentException e) {
+      // The cache is only an optimization.
+      log.debug("Unable to cache response", e);
+    }
+  }
+
+  private static void evict() {
+    File[] entries = cacheDirectory.listFiles();
+    if (entries == null || entries.length <= MAX_ENTRIES) {
+      return;
+    }
+
+    Arrays.stream(entries)
+        .sorted(Comparator.comparingLong(File::lastModified))
+        .limit(entries.length - MAX_ENTRIES)
+        .forEach(File::delete);
+  }
+
+  private static String hash(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder result = new StringBuilder();
+      for (byte b : digest) {
+        result.append(String.format("%02x", b));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.netflix.spinnaker.halyard.cli.services.v1;
 
+import com.fasterxml.jackson.databind.JavaType;
 import com.netflix.spinnaker.halyard.cli.command.v1.GlobalOptions;
 import com.netflix.spinnaker.halyard.cli.ui.v1.*;
 import com.netflix.spinnaker.halyard.core.DaemonResponse;
@@ -25,40 +26,142 @@ import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonEvent;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask.State;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskDelta;
+import lombok.Data;
 import org.apache.commons.lang.StringUtils;
-
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.stream.IntStream;
 
 public class ResponseUnwrapper {
   private static final Long WAIT_MILLIS = 400L;
+  private static final String SSE_DATA = "data:";
+  private static final String SSE_COMMENT = ":";
   private static int cycle;
   private static String[] cursors = {"◢", "◣", "◤", "◥"};
 
   public static <C, T> T get(DaemonTask<C, T> task) {
-    int lastTaskCount = 0;
+    return get(task.getUuid());
+  }
+
+  /**
+   * Wait on a task, reading its response straight into the given type.
+   */
+  public static <T> T get(DaemonTask<?, ?> task, Class<T> responseType) {
+    return get(task.getUuid(), deltaType(Daemon.getObjectMapper().constructType(responseType)));
+  }
+
+  /**
+   * Read a task from the daemon's response to the request that submitted it. If the daemon answered synchronously the
+   * task has already completed, and there's nothing to wait on.
+   */
+  public static <T> T get(Response response, Class<T> responseType) {
+    JavaType deltaType = deltaType(Daemon.getObjectMapper().constructType(responseType));
+    DaemonTaskDelta<T> delta;
+    try (InputStream body = response.getBody().in()) {
+      delta = Daemon.getObjectMapper().readValue(body, deltaType);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read the daemon's response", e);
+    }
+
+    if (!delta.getState().isTerminal()) {
+      return get(delta.getUuid(), deltaType);
+    }
 
-    task = Daemon.getTask(task.getUuid());
-    while (!task.getState().isTerminal()) {
-      updateCycle();
-      lastTaskCount = formatTasks(aggregateTasks(task), lastTaskCount);
+    Progress progress = new Progress();
+    progress.update(delta);
+    return finish(progress);
+  }
+
+  /**
+   * Wait on a task by its uuid alone, e.g. to reattach to a task started by an earlier invocation.
+   */
+  public static <T> T get(String uuid) {
+    return get(uuid, deltaType(Daemon.getObjectMapper().constructType(Object.class)));
+  }
+
+  private static <T> T get(String uuid, JavaType deltaType) {
+    Progress progress = new Progress();
+
+    // Ctrl-C shouldn't leave the daemon running a task nobody is waiting on.
+    Thread cancelHook = new Thread(() -> {
+      if (!progress.isTerminal()) {
+        try {
+          Daemon.cancelTask(uuid);
+          AnsiUi.raw("");
+          AnsiUi.warning("Cancelled task " + uuid);
+        } catch (RetrofitError e) {
+          AnsiUi.error("Failed to cancel task " + uuid + ": " + e.getMessage());
+        }
+      }
+    });
+    Runtime.getRuntime().addShutdownHook(cancelHook);
+
+    try {
       try {
-        Thread.sleep(WAIT_MILLIS);
-      } catch (InterruptedException ignored) {
+        // The daemon ends a stream after a while even if the task is still running, so pick up where it left off. A
+        // stream that ends without sending anything falls back to polling.
+        boolean streaming = true;
+        while (streaming && !progress.isTerminal()) {
+          streaming = stream(uuid, deltaType, progress);
+        }
+      } catch (RetrofitError | IOException e) {
+        // Older daemons don't support streaming, and the connection can always drop; either way, polling picks up
+        // from the last delta we received.
+        if (GlobalOptions.getGlobalOptions().isDebug()) {
+          e.printStackTrace();
+        }
+      }
+
+      if (!progress.isTerminal()) {
+        poll(uuid, deltaType, progress);
+      }
+    } catch (RetrofitError | IOException e) {
+      // The daemon journals its tasks, so if it went away (e.g. it's restarting) the task can be picked up again.
+      AnsiUi.raw("");
+      AnsiUi.error("Lost contact with the daemon while waiting on task " + uuid + ".");
+      AnsiUi.remediation("Once the daemon is reachable, run `hal task attach " + uuid + "` to find out how it went.");
+      if (e instanceof RetrofitError) {
+        throw (RetrofitError) e;
       }
 
-      task = Daemon.getTask(task.getUuid());
+      throw new RuntimeException("Unable to read the status of task " + uuid, e);
+    } finally {
+      try {
+        Runtime.getRuntime().removeShutdownHook(cancelHook);
+      } catch (IllegalStateException ignored) {
+        // Already shutting down, let the hook run.
+      }
     }
 
-    formatTasks(aggregateTasks(task), lastTaskCount);
+    return finish(progress);
+  }
+
+  private static JavaType deltaType(JavaType responseType) {
+    return Daemon.getObjectMapper().getTypeFactory()
+        .constructParametrizedType(DaemonTaskDelta.class, DaemonTaskDelta.class, responseType);
+  }
+
+  private static <T> T finish(Progress progress) {
+    DaemonTaskDelta<T> delta = progress.getDelta();
+    formatTasks(aggregateTasks(delta), progress.getLastEvents(), progress.getRenderer(), true);
 
-    DaemonResponse<T> response = task.getResponse();
+    DaemonResponse<T> response = delta.getResponse();
     formatProblemSet(response.getProblemSet());
-    if (task.getState() == State.FATAL) {
-      Exception fatal = task.getFatalError();
+    if (delta.getState() == State.CANCELLED) {
+      throw new ExpectedDaemonFailureException("Task was cancelled.", delta.getFatalError());
+    } else if (delta.getState() == State.FATAL) {
+      Exception fatal = delta.getFatalError();
       if (fatal == null) {
         throw new RuntimeException("Task failed without reason. This is a bug.");
       } else {
@@ -69,52 +172,130 @@ public class ResponseUnwrapper {
     return response.getResponseBody();
   }
 
-  private static List<DaemonTask> aggregateTasks(DaemonTask task) {
-    List<DaemonTask> result = new ArrayList<>();
-    task.consumeTaskTree((t) -> result.add((DaemonTask) t));
-    return result;
+  /**
+   * @return true iff the stream sent at least one delta.
+   */
+  private static boolean stream(String uuid, JavaType deltaType, Progress progress) throws IOException {
+    Response response = Daemon.streamTask(uuid, progress.getCursor());
+    boolean received = false;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody().in(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(SSE_DATA)) {
+          String data = line.substring(SSE_DATA.length()).trim();
+          progress.update(Daemon.getObjectMapper().readValue(data, deltaType));
+          received = true;
+          if (progress.isTerminal()) {
+            return true;
+          }
+        } else if (line.startsWith(SSE_COMMENT)) {
+          // Heartbeat, nothing changed but keep the spinner moving.
+          progress.redraw();
+        }
+      }
+    }
+
+    return received;
   }
 
-  private static int formatTasks(List<DaemonTask> tasks, int lastChildCount) {
-    if (tasks.size() == 0 || GlobalOptions.getGlobalOptions().isQuiet()) {
-      return tasks.size();
+  private static void poll(String uuid, JavaType deltaType, Progress progress) throws IOException {
+    progress.update(Daemon.getTaskDelta(uuid, progress.getCursor(), deltaType));
+    while (!progress.isTerminal()) {
+      try {
+        Thread.sleep(WAIT_MILLIS);
+      } catch (InterruptedException ignored) {
+      }
+
+      progress.update(Daemon.getTaskDelta(uuid, progress.getCursor(), deltaType));
+    }
+  }
+
+  /**
+   * Everything known so far about the task being waited on, assembled from the deltas received.
+   */
+  @Data
+  private static class Progress {
+    DaemonTaskDelta delta;
+    // Deltas only carry new events, so remember the most recent one seen for every task.
+    Map<String, DaemonEvent> lastEvents = new HashMap<>();
+    AnsiFrameRenderer renderer = new AnsiFrameRenderer();
+
+    String getCursor() {
+      return delta == null ? null : delta.getCursor();
     }
 
-    int taskCountGrowth = tasks.size() - lastChildCount;
-    IntStream.range(0, taskCountGrowth * 2).forEach(i -> AnsiPrinter.println(""));
+    boolean isTerminal() {
+      return delta != null && delta.getState().isTerminal();
+    }
 
-    AnsiSnippet snippet = new AnsiSnippet("").addMove(AnsiMove.UP, tasks.size() * 2);
-    AnsiPrinter.print(snippet.toString());
+    void update(DaemonTaskDelta next) {
+      if (next == null) {
+        throw new IllegalStateException("The daemon no longer knows about the task being waited on.");
+      }
+
+      delta = next;
+      recordLastEvents(delta, lastEvents);
+      if (!isTerminal()) {
+        redraw();
+      }
+    }
 
-    for (DaemonTask task : tasks) {
-      formatLastEvent(task);
+    void redraw() {
+      if (delta != null) {
+        updateCycle();
+        formatTasks(aggregateTasks(delta), lastEvents, renderer, false);
+      }
     }
+  }
+
+  private static List<DaemonTaskDelta> aggregateTasks(DaemonTaskDelta task) {
+    List<DaemonTaskDelta> result = new ArrayList<>();
+    task.consumeTaskTree((t) -> result.add((DaemonTaskDelta) t));
+    return result;
+  }
 
-    return tasks.size();
+  private static void recordLastEvents(DaemonTaskDelta delta, Map<String, DaemonEvent> lastEvents) {
+    delta.consumeTaskTree((t) -> {
+      DaemonTaskDelta task = (DaemonTaskDelta) t;
+      int eventCount = task.getEvents().size();
+      if (eventCount > 0) {
+        lastEvents.put(task.getUuid(), (DaemonEvent) task.getEvents().get(eventCount - 1));
+      }
+    });
   }
 
-  private static DaemonEvent getLastEvent(DaemonTask task) {
-    int eventCount = task.getEvents().size();
-    DaemonEvent event = null;
-    if (eventCount > 0) {
-      event = (DaemonEvent) task.getEvents().get(eventCount - 1);
+  private static void formatTasks(List<DaemonTaskDelta> tasks, Map<String, DaemonEvent> lastEvents, AnsiFrameRenderer renderer, boolean last) {
+    if (tasks.size() == 0 || GlobalOptions.getGlobalOptions().isQuiet()) {
+      return;
+    }
+
+    List<String> frame = new ArrayList<>();
+    for (DaemonTaskDelta task : tasks) {
+      formatLastEvent(frame, task, lastEvents.get(task.getUuid()), renderer.isInteractive());
     }
 
-    return event;
+    renderer.render(frame, last);
   }
 
-  private static void formatLastEvent(DaemonTask task) {
+  /**
+   * Adds a task's lines to the frame: its state & name, then what it's doing. When the frame is logged rather than
+   * redrawn, these are joined into one line, and running tasks get a fixed marker rather than a spinner, so only real
+   * changes are logged.
+   */
+  private static void formatLastEvent(List<String> frame, DaemonTaskDelta task, DaemonEvent event, boolean interactive) {
     AnsiParagraphBuilder builder = new AnsiParagraphBuilder().setMaxLineWidth(-1);
-    builder.addSnippet("\r").setErase(AnsiErase.ERASE_LINE);
 
-    DaemonEvent event = getLastEvent(task);
     State state = task.getState();
     String taskName = task.getName();
 
+    if (event == null && task.getStage() != null) {
+      event = new DaemonEvent().setStage(task.getStage());
+    }
+
     switch (state) {
       case NOT_STARTED:
       case RUNNING:
-        builder.addSnippet(nextCursor() + " ")
+        builder.addSnippet((interactive ? nextCursor() : "~") + " ")
             .setForegroundColor(AnsiForegroundColor.BLUE)
             .addStyle(AnsiStyle.BOLD);
         break;
@@ -130,14 +311,23 @@ public class ResponseUnwrapper {
             .addStyle(AnsiStyle.BOLD);
         event = new DaemonEvent().setStage("Failure");
         break;
+      case CANCELLED:
+        builder.addSnippet("! ")
+            .setForegroundColor(AnsiForegroundColor.YELLOW)
+            .addStyle(AnsiStyle.BOLD);
+        event = new DaemonEvent().setStage("Cancelled");
+        break;
     }
 
     builder.addSnippet(taskName).addStyle(AnsiStyle.BOLD);
-    builder.addSnippet("\n");
-    builder.addSnippet("\r").setErase(AnsiErase.ERASE_LINE);
+
+    if (interactive) {
+      frame.add(builder.toString());
+      builder = new AnsiParagraphBuilder().setMaxLineWidth(-1);
+    }
 
     if (event != null) {
-      builder.addSnippet("  ");
+      builder.addSnippet(interactive ? "  " : ": ");
       String stage = event.getStage();
       String message = event.getMessage();
 
@@ -148,7 +338,7 @@ public class ResponseUnwrapper {
       }
     }
 
-    AnsiPrinter.println(builder.toString());
+    frame.add(builder.toString());
   }
 
   private static void formatEvent(DaemonEvent event) {
@@ -22,7 +22,8 @@ import lombok.Getter;
 public enum AnsiErase implements AnsiCode {
   ERASE_END_LINE("\033[K"),
   ERASE_START_LINE("\033[1K\r"),
-  ERASE_LINE("\033[2K");
+  ERASE_LINE("\033[2K"),
+  ERASE_END_SCREEN("\033[J");
 
   @Getter
   private final String code;
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.ui.v1;
+
+import com.netflix.spinnaker.halyard.cli.command.v1.GlobalOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redraws a block of lines (a "frame") in place at the bottom of the terminal. Only the lines that differ from the
+ * last frame drawn are rewritten, and each frame is written & flushed at once, so redrawing a large, mostly unchanged
+ * frame costs a handful of bytes rather than a full repaint.
+ *
+ * When stdout isn't an interactive terminal (or color, and with it cursor movement, is disabled) there is nothing to
+ * redraw in place, so changed lines are appended instead, like a log.
+ */
+public class AnsiFrameRenderer {
+  private static final long MIN_REDRAW_MILLIS = 100L;
+
+  private final boolean interactive;
+  private List<String> lastFrame = new ArrayList<>();
+  private long lastDrawMillis = 0;
+
+  public AnsiFrameRenderer() {
+    this(System.console() != null && GlobalOptions.getGlobalOptions().isColor());
+  }
+
+  public AnsiFrameRenderer(boolean interactive) {
+    this.interactive = interactive;
+  }
+
+  /**
+   * @return true iff frames are redrawn in place, rather than appended. Callers should avoid animating anything
+   * (e.g. spinners) when this is false, since every change is printed.
+   */
+  public boolean isInteractive() {
+    return interactive;
+  }
+
+  /**
+   * Draw the frame, unless it's unchanged or the last frame was drawn too recently.
+   */
+  public void render(List<String> frame) {
+    render(frame, false);
+  }
+
+  /**
+   * @param force draw the frame even if the last one was drawn too recently, e.g. when it's the final frame.
+   */
+  public void render(List<String> frame, boolean force) {
+    long now = System.currentTimeMillis();
+    if (frame.equals(lastFrame) || (!force && now - lastDrawMillis < MIN_REDRAW_MILLIS)) {
+      return;
+    }
+
+    String output = interactive ? redraw(frame) : append(frame);
+    AnsiPrinter.print(output);
+    AnsiPrinter.flush();
+
+    lastFrame = new ArrayList<>(frame);
+    lastDrawMillis = now;
+  }
+
+  private String redraw(List<String> frame) {
+    StringBuilder result = new StringBuilder();
+    if (!lastFrame.isEmpty()) {
+      result.append("\r").append(new AnsiSnippet("").addMove(AnsiMove.UP, lastFrame.size()));
+    }
+
+    // Unchanged lines are skipped over with a newline, which moves the cursor down without touching the line's
+    // contents. New lines at the end of the frame scroll the terminal as usual.
+    for (int i = 0; i < frame.size(); i++) {
+      String line = frame.get(i);
+      if (i < lastFrame.size() && line.equals(lastFrame.get(i))) {
+        result.append("\n");
+      } else {
+        result.append("\r")
+            .append(AnsiErase.ERASE_LINE.format())
+            .append(line)
+            .append(AnsiSpecial.RESET.format())
+            .append("\n");
+      }
+    }
+
+    // Clear what's left of a longer last frame, or it'd stay on screen below this one.
+    if (frame.size() < lastFrame.size()) {
+      result.append(AnsiErase.ERASE_END_SCREEN.format());
+    }
+
+    return result.toString();
+  }
+
+  private String append(List<String> frame) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < frame.size(); i++) {
+      String line = frame.get(i);
+      if (i >= lastFrame.size() || !line.equals(lastFrame.get(i))) {
+        result.append(line)
+            .append(AnsiSpecial.RESET.format())
+            .append("\n");
+      }
+    }
+
+    return result.toString();
+  }
+}
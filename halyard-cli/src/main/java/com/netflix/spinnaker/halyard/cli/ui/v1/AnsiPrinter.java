@@ -32,4 +32,8 @@ public class AnsiPrinter {
       System.out.print(AnsiSpecial.RESET.format());
     }
   }
+
+  public static void flush() {
+    System.out.flush();
+  }
 }
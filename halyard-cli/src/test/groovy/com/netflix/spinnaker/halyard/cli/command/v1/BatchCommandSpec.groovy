@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.command.v1
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class BatchCommandSpec extends Specification {
+  @Unroll
+  void "tokenizes #line"() {
+    expect:
+    BatchCommand.tokenize(line, 1) == expected
+
+    where:
+    line                                           || expected
+    'hal config version edit --version 1.0.0'      || ["hal", "config", "version", "edit", "--version", "1.0.0"]
+    '  config   features  '                        || ["config", "features"]
+    'config edit --name "my deployment"'           || ["config", "edit", "--name", "my deployment"]
+    "config edit --name 'my \"deployment\"'"       || ["config", "edit", "--name", 'my "deployment"']
+    'config edit --name "say \\"hi\\""'            || ["config", "edit", "--name", 'say "hi"']
+    "config edit --name 'back\\slash'"             || ["config", "edit", "--name", 'back\\slash']
+    'config edit --name my\\ deployment'           || ["config", "edit", "--name", "my deployment"]
+    'config edit --name ""'                        || ["config", "edit", "--name", ""]
+    'config edit --name pre"quoted"post'           || ["config", "edit", "--name", "prequotedpost"]
+    ''                                             || []
+  }
+
+  void "an unterminated quote is reported with its line number"() {
+    when:
+    BatchCommand.tokenize('config edit --name "oops', 7)
+
+    then:
+    IllegalArgumentException e = thrown()
+    e.message == 'Line 7: unterminated " quote.'
+  }
+}
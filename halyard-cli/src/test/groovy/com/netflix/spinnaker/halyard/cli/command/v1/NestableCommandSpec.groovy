@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.command.v1
+
+import spock.lang.Specification
+
+class NestableCommandSpec extends Specification {
+  void "every subcommand is registered under its own command name"() {
+    setup:
+    def mismatches = []
+
+    when:
+    walk(new HalCommand(), "hal", mismatches)
+
+    then:
+    mismatches == []
+  }
+
+  private void walk(NestableCommand command, String path, List mismatches) {
+    command.getSubcommandNames().each { String key ->
+      // Bypass getSubcommand's own name check so that every mismatch is reported, not just the first.
+      NestableCommand subcommand = command.subcommands.get(key).get()
+      if (subcommand.getCommandName() != key) {
+        mismatches << "$path $key registered for ${subcommand.getCommandName()}".toString()
+      }
+
+      walk(subcommand, "$path $key", mismatches)
+    }
+  }
+}
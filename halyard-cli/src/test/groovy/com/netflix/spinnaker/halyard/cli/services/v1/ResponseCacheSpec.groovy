@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.services.v1
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermissions
+
+class ResponseCacheSpec extends Specification {
+  File originalDirectory = ResponseCache.cacheDirectory
+  File root = Files.createTempDirectory("response-cache").toFile()
+
+  void cleanup() {
+    ResponseCache.cacheDirectory = originalDirectory
+    root.deleteDir()
+  }
+
+  void "cached responses are only readable by their owner"() {
+    setup:
+    ResponseCache.cacheDirectory = new File(root, "cli")
+    def entry = new File(ResponseCache.cacheDirectory, "entry")
+
+    when:
+    ResponseCache.store(new ObjectMapper(), entry, "version", [password: "hunter2"])
+
+    then:
+    PosixFilePermissions.toString(Files.getPosixFilePermissions(ResponseCache.cacheDirectory.toPath())) == "rwx------"
+    PosixFilePermissions.toString(Files.getPosixFilePermissions(entry.toPath())) == "rw-------"
+  }
+
+  void "an existing cache directory is restricted too"() {
+    setup:
+    ResponseCache.cacheDirectory = root
+    Files.setPosixFilePermissions(root.toPath(), PosixFilePermissions.fromString("rwxr-xr-x"))
+
+    when:
+    ResponseCache.store(new ObjectMapper(), new File(root, "entry"), "version", "body")
+
+    then:
+    PosixFilePermissions.toString(Files.getPosixFilePermissions(root.toPath())) == "rwx------"
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.cli.ui.v1
+
+import spock.lang.Specification
+
+class AnsiFrameRendererSpec extends Specification {
+  static final String ERASE_LINE = "\033[2K"
+  static final String RESET = "\033[0m"
+
+  PrintStream originalOut = System.out
+  ByteArrayOutputStream captured = new ByteArrayOutputStream()
+
+  void setup() {
+    System.setOut(new PrintStream(captured, true))
+  }
+
+  void cleanup() {
+    System.setOut(originalOut)
+  }
+
+  void "only lines that changed since the last frame are rewritten"() {
+    setup:
+    def renderer = new AnsiFrameRenderer(true)
+    renderer.render(["one", "two", "three"], true)
+    captured.reset()
+
+    when:
+    renderer.render(["one", "TWO", "three"], true)
+    def output = captured.toString()
+
+    then:
+    output.startsWith("\r\033[3A")
+    output.contains("\r" + ERASE_LINE + "TWO" + RESET + "\n")
+    !output.contains("one")
+    !output.contains("three")
+  }
+
+  void "an unchanged frame isn't drawn again"() {
+    setup:
+    def renderer = new AnsiFrameRenderer(true)
+    renderer.render(["one"], true)
+    captured.reset()
+
+    when:
+    renderer.render(["one"], true)
+
+    then:
+    captured.size() == 0
+  }
+
+  void "a line inserted in the middle rewrites the lines after it and adds one at the end"() {
+    setup:
+    def renderer = new AnsiFrameRenderer(true)
+    renderer.render(["one", "three"], true)
+    captured.reset()
+
+    when:
+    renderer.render(["one", "two", "three"], true)
+    def output = captured.toString()
+
+    then:
+    output.startsWith("\r\033[2A")
+    output.contains("\r" + ERASE_LINE + "two" + RESET + "\n\r" + ERASE_LINE + "three" + RESET + "\n")
+    !output.contains("one")
+  }
+
+  void "lines left over from a longer frame are cleared"() {
+    setup:
+    def renderer = new AnsiFrameRenderer(true)
+    renderer.render(["one", "two", "three"], true)
+    captured.reset()
+
+    when:
+    renderer.render(["one"], true)
+
+    then:
+    captured.toString().contains("\033[J")
+  }
+
+  void "frames are appended like a log when not interactive"() {
+    setup:
+    def renderer = new AnsiFrameRenderer(false)
+    renderer.render(["one", "two"], true)
+    captured.reset()
+
+    when:
+    renderer.render(["one", "three"], true)
+    def output = captured.toString()
+
+    then:
+    output.startsWith("three")
+    !output.contains("one")
+    !output.contains("\033[2A")
+  }
+}
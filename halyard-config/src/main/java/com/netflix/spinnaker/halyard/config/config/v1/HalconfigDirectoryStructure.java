@@ -68,6 +68,14 @@ public class HalconfigDirectoryStructure {
     return new File(history, "generateResult").toPath();
   }
 
+  public Path getTraceDirectory(String deploymentName) {
+    return ensureRelativeHalDirectory(deploymentName, Paths.get("history", "traces").toString());
+  }
+
+  public Path getTracePath(String deploymentName, String taskUuid) {
+    return new File(getTraceDirectory(deploymentName).toFile(), taskUuid + ".json").toPath();
+  }
+
   private Path ensureRelativeHalDirectory(String deploymentName, String directoryName) {
     Path path = Paths.get(halconfigDirectory, deploymentName, directoryName);
     ensureDirectory(path);
@@ -31,9 +31,16 @@ import org.yaml.snakeyaml.parser.ParserException;
 import org.yaml.snakeyaml.scanner.ScannerException;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A parser for all Config read by Halyard at runtime.
@@ -64,6 +71,36 @@ public class HalconfigParser {
   private boolean useBackup = false;
   private String backupHalconfigPath;
 
+  // Counts writes made by this daemon, in case the filesystem's timestamps are too coarse to tell two writes apart.
+  private final AtomicLong saveCount = new AtomicLong();
+
+  // The coarsest file timestamps we expect to see, e.g. on FAT filesystems.
+  private static final long TIMESTAMP_GRANULARITY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+  // The halconfig's content hash as of the last time it was read, see getContentHash.
+  private volatile ContentHash contentHash;
+
+  private static class ContentHash {
+    final String path;
+    final long lastModified;
+    final long length;
+    final long hashedAt;
+    final String hash;
+
+    ContentHash(String path, long lastModified, long length, long hashedAt, String hash) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.hashedAt = hashedAt;
+      this.hash = hash;
+    }
+  }
+
+  // An abandoned batch (e.g. its client was killed) is dropped after this long without being used.
+  private static final long BATCH_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+  private final Map<String, HalconfigBatch> batches = new ConcurrentHashMap<>();
+
   /**
    * Parse Halyard's config.
    *
@@ -80,9 +117,70 @@ public class HalconfigParser {
     }
   }
 
-  private InputStream getHalconfigStream() throws FileNotFoundException {
+  private File getHalconfigFile() {
     String path = useBackup ? backupHalconfigPath : halconfigPath;
-    return new FileInputStream(new File(path));
+    return new File(path);
+  }
+
+  private InputStream getHalconfigStream() throws FileNotFoundException {
+    return new FileInputStream(getHalconfigFile());
+  }
+
+  /**
+   * @return a value that changes whenever the halconfig that would be read changes, without reading it.
+   */
+  public String getHalconfigVersion() {
+    HalconfigBatch batch = getCurrentBatch();
+    if (batch != null) {
+      return "batch:" + batch.getId() + ":" + batch.getEdits();
+    }
+
+    File file = getHalconfigFile();
+    return file.getPath() + ":" + saveCount.get() + ":" + getContentHash(file);
+  }
+
+  /**
+   * A file's timestamp and length alone miss an edit that keeps its length and lands within the timestamp's
+   * granularity, so the version hashes the contents too. The hash is only recomputed when the file looks changed, or
+   * when it was taken so soon after the file was written that a later write could share its timestamp.
+   */
+  private String getContentHash(File file) {
+    String path = file.getPath();
+    long lastModified = file.lastModified();
+    long length = file.length();
+    ContentHash cached = contentHash;
+    if (cached != null
+        && cached.path.equals(path)
+        && cached.lastModified == lastModified
+        && cached.length == length
+        && cached.hashedAt - lastModified > TIMESTAMP_GRANULARITY_MILLIS) {
+      return cached.hash;
+    }
+
+    long hashedAt = System.currentTimeMillis();
+    String hash;
+    try {
+      hash = hash(Files.readAllBytes(file.toPath()));
+    } catch (IOException e) {
+      // Most likely there's no halconfig yet.
+      return lastModified + ":" + length;
+    }
+
+    contentHash = new ContentHash(path, lastModified, length, hashedAt, hash);
+    return hash;
+  }
+
+  private static String hash(byte[] contents) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(contents);
+      StringBuilder result = new StringBuilder();
+      for (byte b : digest) {
+        result.append(String.format("%02x", b));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is unavailable", e);
+    }
   }
 
   /**
@@ -95,18 +193,8 @@ public class HalconfigParser {
     Halconfig local = (Halconfig) DaemonTaskHandler.getContext();
 
     if (local == null) {
-      try {
-        InputStream is = getHalconfigStream();
-        local = parseHalconfig(is);
-      } catch (FileNotFoundException ignored) {
-        // leave res as `null`
-      } catch (ParserException e) {
-        throw new ParseConfigException(e);
-      } catch (ScannerException e) {
-        throw new ParseConfigException(e);
-      } catch (IllegalArgumentException e) {
-        throw new ParseConfigException(e);
-      }
+      HalconfigBatch batch = getCurrentBatch();
+      local = batch != null ? copyHalconfig(batch.getStaged()) : readHalconfig();
     }
 
     local = transformHalconfig(local);
@@ -115,6 +203,27 @@ public class HalconfigParser {
     return local;
   }
 
+  private Halconfig readHalconfig() {
+    try {
+      InputStream is = getHalconfigStream();
+      return parseHalconfig(is);
+    } catch (FileNotFoundException ignored) {
+      // No halconfig yet, one is generated by transformHalconfig.
+      return null;
+    } catch (ParserException e) {
+      throw new ParseConfigException(e);
+    } catch (ScannerException e) {
+      throw new ParseConfigException(e);
+    } catch (IllegalArgumentException e) {
+      throw new ParseConfigException(e);
+    }
+  }
+
+  // Each request in a batch edits its own copy of the staged halconfig, so a failed edit leaves the batch untouched.
+  private Halconfig copyHalconfig(Halconfig halconfig) {
+    return objectMapper.convertValue(objectMapper.convertValue(halconfig, Map.class), Halconfig.class);
+  }
+
   private Halconfig transformHalconfig(Halconfig input) {
     if (input == null) {
       log.info("No halconfig found - generating a new one...");
@@ -138,7 +247,102 @@ public class HalconfigParser {
    * Write your halconfig object to the halconfigPath.
    */
   public void saveConfig() {
-    saveConfigTo(Paths.get(halconfigPath));
+    HalconfigBatch batch = getCurrentBatch();
+    if (batch != null) {
+      stageConfig(batch);
+    } else {
+      saveConfigTo(Paths.get(halconfigPath));
+    }
+  }
+
+  private void stageConfig(HalconfigBatch batch) {
+    Halconfig local = (Halconfig) DaemonTaskHandler.getContext();
+    if (local == null) {
+      return;
+    }
+
+    synchronized (batch) {
+      batch.setStaged(local);
+      batch.setEdits(batch.getEdits() + 1);
+      batch.setLastUsed(System.currentTimeMillis());
+    }
+
+    DaemonTaskHandler.setContext(null);
+  }
+
+  /**
+   * Starts staging edits in memory rather than writing each one. Requests made with the returned id (see
+   * setCurrentBatch) see and edit the staged halconfig, until the batch is committed or aborted.
+   */
+  public String openBatch() {
+    long now = System.currentTimeMillis();
+    batches.values().removeIf(b -> now - b.getLastUsed() > BATCH_TTL_MILLIS);
+
+    String baseVersion = getHalconfigVersion();
+    HalconfigBatch batch = new HalconfigBatch()
+        .setId(UUID.randomUUID().toString())
+        .setBaseVersion(baseVersion)
+        .setStaged(transformHalconfig(readHalconfig()))
+        .setLastUsed(now);
+
+    batches.put(batch.getId(), batch);
+    log.info("Opened batch " + batch.getId());
+    return batch.getId();
+  }
+
+  /**
+   * Makes the batch's staged halconfig the running task's halconfig, so that validating and saving it as usual
+   * writes every edit in the batch at once.
+   */
+  public void commitBatch(String id) {
+    HalconfigBatch batch = batches.remove(id);
+    if (batch == null) {
+      throw new HalException(Severity.FATAL, "No open batch with id " + id);
+    }
+
+    // This task saves for real.
+    DaemonTaskHandler.setBatchId(null);
+
+    if (!batch.getBaseVersion().equals(getHalconfigVersion())) {
+      throw new HalException(
+          new ConfigProblemBuilder(Severity.FATAL, "Your halconfig was changed by someone else while this batch was open.")
+              .setRemediation("Run the batch again.")
+              .build()
+      );
+    }
+
+    log.info("Committing " + batch.getEdits() + " edits in batch " + id);
+    DaemonTaskHandler.setContext(batch.getStaged());
+  }
+
+  public boolean abortBatch(String id) {
+    return batches.remove(id) != null;
+  }
+
+  public boolean hasBatch(String id) {
+    return batches.containsKey(id);
+  }
+
+  /**
+   * @param id is the batch the current request (and any tasks it starts) belongs to, or null for none.
+   */
+  public static void setCurrentBatch(String id) {
+    DaemonTaskHandler.setBatchId(id);
+  }
+
+  private HalconfigBatch getCurrentBatch() {
+    String id = DaemonTaskHandler.getBatchId();
+    if (id == null) {
+      return null;
+    }
+
+    HalconfigBatch batch = batches.get(id);
+    if (batch == null) {
+      throw new HalException(Severity.FATAL, "Batch " + id + " is no longer open.");
+    }
+
+    batch.setLastUsed(System.currentTimeMillis());
+    return batch;
   }
 
   public void backupConfig(String deploymentName) {
@@ -176,6 +380,7 @@ public class HalconfigParser {
       writer = new AtomicFileWriter(path);
       writer.write(yamlParser.dump(objectMapper.convertValue(local, Map.class)));
       writer.commit();
+      saveCount.incrementAndGet();
     } catch (IOException e) {
       throw new HalException(
           new ConfigProblemBuilder(Severity.FATAL,
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.config.services.v1;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser;
+import com.netflix.spinnaker.halyard.config.config.v1.PatchOperation;
+import com.netflix.spinnaker.halyard.config.config.v1.StrictObjectMapper;
+import com.netflix.spinnaker.halyard.config.error.v1.IllegalConfigException;
+import com.netflix.spinnaker.halyard.config.model.v1.node.DeploymentConfiguration;
+import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig;
+import com.netflix.spinnaker.halyard.config.model.v1.node.NodeFilter;
+import com.netflix.spinnaker.halyard.config.problem.v1.ConfigProblemBuilder;
+import com.netflix.spinnaker.halyard.core.problem.v1.Problem.Severity;
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Applies many edits to a deployment at once, as a JSON Patch against the deployment as it's written in the halconfig.
+ * Either every operation applies or none do, and validation only covers the nodes the patch touched.
+ */
+@Component
+public class PatchService {
+  @Autowired
+  private HalconfigParser halconfigParser;
+
+  @Autowired
+  private DeploymentService deploymentService;
+
+  @Autowired
+  private ValidateService validateService;
+
+  @Autowired
+  private StrictObjectMapper objectMapper;
+
+  public void patchDeployment(String deploymentName, List<PatchOperation> operations) {
+    Halconfig halconfig = halconfigParser.getHalconfig();
+    DeploymentConfiguration deployment = deploymentService.getDeploymentConfiguration(deploymentName);
+
+    JsonNode tree = objectMapper.convertValue(deployment, JsonNode.class);
+    for (int i = 0; i < operations.size(); i++) {
+      tree = apply(tree, operations.get(i), i);
+    }
+
+    DeploymentConfiguration patched;
+    try {
+      patched = objectMapper.convertValue(tree, DeploymentConfiguration.class);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalConfigException(new ConfigProblemBuilder(Severity.FATAL,
+          "The patched deployment isn't a valid deployment configuration: " + e.getMessage()).build());
+    }
+
+    if (!deploymentName.equals(patched.getName())) {
+      throw new IllegalConfigException(new ConfigProblemBuilder(Severity.FATAL,
+          "A patch can't rename deployment \"" + deploymentName + "\"").build());
+    }
+
+    List<DeploymentConfiguration> deployments = halconfig.getDeploymentConfigurations();
+    deployments.set(deployments.indexOf(deployment), patched);
+  }
+
+  public ProblemSet validatePatch(String deploymentName, List<PatchOperation> operations) {
+    return validateService.validateMatchingFilter(dirtyNodes(deploymentName, operations));
+  }
+
+  /**
+   * @return a filter matching the deployment and every node a patch may have changed. Accounts addressed by index are
+   * resolved to their names as of after the patch.
+   */
+  NodeFilter dirtyNodes(String deploymentName, List<PatchOperation> operations) {
+    DeploymentConfiguration deployment = deploymentService.getDeploymentConfiguration(deploymentName);
+    JsonNode tree = objectMapper.convertValue(deployment, JsonNode.class);
+    NodeFilter filter = new NodeFilter().setDeployment(deploymentName);
+
+    for (PatchOperation operation : operations) {
+      addDirtyNodes(filter, tree, pointer(operation.getPath()));
+      if (operation.getOp() == PatchOperation.Op.move) {
+        addDirtyNodes(filter, tree, pointer(operation.getFrom()));
+      }
+    }
+
+    return filter;
+  }
+
+  private static void addDirtyNodes(NodeFilter filter, JsonNode tree, List<String> path) {
+    if (path.isEmpty()) {
+      filter.withAnyProvider()
+          .withAnyAccount()
+          .setPersistentStorage()
+          .setFeatures()
+          .setSecurity();
+      return;
+    }
+
+    switch (path.get(0)) {
+      case "providers":
+        if (path.size() == 1) {
+          filter.withAnyProvider().withAnyAccount();
+        } else if (path.size() == 2 || (path.get(2).equals("accounts") && path.size() == 3)) {
+          filter.setProvider(path.get(1)).withAnyAccount();
+        } else if (path.get(2).equals("accounts")) {
+          String accountName = accountName(tree.path("providers").path(path.get(1)).path("accounts"), path.get(3));
+          filter.setProvider(path.get(1));
+          if (accountName != null) {
+            filter.setAccount(accountName);
+          } else {
+            filter.withAnyAccount();
+          }
+        } else {
+          filter.setProvider(path.get(1));
+        }
+        break;
+      case "persistentStorage":
+        filter.setPersistentStorage();
+        break;
+      case "features":
+        filter.setFeatures();
+        break;
+      case "security":
+        filter.setSecurity();
+        break;
+      case "deploymentEnvironment":
+        filter.setDeploymentEnvironment();
+        break;
+      case "metricStores":
+        filter.setMetricStores();
+        if (path.size() > 1) {
+          filter.setMetricStore(path.get(1));
+        }
+        break;
+      case "ci":
+        if (path.size() > 1) {
+          filter.setCi(path.get(1)).withAnyMaster();
+        } else {
+          filter.withAnyCi().withAnyMaster();
+        }
+        break;
+      default:
+        // A field of the deployment itself, which the filter already matches.
+        break;
+    }
+  }
+
+  private static String accountName(JsonNode accounts, String index) {
+    if (!accounts.isArray() || accounts.size() == 0) {
+      return null;
+    }
+
+    JsonNode account;
+    if (index.equals("-")) {
+      account = accounts.get(accounts.size() - 1);
+    } else {
+      try {
+        account = accounts.get(Integer.parseInt(index));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    return account == null || !account.has("name") ? null : account.get("name").asText();
+  }
+
+  private static JsonNode apply(JsonNode tree, PatchOperation operation, int index) {
+    if (operation.getOp() == null) {
+      throw invalidOperation(index, "it has no \"op\"");
+    }
+
+    List<String> path = pointer(operation.getPath());
+    switch (operation.getOp()) {
+      case add:
+        return add(tree, path, value(operation, index), index);
+      case remove:
+        return remove(tree, path, index);
+      case replace:
+        return replace(tree, path, value(operation, index), index);
+      case move:
+        List<String> from = pointer(operation.getFrom());
+        JsonNode moved = get(tree, from, index);
+        return add(remove(tree, from, index), path, moved, index);
+      case copy:
+        return add(tree, path, get(tree, pointer(operation.getFrom()), index).deepCopy(), index);
+      case test:
+        if (!get(tree, path, index).equals(value(operation, index))) {
+          throw invalidOperation(index, "the value at \"" + operation.getPath() + "\" doesn't match");
+        }
+        return tree;
+      default:
+        throw invalidOperation(index, "\"" + operation.getOp() + "\" isn't supported");
+    }
+  }
+
+  private static JsonNode add(JsonNode tree, List<String> path, JsonNode value, int index) {
+    if (path.isEmpty()) {
+      return value;
+    }
+
+    JsonNode parent = get(tree, path.subList(0, path.size() - 1), index);
+    String last = path.get(path.size() - 1);
+    if (parent.isObject()) {
+      ((ObjectNode) parent).set(last, value);
+    } else if (parent.isArray()) {
+      ArrayNode array = (ArrayNode) parent;
+      if (last.equals("-")) {
+        array.add(value);
+      } else {
+        array.insert(arrayIndex(array, last, true, index), value);
+      }
+    } else {
+      throw invalidOperation(index, "\"" + join(path) + "\" isn't inside an object or array");
+    }
+
+    return tree;
+  }
+
+  private static JsonNode remove(JsonNode tree, List<String> path, int index) {
+    if (path.isEmpty()) {
+      throw invalidOperation(index, "the whole deployment can't be removed");
+    }
+
+    JsonNode parent = get(tree, path.subList(0, path.size() - 1), index);
+    String last = path.get(path.size() - 1);
+    if (parent.isObject() && parent.has(last)) {
+      ((ObjectNode) parent).remove(last);
+    } else if (parent.isArray()) {
+      ArrayNode array = (ArrayNode) parent;
+      array.remove(arrayIndex(array, last, false, index));
+    } else {
+      throw invalidOperation(index, "there's nothing at \"" + join(path) + "\" to remove");
+    }
+
+    return tree;
+  }
+
+  private static JsonNode replace(JsonNode tree, List<String> path, JsonNode value, int index) {
+    get(tree, path, index);
+    if (path.isEmpty()) {
+      return value;
+    }
+
+    JsonNode parent = get(tree, path.subList(0, path.size() - 1), index);
+    String last = path.get(path.size() - 1);
+    if (parent.isObject()) {
+      ((ObjectNode) parent).set(last, value);
+    } else {
+      ArrayNode array = (ArrayNode) parent;
+      array.set(arrayIndex(array, last, false, index), value);
+    }
+
+    return tree;
+  }
+
+  private static JsonNode get(JsonNode tree, List<String> path, int index) {
+    JsonNode node = tree;
+    for (int i = 0; i < path.size(); i++) {
+      String token = path.get(i);
+      if (node.isObject() && node.has(token)) {
+        node = node.get(token);
+      } else if (node.isArray()) {
+        node = node.get(arrayIndex((ArrayNode) node, token, false, index));
+      } else {
+        throw invalidOperation(index, "there's nothing at \"" + join(path.subList(0, i + 1)) + "\"");
+      }
+    }
+
+    return node;
+  }
+
+  private static int arrayIndex(ArrayNode array, String token, boolean allowEnd, int index) {
+    int result;
+    try {
+      result = Integer.parseInt(token);
+    } catch (NumberFormatException e) {
+      throw invalidOperation(index, "\"" + token + "\" isn't an array index");
+    }
+
+    int max = allowEnd ? array.size() : array.size() - 1;
+    if (result < 0 || result > max) {
+      throw invalidOperation(index, "array index " + token + " is out of bounds");
+    }
+
+    return result;
+  }
+
+  private static JsonNode value(PatchOperation operation, int index) {
+    if (operation.getValue() == null) {
+      throw invalidOperation(index, "it has no \"value\"");
+    }
+
+    return operation.getValue();
+  }
+
+  /**
+   * Splits a JSON pointer (RFC 6901) into its unescaped tokens.
+   */
+  private static List<String> pointer(String pointer) {
+    if (pointer == null || pointer.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    if (!pointer.startsWith("/")) {
+      throw new IllegalConfigException(new ConfigProblemBuilder(Severity.FATAL,
+          "\"" + pointer + "\" isn't a JSON pointer").setRemediation("Paths must start with \"/\".").build());
+    }
+
+    return Arrays.stream(pointer.substring(1).split("/", -1))
+        .map(t -> t.replace("~1", "/").replace("~0", "~"))
+        .collect(Collectors.toList());
+  }
+
+  private static String join(List<String> path) {
+    return path.stream().map(t -> "/" + t.replace("~", "~0").replace("/", "~1")).collect(Collectors.joining());
+  }
+
+  private static IllegalConfigException invalidOperation(int index, String reason) {
+    return new IllegalConfigException(new ConfigProblemBuilder(Severity.FATAL,
+        "Patch operation " + index + " can't be applied: " + reason).build());
+  }
+}
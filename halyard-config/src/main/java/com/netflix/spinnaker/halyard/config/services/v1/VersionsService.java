@@ -23,17 +23,27 @@ import com.netflix.spinnaker.halyard.core.error.v1.HalException;
 import com.netflix.spinnaker.halyard.core.registry.v1.BillOfMaterials;
 import com.netflix.spinnaker.halyard.core.registry.v1.ProfileRegistry;
 import com.netflix.spinnaker.halyard.core.registry.v1.Versions;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.yaml.snakeyaml.Yaml;
 import retrofit.RetrofitError;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.netflix.spinnaker.halyard.core.problem.v1.Problem.Severity.FATAL;
 
 @Component
-public class VersionsService {
+public class VersionsService implements VersionsProvider {
+  private static final int MAX_BOMS = 32;
+  // Long enough for one generate or deploy to share a BOM whose version (e.g. "nightly") can be republished.
+  private static final long MUTABLE_BOM_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
   @Autowired
   ProfileRegistry profileRegistry;
 
@@ -43,7 +53,26 @@ public class VersionsService {
   @Autowired
   StrictObjectMapper strictObjectMapper;
 
+  private final Map<String, LoadedBom> boms = Collections.synchronizedMap(new LinkedHashMap<String, LoadedBom>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, LoadedBom> eldest) {
+      return size() > MAX_BOMS;
+    }
+  });
+
+  @Data
+  @AllArgsConstructor
+  private static class LoadedBom {
+    BillOfMaterials bom;
+    long loadedAt;
+    boolean immutable;
+
+    boolean isFresh() {
+      return immutable || System.currentTimeMillis() - loadedAt < MUTABLE_BOM_TTL_MILLIS;
+    }
+  }
 
+  @Override
   public Versions getVersions() {
     try {
       return strictObjectMapper.convertValue(
@@ -56,6 +85,10 @@ public class VersionsService {
     }
   }
 
+  /**
+   * BOMs are parsed once per version and shared by everyone generating or deploying it, so the returned BOM must not
+   * be modified. Released versions never change; others are loaded again once they're a minute old.
+   */
   public BillOfMaterials getBillOfMaterials(String version) {
     if (version == null || version.isEmpty()) {
       throw new HalException(
@@ -65,6 +98,11 @@ public class VersionsService {
       );
     }
 
+    LoadedBom loaded = boms.get(version);
+    if (loaded != null && loaded.isFresh()) {
+      return loaded.getBom();
+    }
+
     try {
       String bomName = ProfileRegistry.bomPath(version);
 
@@ -73,6 +111,7 @@ public class VersionsService {
           BillOfMaterials.class
       );
 
+      boms.put(version, new LoadedBom(bom, System.currentTimeMillis(), ProfileRegistry.isImmutable(bomName)));
       return bom;
     } catch (RetrofitError | IOException e) {
       throw new HalException(
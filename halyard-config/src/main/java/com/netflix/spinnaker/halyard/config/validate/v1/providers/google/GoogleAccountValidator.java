@@ -40,7 +40,7 @@ public class GoogleAccountValidator extends Validator<GoogleAccount> {
   public void validate(ConfigProblemSetBuilder p, GoogleAccount n) {
     DaemonTaskHandler.message("Validating " + n.getNodeName() + " with " + GoogleAccountValidator.class.getSimpleName());
 
-    GoogleNamedAccountCredentials credentials = n.getNamedAccountCredentials(halyardVersion, p);
+    GoogleNamedAccountCredentials credentials = GoogleNamedAccountCredentialsFactory.build(n, halyardVersion, p);
     if (credentials == null) {
       return;
     } else {
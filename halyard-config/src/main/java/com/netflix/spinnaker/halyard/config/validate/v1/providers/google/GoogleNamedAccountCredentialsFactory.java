@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Google, Inc.
+ * Copyright 2017 Google, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License")
  * you may not use this file except in compliance with the License.
@@ -12,42 +12,28 @@
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
  * See the License for the specific language governing permissions and
  * limitations under the License.
+ *
  */
 
-package com.netflix.spinnaker.halyard.config.model.v1.providers.google;
+package com.netflix.spinnaker.halyard.config.validate.v1.providers.google;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.netflix.spinnaker.clouddriver.google.ComputeVersion;
 import com.netflix.spinnaker.clouddriver.google.security.GoogleNamedAccountCredentials;
-import com.netflix.spinnaker.halyard.config.model.v1.node.Validator;
+import com.netflix.spinnaker.halyard.config.model.v1.providers.google.GoogleAccount;
 import com.netflix.spinnaker.halyard.config.problem.v1.ConfigProblemSetBuilder;
 import com.netflix.spinnaker.halyard.config.validate.v1.util.ValidatingFileReader;
 import com.netflix.spinnaker.halyard.core.problem.v1.Problem;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
-import lombok.ToString;
 import org.apache.commons.lang.StringUtils;
 
-import java.util.ArrayList;
-import java.util.List;
-
-@Data
-@EqualsAndHashCode(callSuper = true)
-@ToString(callSuper = true)
-public class GoogleAccount extends CommonGoogleAccount implements Cloneable {
-  private boolean alphaListed;
-  private List<String> imageProjects = new ArrayList<>();
-
-  @Override
-  public void accept(ConfigProblemSetBuilder psBuilder, Validator v) {
-    v.validate(psBuilder, this);
-  }
-
-  @JsonIgnore
-  public GoogleNamedAccountCredentials getNamedAccountCredentials(String version, ConfigProblemSetBuilder p) {
+/**
+ * Builds clouddriver's credentials for a google account. This lives here rather than on GoogleAccount, so the model
+ * (which the CLI depends on) doesn't need the clouddriver SDKs.
+ */
+public class GoogleNamedAccountCredentialsFactory {
+  public static GoogleNamedAccountCredentials build(GoogleAccount account, String version, ConfigProblemSetBuilder p) {
     String jsonKey = null;
-    if (!StringUtils.isEmpty(getJsonPath())) {
-      jsonKey = ValidatingFileReader.contents(p, getJsonPath());
+    if (!StringUtils.isEmpty(account.getJsonPath())) {
+      jsonKey = ValidatingFileReader.contents(p, account.getJsonPath());
 
       if (jsonKey == null) {
         return null;
@@ -56,7 +42,7 @@ public class GoogleAccount extends CommonGoogleAccount implements Cloneable {
       }
     }
 
-    if (StringUtils.isEmpty(getProject())) {
+    if (StringUtils.isEmpty(account.getProject())) {
       p.addProblem(Problem.Severity.ERROR, "No google project supplied.");
       return null;
     }
@@ -64,14 +50,14 @@ public class GoogleAccount extends CommonGoogleAccount implements Cloneable {
     try {
       return new GoogleNamedAccountCredentials.Builder()
           .jsonKey(jsonKey)
-          .project(getProject())
-          .computeVersion(isAlphaListed() ? ComputeVersion.ALPHA : ComputeVersion.DEFAULT)
-          .imageProjects(getImageProjects())
+          .project(account.getProject())
+          .computeVersion(account.isAlphaListed() ? ComputeVersion.ALPHA : ComputeVersion.DEFAULT)
+          .imageProjects(account.getImageProjects())
           .applicationName("halyard " + version)
           .build();
     } catch (Exception e) {
       p.addProblem(Problem.Severity.ERROR, "Error instantiating Google credentials: " + e.getMessage() + ".")
-          .setRemediation("Do the provided credentials have access to project " + getProject() + "?");
+          .setRemediation("Do the provided credentials have access to project " + account.getProject() + "?");
       return null;
     }
   }
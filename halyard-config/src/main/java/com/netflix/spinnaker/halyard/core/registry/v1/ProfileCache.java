@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.registry.v1;
+
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Registry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed cache of objects read from the ProfileRegistry, on disk so it survives restarts.
+ *
+ * Contents are stored once per distinct hash under "blobs", so the many profiles that don't change between versions
+ * are only stored once. Each key maps to the hash of its contents through a small file under "names". Once the blobs
+ * take up more than maxBytes, the least recently read are evicted, along with the names that pointed at them.
+ */
+@Slf4j
+public class ProfileCache {
+  private static final String NAMES = "names";
+  private static final String BLOBS = "blobs";
+
+  private final Path names;
+  private final Path blobs;
+  private final long maxBytes;
+  private final long mutableTtlMillis;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter bytesSaved;
+
+  public interface Fetcher {
+    byte[] fetch() throws IOException;
+  }
+
+  public ProfileCache(Path directory, long maxBytes, long mutableTtlMillis, Registry registry) {
+    this.names = directory.resolve(NAMES);
+    this.blobs = directory.resolve(BLOBS);
+    this.maxBytes = maxBytes;
+    this.mutableTtlMillis = mutableTtlMillis;
+    this.hits = registry.counter("profileCache.hits");
+    this.misses = registry.counter("profileCache.misses");
+    this.bytesSaved = registry.counter("profileCache.bytesSaved");
+  }
+
+  /**
+   * @param key identifies the object in the registry, including the bucket it's read from.
+   * @param immutable is true iff the object's contents can never change, so it never has to be fetched again.
+   * @param fetcher reads the object from the registry on a miss. Mutable objects that can't be fetched again are
+   *                served from the cache when possible.
+   */
+  public byte[] get(String key, boolean immutable, Fetcher fetcher) throws IOException {
+    Path name = names.resolve(hash(key.getBytes(StandardCharsets.UTF_8)));
+    byte[] cached = read(name);
+    if (cached != null && (immutable || age(name) < mutableTtlMillis)) {
+      hits.increment();
+      bytesSaved.increment(cached.length);
+      return cached;
+    }
+
+    misses.increment();
+    byte[] contents;
+    try {
+      contents = fetcher.fetch();
+    } catch (IOException e) {
+      if (cached == null) {
+        throw e;
+      }
+
+      log.warn("Unable to fetch " + key + ", serving the cached copy instead", e);
+      return cached;
+    }
+
+    try {
+      store(name, contents);
+    } catch (IOException e) {
+      log.warn("Unable to cache " + key, e);
+    }
+
+    return contents;
+  }
+
+  private byte[] read(Path name) {
+    try {
+      Path blob = blobs.resolve(new String(Files.readAllBytes(name), StandardCharsets.UTF_8));
+      byte[] result = Files.readAllBytes(blob);
+      // Eviction goes by last modification, so mark the blob as recently used.
+      Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+      return result;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      log.warn("Unable to read cached " + name, e);
+      return null;
+    }
+  }
+
+  private long age(Path name) {
+    try {
+      return System.currentTimeMillis() - Files.getLastModifiedTime(name).toMillis();
+    } catch (IOException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  private synchronized void store(Path name, byte[] contents) throws IOException {
+    String hash = hash(contents);
+    Path blob = blobs.resolve(hash);
+    if (!Files.exists(blob)) {
+      write(blob, contents);
+    }
+
+    write(name, hash.getBytes(StandardCharsets.UTF_8));
+    evict();
+  }
+
+  private static void write(Path path, byte[] contents) throws IOException {
+    Files.createDirectories(path.getParent());
+    Path tmp = path.resolveSibling(path.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    try {
+      Files.write(tmp, contents);
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private void evict() throws IOException {
+    List<Path> byLastUse;
+    try (Stream<Path> files = Files.list(blobs)) {
+      byLastUse = files.collect(Collectors.toList());
+    }
+
+    byLastUse.sort(Comparator.comparingLong(ProfileCache::lastModified));
+
+    long total = byLastUse.stream().mapToLong(ProfileCache::size).sum();
+    boolean evicted = false;
+    for (Path blob : byLastUse) {
+      if (total <= maxBytes) {
+        break;
+      }
+
+      total -= size(blob);
+      Files.deleteIfExists(blob);
+      evicted = true;
+    }
+
+    if (evicted) {
+      deleteDanglingNames();
+    }
+  }
+
+  private void deleteDanglingNames() throws IOException {
+    List<Path> all;
+    try (Stream<Path> files = Files.list(names)) {
+      all = files.collect(Collectors.toList());
+    }
+
+    for (Path name : all) {
+      try {
+        String hash = new String(Files.readAllBytes(name), StandardCharsets.UTF_8);
+        if (!Files.exists(blobs.resolve(hash))) {
+          Files.deleteIfExists(name);
+        }
+      } catch (NoSuchFileException ignored) {
+      }
+    }
+  }
+
+  private static long lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static long size(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static String hash(byte[] contents) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(contents);
+      StringBuilder result = new StringBuilder();
+      for (byte b : digest) {
+        result.append(String.format("%02x", b));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is unavailable", e);
+    }
+  }
+}
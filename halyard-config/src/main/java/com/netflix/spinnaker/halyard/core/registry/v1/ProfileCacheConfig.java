@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.registry.v1;
+
+import com.netflix.spectator.api.Registry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@ConditionalOnExpression("${halyard.profileCache.enabled:true}")
+@EnableConfigurationProperties(ProfileCacheProperties.class)
+public class ProfileCacheConfig {
+  @Value("${halyard.halconfig.directory:~/.hal}")
+  String halconfigDirectory;
+
+  @Bean
+  public ProfileCache profileCache(ProfileCacheProperties properties, Registry registry) {
+    String directory = properties.getDirectory();
+    if (directory == null) {
+      directory = Paths.get(halconfigDirectory, ".cache", "profiles").toString();
+    }
+
+    directory = directory.replaceFirst("^~", System.getProperty("user.home"));
+    return new ProfileCache(Paths.get(directory),
+        properties.getMaxBytes(),
+        TimeUnit.SECONDS.toMillis(properties.getMutableTtlSeconds()),
+        registry);
+  }
+}
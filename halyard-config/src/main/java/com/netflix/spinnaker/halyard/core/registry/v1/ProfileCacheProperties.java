@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.registry.v1;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("halyard.profileCache")
+public class ProfileCacheProperties {
+  private boolean enabled = true;
+  // Defaults to a directory in the halconfig directory.
+  private String directory;
+  // Least recently used contents are evicted once the cache grows past this.
+  private long maxBytes = 64 * 1024 * 1024;
+  // How long objects that can change (e.g. versions.yml) are served from the cache before they're fetched again.
+  private long mutableTtlSeconds = 300;
+}
@@ -31,12 +31,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
+import java.util.regex.Pattern;
 
 @Component
 public class ProfileRegistry {
+  // Either a BOM or a profile, with a version that starts with a digit (e.g. "1.2.0", not "nightly").
+  private static final Pattern IMMUTABLE_OBJECT = Pattern.compile("(bom/[0-9][^/]*\\.yml|[^/]+/[0-9][^/]*/.+)");
+
   @Autowired
   String spinconfigBucket;
 
+  @Autowired(required = false)
+  ProfileCache profileCache;
+
   @Autowired
   Storage googleStorage;
 
@@ -65,8 +72,24 @@ public class ProfileRegistry {
   }
 
   public InputStream getObjectContents(String objectName) throws IOException {
+    if (profileCache == null) {
+      return new ByteArrayInputStream(download(objectName));
+    }
+
+    String key = spinconfigBucket + "/" + objectName;
+    return new ByteArrayInputStream(profileCache.get(key, isImmutable(objectName), () -> download(objectName)));
+  }
+
+  /**
+   * Objects stored under a released version are never rewritten, unlike e.g. versions.yml or a nightly BOM.
+   */
+  public static boolean isImmutable(String objectName) {
+    return IMMUTABLE_OBJECT.matcher(objectName).matches();
+  }
+
+  private byte[] download(String objectName) throws IOException {
     ByteArrayOutputStream output = new ByteArrayOutputStream();
     googleStorage.objects().get(spinconfigBucket, objectName).executeMediaAndDownloadTo(output);
-    return new ByteArrayInputStream(output.toByteArray());
+    return output.toByteArray();
   }
 }
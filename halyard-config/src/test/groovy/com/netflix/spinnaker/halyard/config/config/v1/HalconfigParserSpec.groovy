@@ -17,10 +17,16 @@
 package com.netflix.spinnaker.halyard.config.config.v1
 
 import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig
+import com.netflix.spinnaker.halyard.core.DaemonResponse
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskHandler
+import com.netflix.spinnaker.halyard.core.tasks.v1.TaskRepository
 import org.yaml.snakeyaml.Yaml
 import spock.lang.Specification
 
 import java.nio.charset.StandardCharsets
+import java.nio.file.Files
 
 class HalconfigParserSpec extends Specification {
   String HALYARD_VERSION = "0.1.0"
@@ -71,4 +77,189 @@ balyardVersion: $HALYARD_VERSION
     IllegalArgumentException ex = thrown()
     ex.message.contains("balyardVersion")
   }
+
+  void "edits made in a batch are staged rather than written"() {
+    setup:
+    File halconfig = writeHalconfig()
+    String onDisk = halconfig.text
+    String id = parser.openBatch()
+    HalconfigParser.setCurrentBatch(id)
+
+    when:
+    def edit = editCurrentDeployment("staged")
+    def read = readCurrentDeployment()
+
+    then:
+    edit.state == DaemonTask.State.SUCCESS
+    read.response.responseBody == "staged"
+    parser.batches[id].edits == 1
+    halconfig.text == onDisk
+
+    cleanup:
+    HalconfigParser.setCurrentBatch(null)
+  }
+
+  void "tasks submitted by a batched request, and their children, are handed the batch"() {
+    setup:
+    writeHalconfig()
+    String id = parser.openBatch()
+    HalconfigParser.setCurrentBatch(id)
+    editCurrentDeployment("staged")
+
+    when:
+    DaemonTask task = TaskRepository.submitTask({
+      DaemonTask child = DaemonTaskHandler.submitTask({
+        new DaemonResponse<>(parser.getHalconfig().currentDeployment, new ProblemSet())
+      }, "Read in child")
+      return DaemonTaskHandler.getTask().reapChild(child)
+    }, "Read in batch")
+    HalconfigParser.setCurrentBatch(null)
+    awaitTerminal(task)
+
+    then:
+    task.state == DaemonTask.State.SUCCESS
+    task.batchId == id
+    task.children[0].batchId == id
+    task.response.responseBody == "staged"
+
+    cleanup:
+    HalconfigParser.setCurrentBatch(null)
+  }
+
+  void "requests outside of a batch don't see its edits"() {
+    setup:
+    writeHalconfig()
+    HalconfigParser.setCurrentBatch(parser.openBatch())
+    editCurrentDeployment("staged")
+    HalconfigParser.setCurrentBatch(null)
+
+    expect:
+    readCurrentDeployment().response.responseBody == CURRENT_DEPLOYMENT
+  }
+
+  void "committing a batch writes every staged edit at once"() {
+    setup:
+    File halconfig = writeHalconfig()
+    String id = parser.openBatch()
+    HalconfigParser.setCurrentBatch(id)
+    editCurrentDeployment("first")
+    editCurrentDeployment("second")
+
+    when:
+    def commit = commit(id)
+    HalconfigParser.setCurrentBatch(null)
+
+    then:
+    commit.state == DaemonTask.State.SUCCESS
+    !parser.hasBatch(id)
+    halconfig.text.contains("currentDeployment: second")
+    readCurrentDeployment().response.responseBody == "second"
+
+    cleanup:
+    HalconfigParser.setCurrentBatch(null)
+  }
+
+  void "a batch isn't committed over a halconfig someone else changed"() {
+    setup:
+    File halconfig = writeHalconfig()
+    String id = parser.openBatch()
+    HalconfigParser.setCurrentBatch(id)
+    editCurrentDeployment("staged")
+    halconfig.append("# edited by hand\n")
+    String onDisk = halconfig.text
+
+    when:
+    def commit = commit(id)
+
+    then:
+    commit.state == DaemonTask.State.FATAL
+    commit.response.problemSet.problems[0].message.contains("changed by someone else")
+    halconfig.text == onDisk
+
+    cleanup:
+    HalconfigParser.setCurrentBatch(null)
+  }
+
+  void "batches left unused past their TTL are dropped"() {
+    setup:
+    writeHalconfig()
+    String abandoned = parser.openBatch()
+    parser.batches[abandoned].lastUsed = 0L
+
+    when:
+    String fresh = parser.openBatch()
+
+    then:
+    !parser.hasBatch(abandoned)
+    parser.hasBatch(fresh)
+
+    when:
+    HalconfigParser.setCurrentBatch(abandoned)
+    def read = readCurrentDeployment()
+
+    then:
+    read.state == DaemonTask.State.FATAL
+    read.response.problemSet.problems[0].message.contains("no longer open")
+
+    cleanup:
+    HalconfigParser.setCurrentBatch(null)
+  }
+
+  void "an edit that keeps the halconfig's length and timestamp still changes its version"() {
+    setup:
+    File halconfig = writeHalconfig()
+    long lastModified = halconfig.lastModified()
+    String before = parser.getHalconfigVersion()
+
+    when:
+    halconfig.text = halconfig.text.replace(CURRENT_DEPLOYMENT, CURRENT_DEPLOYMENT.reverse())
+    halconfig.setLastModified(lastModified)
+
+    then:
+    parser.getHalconfigVersion() != before
+  }
+
+  private File writeHalconfig() {
+    File halconfig = Files.createTempFile("halconfig", ".yml").toFile()
+    halconfig.deleteOnExit()
+    halconfig.text = """
+halyardVersion: $HALYARD_VERSION
+currentDeployment: $CURRENT_DEPLOYMENT
+deploymentConfigurations:
+- name: $CURRENT_DEPLOYMENT
+  version: $SPINNAKER_VERSION
+"""
+    parser.halconfigPath = halconfig.path
+    return halconfig
+  }
+
+  private DaemonTask editCurrentDeployment(String name) {
+    return TaskRepository.runInline({
+      parser.getHalconfig().currentDeployment = name
+      parser.saveConfig()
+      return new DaemonResponse<>(null, new ProblemSet())
+    }, "Edit")
+  }
+
+  private DaemonTask readCurrentDeployment() {
+    return TaskRepository.runInline({
+      new DaemonResponse<>(parser.getHalconfig().currentDeployment, new ProblemSet())
+    }, "Read")
+  }
+
+  private DaemonTask commit(String id) {
+    return TaskRepository.runInline({
+      parser.commitBatch(id)
+      parser.saveConfig()
+      return new DaemonResponse<>(null, new ProblemSet())
+    }, "Commit batch")
+  }
+
+  private static void awaitTerminal(DaemonTask task) {
+    synchronized (task) {
+      while (!task.state.terminal) {
+        task.wait(100)
+      }
+    }
+  }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.config.services.v1
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.halyard.config.config.v1.PatchOperation
+import com.netflix.spinnaker.halyard.config.config.v1.StrictObjectMapper
+import com.netflix.spinnaker.halyard.core.error.v1.HalException
+import spock.lang.Specification
+
+class PatchServiceSpec extends Specification {
+  final String DEPLOYMENT = "default"
+  final String PROVIDER = "kubernetes"
+  final HalconfigParserMocker mocker = new HalconfigParserMocker()
+  final String CONFIG = """
+halyardVersion: 1
+currentDeployment: $DEPLOYMENT
+deploymentConfigurations:
+- name: $DEPLOYMENT
+  version: 1
+  providers:
+    $PROVIDER:
+      enabled: true
+      accounts:
+        - name: account-0
+        - name: account-1
+  features:
+    chaos: false
+"""
+
+  PatchService patchService
+  DeploymentService deploymentService
+
+  void setup() {
+    def lookupService = new LookupService()
+    def parser = mocker.mockHalconfigParser(CONFIG)
+    lookupService.parser = parser
+
+    deploymentService = new DeploymentService()
+    deploymentService.lookupService = lookupService
+
+    patchService = new PatchService()
+    patchService.halconfigParser = parser
+    patchService.deploymentService = deploymentService
+    patchService.objectMapper = new StrictObjectMapper()
+  }
+
+  List<PatchOperation> operations(List<Map> operations) {
+    return operations.collect { new ObjectMapper().convertValue(it, PatchOperation.class) }
+  }
+
+  def "apply several operations to one deployment"() {
+    setup:
+    def patch = operations([
+        [op: "add", path: "/providers/$PROVIDER/accounts/-", value: [name: "account-2"]],
+        [op: "replace", path: "/features/chaos", value: true],
+        [op: "remove", path: "/providers/$PROVIDER/accounts/0"],
+    ])
+
+    when:
+    patchService.patchDeployment(DEPLOYMENT, patch)
+    def result = deploymentService.getDeploymentConfiguration(DEPLOYMENT)
+
+    then:
+    result.providers.kubernetes.accounts.collect { it.name } == ["account-1", "account-2"]
+    result.features.chaos
+  }
+
+  def "leave the deployment untouched when any operation fails"() {
+    setup:
+    def patch = operations([
+        [op: "replace", path: "/features/chaos", value: true],
+        [op: "remove", path: "/providers/$PROVIDER/accounts/5"],
+    ])
+
+    when:
+    patchService.patchDeployment(DEPLOYMENT, patch)
+
+    then:
+    thrown(HalException)
+    !deploymentService.getDeploymentConfiguration(DEPLOYMENT).features.chaos
+  }
+
+  def "reject patches that don't produce a valid deployment"() {
+    setup:
+    def patch = operations([
+        [op: "add", path: "/providers/$PROVIDER/noSuchField", value: true],
+    ])
+
+    when:
+    patchService.patchDeployment(DEPLOYMENT, patch)
+
+    then:
+    thrown(HalException)
+  }
+
+  def "only the accounts a patch touched are dirty"() {
+    setup:
+    def patch = operations([
+        [op: "replace", path: "/providers/$PROVIDER/accounts/1/name", value: "account-1"],
+    ])
+    def accounts = deploymentService.getDeploymentConfiguration(DEPLOYMENT).providers.kubernetes.accounts
+
+    when:
+    def filter = patchService.dirtyNodes(DEPLOYMENT, patch)
+
+    then:
+    !filter.matches(accounts[0])
+    filter.matches(accounts[1])
+    !filter.matches(deploymentService.getDeploymentConfiguration(DEPLOYMENT).features)
+  }
+}
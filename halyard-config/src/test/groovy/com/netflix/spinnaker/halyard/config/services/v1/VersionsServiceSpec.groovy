@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.config.services.v1
+
+import com.netflix.spinnaker.halyard.config.config.v1.StrictObjectMapper
+import com.netflix.spinnaker.halyard.core.error.v1.HalException
+import com.netflix.spinnaker.halyard.core.registry.v1.ProfileRegistry
+import org.yaml.snakeyaml.Yaml
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class VersionsServiceSpec extends Specification {
+  ProfileRegistry profileRegistry
+  VersionsService versionsService
+
+  void setup() {
+    profileRegistry = Mock(ProfileRegistry)
+    versionsService = new VersionsService()
+    versionsService.profileRegistry = profileRegistry
+    versionsService.yamlParser = new Yaml()
+    versionsService.strictObjectMapper = new StrictObjectMapper()
+  }
+
+  InputStream bom(String version) {
+    return new ByteArrayInputStream("version: $version\n".getBytes(StandardCharsets.UTF_8))
+  }
+
+  def "a version's BOM is only loaded once"() {
+    when:
+    def first = versionsService.getBillOfMaterials("1.0.0")
+    def second = versionsService.getBillOfMaterials("1.0.0")
+
+    then:
+    1 * profileRegistry.getObjectContents("bom/1.0.0.yml") >> bom("1.0.0")
+    first.version == "1.0.0"
+    second.is(first)
+  }
+
+  def "failures to load a BOM aren't remembered"() {
+    when:
+    versionsService.getBillOfMaterials("1.0.0")
+
+    then:
+    1 * profileRegistry.getObjectContents("bom/1.0.0.yml") >> { throw new IOException("offline") }
+    thrown(HalException)
+
+    when:
+    def result = versionsService.getBillOfMaterials("1.0.0")
+
+    then:
+    1 * profileRegistry.getObjectContents("bom/1.0.0.yml") >> bom("1.0.0")
+    result.version == "1.0.0"
+  }
+}
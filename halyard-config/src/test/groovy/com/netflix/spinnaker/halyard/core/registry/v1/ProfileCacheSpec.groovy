@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.registry.v1
+
+import com.netflix.spectator.api.DefaultRegistry
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+
+class ProfileCacheSpec extends Specification {
+  Path directory
+  DefaultRegistry registry
+
+  void setup() {
+    directory = Files.createTempDirectory("profile-cache")
+    registry = new DefaultRegistry()
+  }
+
+  ProfileCache makeCache(long maxBytes, long mutableTtlMillis) {
+    return new ProfileCache(directory, maxBytes, mutableTtlMillis, registry)
+  }
+
+  def "immutable objects are only fetched once"() {
+    setup:
+    def cache = makeCache(1024, 0)
+    def fetches = 0
+    def fetcher = { fetches++; "contents".bytes } as ProfileCache.Fetcher
+
+    when:
+    def first = cache.get("clouddriver/1.0.0/clouddriver.yml", true, fetcher)
+    def second = cache.get("clouddriver/1.0.0/clouddriver.yml", true, fetcher)
+
+    then:
+    new String(first) == "contents"
+    new String(second) == "contents"
+    fetches == 1
+    registry.counter("profileCache.hits").count() == 1
+    registry.counter("profileCache.misses").count() == 1
+    registry.counter("profileCache.bytesSaved").count() == "contents".bytes.length
+  }
+
+  def "mutable objects are fetched again once stale, and served stale if that fails"() {
+    setup:
+    def cache = makeCache(1024, 0)
+
+    when:
+    cache.get("versions.yml", false, { "v1".bytes } as ProfileCache.Fetcher)
+    def refreshed = cache.get("versions.yml", false, { "v2".bytes } as ProfileCache.Fetcher)
+    def stale = cache.get("versions.yml", false, { throw new IOException("offline") } as ProfileCache.Fetcher)
+
+    then:
+    new String(refreshed) == "v2"
+    new String(stale) == "v2"
+  }
+
+  def "identical contents are stored once, and the least recently used are evicted along with their names"() {
+    setup:
+    def cache = makeCache(8, Long.MAX_VALUE)
+
+    when:
+    cache.get("a/1.0.0/profile", true, { "1234".bytes } as ProfileCache.Fetcher)
+    cache.get("a/1.0.1/profile", true, { "1234".bytes } as ProfileCache.Fetcher)
+
+    then:
+    Files.list(directory.resolve("blobs")).count() == 1
+
+    when:
+    cache.get("b/1.0.0/profile", true, { "5678".bytes } as ProfileCache.Fetcher)
+    Files.list(directory.resolve("blobs")).each { Files.setLastModifiedTime(it, FileTime.fromMillis(0)) }
+    cache.get("b/1.0.0/profile", true, { "5678".bytes } as ProfileCache.Fetcher)
+    cache.get("c/1.0.0/profile", true, { "9012".bytes } as ProfileCache.Fetcher)
+    def refetched = false
+    cache.get("c/1.0.0/profile", true, { refetched = true; "9012".bytes } as ProfileCache.Fetcher)
+
+    then:
+    Files.list(directory.resolve("blobs")).count() == 2
+    Files.list(directory.resolve("names")).count() == 2
+    !refetched
+  }
+
+  def "objects with the same name in different buckets are cached apart"() {
+    setup:
+    def cache = makeCache(1024, Long.MAX_VALUE)
+
+    when:
+    def release = cache.get("halconfig/bom/1.0.0.yml", true, { "release".bytes } as ProfileCache.Fetcher)
+    def mirror = cache.get("mirror/bom/1.0.0.yml", true, { "mirror".bytes } as ProfileCache.Fetcher)
+
+    then:
+    new String(release) == "release"
+    new String(mirror) == "mirror"
+  }
+
+  @Unroll
+  def "#objectName is immutable: #immutable"() {
+    expect:
+    ProfileRegistry.isImmutable(objectName) == immutable
+
+    where:
+    objectName                            || immutable
+    "bom/1.0.0.yml"                       || true
+    "bom/nightly.yml"                     || false
+    "versions.yml"                        || false
+    "clouddriver/1.0.0/clouddriver.yml"   || true
+    "clouddriver/nightly/clouddriver.yml" || false
+  }
+}
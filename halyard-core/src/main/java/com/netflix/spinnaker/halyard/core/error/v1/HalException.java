@@ -61,6 +61,11 @@ public class HalException extends RuntimeException {
     this.problems = new ProblemSet(new ArrayList<>(Collections.singletonList(problem)));
   }
 
+  public HalException(Problem problem, int responseCode) {
+    this(problem);
+    this.responseCode = responseCode;
+  }
+
   public HalException(List<Problem> problems) {
     super();
     this.problems = new ProblemSet(problems);
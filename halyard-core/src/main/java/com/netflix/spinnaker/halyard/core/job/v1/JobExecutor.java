@@ -17,18 +17,46 @@
 
 package com.netflix.spinnaker.halyard.core.job.v1;
 
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskInterrupted;
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 //TODO(lwander) unify with original job executor: https://github.com/spinnaker/rosco/blob/bf718907888a7d95a0da6e21ec0e00c0709c4e19/rosco-core/src/main/groovy/com/netflix/spinnaker/rosco/jobs/JobExecutor.groovy
+@Slf4j
 public abstract class JobExecutor {
-  abstract public String startJob(JobRequest jobRequest, Map<String, String> env, InputStream stdIn, ByteArrayOutputStream stdOut, ByteArrayOutputStream stdErr);
+  abstract public String startJob(JobRequest jobRequest, Map<String, String> env, InputStream stdIn, JobOutputBuffer stdOut, JobOutputBuffer stdErr);
 
+  /**
+   * @return true if the job is still running.
+   */
   abstract public boolean jobExists(String jobId);
 
-  abstract public JobStatus updateJob(String jobId);
+  /**
+   * @param stdOutOffset is the offset to read stdout from, e.g. the stdOutOffset of a previously returned status.
+   * @param stdErrOffset is the same for stderr.
+   * @return the job's status, or null if the job is unknown. A finished job's status can still be read for a while
+   * after it exits, however many times it's asked for.
+   */
+  abstract public JobStatus updateJob(String jobId, long stdOutOffset, long stdErrOffset);
+
+  public JobStatus updateJob(String jobId) {
+    return updateJob(jobId, 0, 0);
+  }
+
+  /**
+   * @return a future that completes with the job's final status as soon as it exits. Every caller gets the same
+   * status, until the finished job is forgotten.
+   */
+  abstract public CompletableFuture<JobStatus> waitForJob(String jobId);
 
   abstract public void cancelJob(String jobId);
 
@@ -36,32 +64,48 @@ public abstract class JobExecutor {
 
   public String startJob(JobRequest jobRequest) {
     InputStream stdIn = new ByteArrayInputStream("".getBytes());
-    ByteArrayOutputStream stdOut = new ByteArrayOutputStream();
-    ByteArrayOutputStream stdErr = new ByteArrayOutputStream();
+    JobOutputBuffer stdOut = outputBuffer(jobRequest, "stdout");
+    JobOutputBuffer stdErr = outputBuffer(jobRequest, "stderr");
     return startJob(jobRequest, System.getenv(), stdIn, stdOut, stdErr);
   }
 
   public String startJobFromStandardStreams(JobRequest jobRequest) {
     InputStream stdIn = System.in;
-    ByteArrayOutputStream stdOut = new TeeByteArrayOutputStream(System.out);
-    ByteArrayOutputStream stdErr = new TeeByteArrayOutputStream(System.err);
+    JobOutputBuffer stdOut = new TeeJobOutputBuffer(System.out);
+    JobOutputBuffer stdErr = new TeeJobOutputBuffer(System.err);
     return startJob(jobRequest, System.getenv(), stdIn, stdOut, stdErr);
   }
 
-  public JobStatus backoffWait(String jobId, long minWaitMillis, long maxWaitMillis) {
-    JobStatus result = updateJob(jobId);
-    long waitTime = minWaitMillis;
-    while (result == null || result.getState() == JobStatus.State.RUNNING) {
+  private static JobOutputBuffer outputBuffer(JobRequest jobRequest, String stream) {
+    long maxBytes = jobRequest.getMaxOutputBytes() == null ? JobOutputBuffer.DEFAULT_MAX_BYTES : jobRequest.getMaxOutputBytes();
+    Path spillPath = null;
+    if (jobRequest.isSpillOutput()) {
+      String command = Paths.get(jobRequest.getTokenizedCommand().get(0)).getFileName().toString();
       try {
-        Thread.sleep(waitTime);
-      } catch (InterruptedException ignored) {
+        // Deleted along with the job, see JobOutputBuffer#deleteSpill.
+        spillPath = Files.createTempFile("halyard-" + command + "-", "." + stream);
+      } catch (IOException e) {
+        log.warn("Unable to create a file to spill " + command + " " + stream + " to, keeping it in memory only: ", e);
       }
-
-      waitTime <<= 1;
-      waitTime = Math.min(maxWaitMillis, waitTime);
-      result = updateJob(jobId);
     }
 
-    return result;
+    return new JobOutputBuffer(maxBytes, spillPath);
+  }
+
+  /**
+   * Block until the job exits. The wait bounds are only kept for compatibility: there is no polling any more, this
+   * returns as soon as the job's process does.
+   */
+  public JobStatus backoffWait(String jobId, long minWaitMillis, long maxWaitMillis) {
+    try {
+      return waitForJob(jobId).get();
+    } catch (InterruptedException e) {
+      cancelJob(jobId);
+      Thread.currentThread().interrupt();
+      throw new DaemonTaskInterrupted("Interrupted while waiting on job " + jobId, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+    }
   }
 }
@@ -20,27 +20,27 @@ package com.netflix.spinnaker.halyard.core.job.v1;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.exec.*;
-import rx.Scheduler;
-import rx.functions.Action0;
-import rx.schedulers.Schedulers;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class JobExecutorLocal extends JobExecutor {
-  private Scheduler scheduler = Schedulers.computation();
+  // How long a finished job's status is kept around for anyone who hasn't collected it yet.
+  static final long FINISHED_JOB_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
   private Map<String, ExecutionHandler> jobIdToHandlerMap = new ConcurrentHashMap<>();
+  long finishedJobRetentionMillis = FINISHED_JOB_RETENTION_MILLIS;
 
   @Override
-  public String startJob(JobRequest jobRequest, Map<String, String> env, InputStream stdIn, ByteArrayOutputStream stdOut, ByteArrayOutputStream stdErr) {
+  public String startJob(JobRequest jobRequest, Map<String, String> env, InputStream stdIn, JobOutputBuffer stdOut, JobOutputBuffer stdErr) {
     List<String> tokenizedCommand = jobRequest.getTokenizedCommand();
     if (tokenizedCommand == null || tokenizedCommand.isEmpty()) {
       throw new IllegalArgumentException("JobRequest must include a tokenized command to run");
@@ -50,126 +50,173 @@ public class JobExecutorLocal extends JobExecutor {
         ExecuteWatchdog.INFINITE_TIMEOUT :
         jobRequest.getTimeoutMillis();
 
+    reapFinishedJobs();
+
     String jobId = UUID.randomUUID().toString();
 
-    log.info("Scheduling job " + jobRequest.getTokenizedCommand() + " with id " + jobId);
-
-    scheduler.createWorker().schedule(
-        new Action0() {
-          @Override
-          public void call() {
-            PumpStreamHandler pumpStreamHandler = new PumpStreamHandler(stdOut, stdErr, stdIn);
-            CommandLine commandLine;
-
-            log.info("Executing " + jobId + "with tokenized command: " + tokenizedCommand);
-
-            // Grab the first element as the command.
-            commandLine = new CommandLine(jobRequest.getTokenizedCommand().get(0));
-
-            // Treat the rest as arguments.
-            String[] arguments = Arrays.copyOfRange(tokenizedCommand.toArray(new String[0]), 1, tokenizedCommand.size());
-
-            commandLine.addArguments(arguments, false);
-
-            DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
-            ExecuteWatchdog watchdog = new ExecuteWatchdog(timeoutMillis) {
-              @Override
-              public void timeoutOccured(Watchdog w) {
-                // If a watchdog is passed in, this was an actual time-out. Otherwise, it is likely
-                // the result of calling watchdog.destroyProcess().
-                if (w != null) {
-                  log.warn("Job " + jobId + " timed-out after " + timeoutMillis + "ms.");
-
-                  cancelJob(jobId);
-                }
-
-                super.timeoutOccured(w);
-              }
-            };
-
-            Executor executor = new DefaultExecutor();
-            executor.setStreamHandler(pumpStreamHandler);
-            executor.setWatchdog(watchdog);
-            try {
-              executor.execute(commandLine, env, resultHandler);
-            } catch (IOException e) {
-              throw new RuntimeException("Execution of " + jobId + " failed ", e);
-            }
-
-            // Give the job some time to spin up.
-            try {
-              Thread.sleep(500);
-            } catch (InterruptedException e) {
-            }
-
-            jobIdToHandlerMap.put(jobId, new ExecutionHandler()
-                .setResultHandler(resultHandler)
-                .setWatchdog(watchdog)
-                .setStdOut(stdOut)
-                .setStdErr(stdErr));
-          }
-        });
+    // Waits here for a free slot if too many commands are already running.
+    JobScheduler.Permit permit = JobScheduler.schedule(jobId, tokenizedCommand, !jobRequest.isLongRunning());
+
+    log.info("Executing " + jobId + " with tokenized command: " + tokenizedCommand);
+
+    PumpStreamHandler pumpStreamHandler = new PumpStreamHandler(stdOut, stdErr, stdIn);
+    CommandLine commandLine;
+
+    // Grab the first element as the command.
+    commandLine = new CommandLine(jobRequest.getTokenizedCommand().get(0));
+
+    // Treat the rest as arguments.
+    String[] arguments = Arrays.copyOfRange(tokenizedCommand.toArray(new String[0]), 1, tokenizedCommand.size());
+
+    commandLine.addArguments(arguments, false);
+
+    ExecuteWatchdog watchdog = new ExecuteWatchdog(timeoutMillis) {
+      @Override
+      public void timeoutOccured(Watchdog w) {
+        // If a watchdog is passed in, this was an actual time-out. Otherwise, it is likely
+        // the result of calling watchdog.destroyProcess().
+        if (w != null) {
+          log.warn("Job " + jobId + " timed-out after " + timeoutMillis + "ms.");
+
+          cancelJob(jobId);
+        }
+
+        super.timeoutOccured(w);
+      }
+    };
+
+    ExecutionHandler handler = new ExecutionHandler()
+        .setJobId(jobId)
+        .setWatchdog(watchdog)
+        .setStdOut(stdOut)
+        .setStdErr(stdErr)
+        .setPermit(permit);
+
+    // Register the job before it starts, so a job that exits immediately is never missed.
+    jobIdToHandlerMap.put(jobId, handler);
+
+    Executor executor = new DefaultExecutor();
+    executor.setStreamHandler(pumpStreamHandler);
+    executor.setWatchdog(watchdog);
+    try {
+      executor.execute(commandLine, env, new ExecuteResultHandler() {
+        @Override
+        public void onProcessComplete(int exitValue) {
+          handler.complete(exitValue);
+        }
+
+        @Override
+        public void onProcessFailed(ExecuteException e) {
+          handler.complete(e.getExitValue());
+        }
+      });
+    } catch (IOException e) {
+      log.warn("Execution of " + jobId + " failed: ", e);
+      stdErr.write(("Execution failed: " + e.getMessage()).getBytes());
+      handler.complete(-1);
+    }
 
     return jobId;
   }
 
   @Data
-  private class ExecutionHandler {
-    DefaultExecuteResultHandler resultHandler;
+  private static class ExecutionHandler {
+    String jobId;
     ExecuteWatchdog watchdog;
-    ByteArrayOutputStream stdOut;
-    ByteArrayOutputStream stdErr;
+    JobOutputBuffer stdOut;
+    JobOutputBuffer stdErr;
+    JobScheduler.Permit permit;
+    volatile Integer exitValue;
+    volatile Long completedAt;
+    // Completed with the job's final status by the process-exit callback, once all of its output has been collected.
+    final CompletableFuture<JobStatus> completion = new CompletableFuture<>();
+
+    JobStatus status(long stdOutOffset, long stdErrOffset) {
+      // Read before the output, which is complete by the time the exit value is set.
+      Integer exitValue = this.exitValue;
+      JobOutputBuffer.Output out = stdOut.read(stdOutOffset);
+      JobOutputBuffer.Output err = stdErr.read(stdErrOffset);
+      JobStatus result = new JobStatus()
+          .setId(jobId)
+          .setStdOut(out.getData())
+          .setStdErr(err.getData())
+          .setStdOutOffset(out.getNextOffset())
+          .setStdErrOffset(err.getNextOffset())
+          .setTruncated(out.isTruncated() || err.isTruncated());
+
+      if (exitValue == null) {
+        result.setState(JobStatus.State.RUNNING);
+      } else {
+        result.setState(JobStatus.State.COMPLETED)
+            .setResult(exitValue == 0 ? JobStatus.Result.SUCCESS : JobStatus.Result.FAILURE);
+      }
+
+      return result;
+    }
+
+    void complete(int exitValue) {
+      log.info(jobId + " has terminated with exit code " + exitValue);
+      this.exitValue = exitValue;
+      this.completedAt = System.currentTimeMillis();
+      permit.release();
+      stdOut.closeSpill();
+      stdErr.closeSpill();
+      completion.complete(status(0, 0));
+    }
+
+    void forget() {
+      stdOut.deleteSpill();
+      stdErr.deleteSpill();
+    }
+  }
+
+  /**
+   * Forget jobs that finished long enough ago that nobody is still going to ask about them.
+   */
+  private void reapFinishedJobs() {
+    long cutoff = System.currentTimeMillis() - finishedJobRetentionMillis;
+    jobIdToHandlerMap.values().removeIf(handler -> {
+      Long completedAt = handler.getCompletedAt();
+      if (completedAt == null || completedAt >= cutoff) {
+        return false;
+      }
+
+      handler.forget();
+      return true;
+    });
   }
 
   @Override
   public boolean jobExists(String jobId) {
-    return jobIdToHandlerMap.containsKey(jobId);
+    ExecutionHandler handler = jobIdToHandlerMap.get(jobId);
+    return handler != null && handler.getExitValue() == null;
   }
 
   @Override
-  public JobStatus updateJob(String jobId) {
+  public CompletableFuture<JobStatus> waitForJob(String jobId) {
+    reapFinishedJobs();
+    ExecutionHandler handler = jobIdToHandlerMap.get(jobId);
+    if (handler == null) {
+      CompletableFuture<JobStatus> result = new CompletableFuture<>();
+      result.completeExceptionally(new IllegalArgumentException("No job with id " + jobId));
+      return result;
+    }
+
+    return handler.getCompletion();
+  }
+
+  @Override
+  public JobStatus updateJob(String jobId, long stdOutOffset, long stdErrOffset) {
     try {
       log.info("Polling state for " + jobId + "...");
+      reapFinishedJobs();
       ExecutionHandler handler = jobIdToHandlerMap.get(jobId);
 
       if (handler == null) {
         return null;
       }
 
-      JobStatus jobStatus = new JobStatus().setId(jobId);
-
-      DefaultExecuteResultHandler resultHandler;
-      ByteArrayOutputStream stdOutStream;
-      ByteArrayOutputStream stdErrStream;
-
-      stdOutStream = handler.getStdOut();
-      stdErrStream = handler.getStdErr();
-      resultHandler = handler.getResultHandler();
-
-      stdOutStream.flush();
-      stdErrStream.flush();
-
-      jobStatus.setStdOut(new String(stdOutStream.toByteArray()));
-      jobStatus.setStdErr(new String(stdErrStream.toByteArray()));
-
-      if (resultHandler.hasResult()) {
-        jobStatus.setState(JobStatus.State.COMPLETED);
-
-        int exitValue = resultHandler.getExitValue();
-        log.info(jobId + " has terminated with exit code " + exitValue);
-
-        if (exitValue == 0) {
-          jobStatus.setResult(JobStatus.Result.SUCCESS);
-        } else {
-          jobStatus.setResult(JobStatus.Result.FAILURE);
-        }
-
-        jobIdToHandlerMap.remove(jobId);
-      } else {
-        jobStatus.setState(JobStatus.State.RUNNING);
-      }
-
-      return jobStatus;
+      return handler.status(stdOutOffset, stdErrOffset);
     } catch (Exception e) {
       log.warn("Failed to retrieve status of " + jobId);
       return null;
@@ -186,6 +233,8 @@ public class JobExecutorLocal extends JobExecutor {
       return;
     }
 
+    canceledJobHander.forget();
+
     ExecuteWatchdog watchdog = canceledJobHander.getWatchdog();
     if (watchdog == null) {
       return;
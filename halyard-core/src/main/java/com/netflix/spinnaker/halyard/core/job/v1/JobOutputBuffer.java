@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.job.v1;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A bounded buffer for a job's output. Output is kept in fixed-size chunks, and once more than the retention limit has
+ * been written the oldest chunks are dropped. Every byte keeps its offset from the start of the job's output, so a
+ * caller can ask for just what was written since it last looked instead of copying everything each time.
+ *
+ * Output can also be written through to a spill file, which is rotated (to the same path with a ".1" suffix) once it
+ * grows past a limit. This keeps a longer record of jobs that never stop writing, without holding it in memory. The
+ * spill files belong to the buffer, and are removed by deleteSpill once the job is forgotten.
+ */
+@Slf4j
+public class JobOutputBuffer extends OutputStream {
+  public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+  // For jobs like proxies that write forever, where only the most recent output is interesting.
+  public static final long LONG_RUNNING_MAX_BYTES = 64 * 1024;
+  static final int CHUNK_BYTES = 8 * 1024;
+  static final long MAX_SPILL_BYTES = 16 * 1024 * 1024;
+
+  private final long maxBytes;
+  private final Deque<byte[]> chunks = new ArrayDeque<>();
+  // Bytes used in the last chunk, every other chunk is full.
+  private int lastChunkLength = CHUNK_BYTES;
+  // Offset of the first retained byte.
+  private long firstOffset;
+  // Total bytes ever written.
+  private long length;
+
+  private final Path spillPath;
+  private OutputStream spill;
+  private long spillLength;
+  // Set once the buffer is closed or spilling fails, after which output is only kept in memory.
+  private boolean spillStopped;
+
+  @Data
+  public static class Output {
+    // Offset of the first byte of data, greater than the offset asked for if that output was no longer retained.
+    long offset;
+    // Offset to ask for next time, to read only newer output.
+    long nextOffset;
+    String data;
+    boolean truncated;
+  }
+
+  public JobOutputBuffer() {
+    this(DEFAULT_MAX_BYTES, null);
+  }
+
+  /**
+   * @param maxBytes is roughly how much of the most recent output is retained in memory.
+   * @param spillPath is where all output is also written, or null to only keep it in memory.
+   */
+  public JobOutputBuffer(long maxBytes, Path spillPath) {
+    this.maxBytes = maxBytes;
+    this.spillPath = spillPath;
+  }
+
+  public Path getSpillPath() {
+    return spillPath;
+  }
+
+  @Override
+  public void write(int b) {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) {
+    int written = 0;
+    while (written < len) {
+      if (lastChunkLength == CHUNK_BYTES) {
+        chunks.addLast(new byte[CHUNK_BYTES]);
+        lastChunkLength = 0;
+      }
+
+      int n = Math.min(len - written, CHUNK_BYTES - lastChunkLength);
+      System.arraycopy(b, off + written, chunks.peekLast(), lastChunkLength, n);
+      lastChunkLength += n;
+      written += n;
+    }
+
+    length += len;
+    while (chunks.size() > 1 && length - firstOffset - CHUNK_BYTES >= maxBytes) {
+      chunks.removeFirst();
+      firstOffset += CHUNK_BYTES;
+    }
+
+    spill(b, off, len);
+  }
+
+  /**
+   * @param offset is the offset of the first byte wanted, e.g. the nextOffset of a previous read.
+   * @return all retained output from that offset on.
+   */
+  public synchronized Output read(long offset) {
+    long start = Math.max(offset, firstOffset);
+    start = Math.min(start, length);
+    byte[] result = new byte[(int) (length - start)];
+
+    int copied = 0;
+    long chunkOffset = firstOffset;
+    for (byte[] chunk : chunks) {
+      long chunkEnd = Math.min(chunkOffset + CHUNK_BYTES, length);
+      if (chunkEnd > start) {
+        int from = (int) Math.max(0, start - chunkOffset);
+        int n = (int) (chunkEnd - chunkOffset) - from;
+        System.arraycopy(chunk, from, result, copied, n);
+        copied += n;
+      }
+
+      chunkOffset += CHUNK_BYTES;
+    }
+
+    return new Output()
+        .setOffset(start)
+        .setNextOffset(length)
+        .setData(new String(result))
+        .setTruncated(start > offset);
+  }
+
+  public synchronized long size() {
+    return length;
+  }
+
+  private void spill(byte[] b, int off, int len) {
+    if (spillPath == null || spillStopped) {
+      return;
+    }
+
+    try {
+      if (spill != null && spillLength + len > MAX_SPILL_BYTES) {
+        spill.close();
+        spill = null;
+        Files.move(spillPath, rotatedSpillPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      if (spill == null) {
+        spill = new FileOutputStream(spillPath.toFile());
+        spillLength = 0;
+      }
+
+      spill.write(b, off, len);
+      spillLength += len;
+    } catch (IOException e) {
+      // The in-memory copy is what callers rely on, so don't fail the job over this.
+      log.warn("Failed to spill job output to " + spillPath + ", no longer spilling: ", e);
+      spillStopped = true;
+    }
+  }
+
+  /**
+   * Stop writing output through to the spill file and release it. Output already retained can still be read.
+   */
+  public synchronized void closeSpill() {
+    spillStopped = true;
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException e) {
+        log.warn("Failed to close spill file " + spillPath + ": ", e);
+      }
+
+      spill = null;
+    }
+  }
+
+  /**
+   * Stop spilling and delete the spill file along with its rotated copy.
+   */
+  public synchronized void deleteSpill() {
+    closeSpill();
+    if (spillPath == null) {
+      return;
+    }
+
+    try {
+      Files.deleteIfExists(spillPath);
+      Files.deleteIfExists(rotatedSpillPath());
+    } catch (IOException e) {
+      log.warn("Failed to delete spill file " + spillPath + ": ", e);
+    }
+  }
+
+  private Path rotatedSpillPath() {
+    return spillPath.resolveSibling(spillPath.getFileName() + ".1");
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeSpill();
+  }
+}
@@ -24,4 +24,10 @@ import lombok.Data;
 public class JobRequest {
   List<String> tokenizedCommand;
   Long timeoutMillis;
+  // How much of the most recent stdout and stderr to retain in memory, defaults to JobOutputBuffer.DEFAULT_MAX_BYTES.
+  Long maxOutputBytes;
+  // Whether to also write all output to rotating temp files, for long-lived jobs whose output outgrows the above.
+  boolean spillOutput;
+  // Whether this job stays up indefinitely (e.g. a proxy), and so is exempt from the JobScheduler's limits.
+  boolean longRunning;
 }
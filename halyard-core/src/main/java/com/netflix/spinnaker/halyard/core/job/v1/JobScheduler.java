@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.job.v1;
+
+import com.netflix.spectator.api.NoopRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskInterrupted;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Limits how many external commands the daemon runs at once, both overall and per binary (e.g. kubectl),
+ * queueing the rest in the order they were submitted. This is shared by every job executor in the process,
+ * since each task gets its own.
+ *
+ * Long-running jobs (proxies, port-forwards) are tracked but never hold a slot, since they'd otherwise
+ * starve everything else for as long as they are open.
+ */
+@Slf4j
+public class JobScheduler {
+  public static final int DEFAULT_MAX_CONCURRENT_JOBS = 16;
+
+  private static volatile Semaphore globalSlots = new Semaphore(DEFAULT_MAX_CONCURRENT_JOBS, true);
+  private static volatile Map<String, Integer> commandLimits = new HashMap<>();
+  private static final Map<String, Semaphore> commandSlots = new ConcurrentHashMap<>();
+  private static final Map<String, ScheduledJob> jobs = new ConcurrentHashMap<>();
+  private static volatile Registry registry = new NoopRegistry();
+
+  @Data
+  public static class ScheduledJob {
+    public enum State {
+      QUEUED,
+      RUNNING
+    }
+
+    String jobId;
+    // Only the binary's name, the arguments can carry secrets.
+    String command;
+    State state = State.QUEUED;
+    boolean limited;
+    long queuedAt;
+    Long startedAt;
+  }
+
+  public static class Permit {
+    private final ScheduledJob job;
+    private final List<Semaphore> held;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(ScheduledJob job, List<Semaphore> held) {
+      this.job = job;
+      this.held = held;
+    }
+
+    /**
+     * Frees this job's slots. Safe to call more than once.
+     */
+    public void release() {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+
+      jobs.remove(job.getJobId());
+      for (Semaphore slot : held) {
+        slot.release();
+      }
+
+      registry.timer(registry.createId("jobs.runTime").withTag("command", job.getCommand()))
+          .record(System.currentTimeMillis() - job.getStartedAt(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public static void configure(int maxConcurrentJobs, Map<String, Integer> maxConcurrentJobsPerCommand) {
+    globalSlots = new Semaphore(maxConcurrentJobs, true);
+    commandLimits = new HashMap<>(maxConcurrentJobsPerCommand);
+    commandSlots.clear();
+  }
+
+  public static void setRegistry(Registry registry) {
+    JobScheduler.registry = registry;
+  }
+
+  /**
+   * Blocks until the given job may start, and returns the permit that must be released once it has exited.
+   *
+   * @param limited false for long-running jobs, which start right away and don't count against any limit.
+   */
+  public static Permit schedule(String jobId, List<String> tokenizedCommand, boolean limited) {
+    String command = commandName(tokenizedCommand);
+    ScheduledJob job = new ScheduledJob()
+        .setJobId(jobId)
+        .setCommand(command)
+        .setLimited(limited)
+        .setQueuedAt(System.currentTimeMillis());
+
+    jobs.put(jobId, job);
+
+    List<Semaphore> held = new ArrayList<>();
+    if (limited) {
+      // Always acquired in the same order, so two jobs can never each hold the slot the other is waiting on.
+      Semaphore commandSlot = commandSlot(command);
+      if (commandSlot != null) {
+        held.add(commandSlot);
+      }
+
+      held.add(globalSlots);
+
+      int acquired = 0;
+      try {
+        for (Semaphore slot : held) {
+          slot.acquire();
+          acquired++;
+        }
+      } catch (InterruptedException e) {
+        held.subList(0, acquired).forEach(Semaphore::release);
+        jobs.remove(jobId);
+        Thread.currentThread().interrupt();
+        throw new DaemonTaskInterrupted("Interrupted while waiting to run " + command, e);
+      }
+    }
+
+    job.setStartedAt(System.currentTimeMillis());
+    job.setState(ScheduledJob.State.RUNNING);
+
+    long waited = job.getStartedAt() - job.getQueuedAt();
+    if (waited > 1000) {
+      log.info("Job " + jobId + " (" + command + ") waited " + waited + "ms for a free slot");
+    }
+
+    registry.timer(registry.createId("jobs.waitTime").withTag("command", command))
+        .record(waited, TimeUnit.MILLISECONDS);
+
+    return new Permit(job, held);
+  }
+
+  /**
+   * @return every job that is either running or waiting to, oldest first.
+   */
+  public static List<ScheduledJob> getJobs() {
+    return jobs.values().stream()
+        .sorted(Comparator.comparingLong(ScheduledJob::getQueuedAt))
+        .collect(Collectors.toList());
+  }
+
+  public static long countJobs(ScheduledJob.State state) {
+    return jobs.values().stream().filter(j -> j.getState() == state).count();
+  }
+
+  private static Semaphore commandSlot(String command) {
+    Integer limit = commandLimits.get(command);
+    if (limit == null) {
+      return null;
+    }
+
+    return commandSlots.computeIfAbsent(command, c -> new Semaphore(limit, true));
+  }
+
+  static String commandName(List<String> tokenizedCommand) {
+    return Paths.get(tokenizedCommand.get(0)).getFileName().toString();
+  }
+}
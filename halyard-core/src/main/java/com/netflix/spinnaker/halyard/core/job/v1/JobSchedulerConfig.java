@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.job.v1;
+
+import com.netflix.spectator.api.Registry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+
+@Configuration
+@EnableConfigurationProperties(JobSchedulerProperties.class)
+public class JobSchedulerConfig {
+  @Autowired
+  JobSchedulerProperties properties;
+
+  @Autowired
+  Registry registry;
+
+  @PostConstruct
+  void init() {
+    JobScheduler.configure(properties.getMaxConcurrentJobs(), properties.getMaxConcurrentJobsPerCommand());
+    JobScheduler.setRegistry(registry);
+
+    registry.gauge(registry.createId("jobs.running"), this, c -> JobScheduler.countJobs(JobScheduler.ScheduledJob.State.RUNNING));
+    registry.gauge(registry.createId("jobs.queued"), this, c -> JobScheduler.countJobs(JobScheduler.ScheduledJob.State.QUEUED));
+  }
+}
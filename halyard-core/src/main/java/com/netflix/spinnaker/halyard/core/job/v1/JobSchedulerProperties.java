@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.job.v1;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties("halyard.jobs")
+public class JobSchedulerProperties {
+  // The most external commands that run at once, not counting long-running ones like proxies.
+  private int maxConcurrentJobs = JobScheduler.DEFAULT_MAX_CONCURRENT_JOBS;
+  // Tighter limits for individual binaries, keyed by the binary's name.
+  private Map<String, Integer> maxConcurrentJobsPerCommand = new HashMap<>();
+
+  {
+    maxConcurrentJobsPerCommand.put("kubectl", 8);
+    maxConcurrentJobsPerCommand.put("gcloud", 4);
+  }
+}
@@ -24,8 +24,14 @@ public class JobStatus {
   String id;
   State state;
   Result result;
+  // Output from the offsets asked for, see JobExecutor.updateJob.
   String stdOut;
   String stdErr;
+  // Offsets to ask for next time to read only newer output.
+  long stdOutOffset;
+  long stdErrOffset;
+  // True if some of the output asked for was no longer retained.
+  boolean truncated;
 
   public enum State {
     RUNNING, COMPLETED
@@ -17,27 +17,16 @@
 
 package com.netflix.spinnaker.halyard.core.job.v1;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
-public class TeeByteArrayOutputStream extends ByteArrayOutputStream {
+public class TeeJobOutputBuffer extends JobOutputBuffer {
   private final OutputStream tee;
 
-  TeeByteArrayOutputStream(OutputStream tee) {
+  TeeJobOutputBuffer(OutputStream tee) {
     this.tee = tee;
   }
 
-  @Override
-  public synchronized void write(int b) {
-    super.write(b);
-    try {
-      tee.write(b);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
   @Override
   public synchronized void write(byte b[], int off, int len) {
     super.write(b, off, len);
@@ -48,12 +37,6 @@ public class TeeByteArrayOutputStream extends ByteArrayOutputStream {
     }
   }
 
-  @Override
-  public void write(byte[] b) throws IOException {
-    super.write(b);
-    tee.write(b);
-  }
-
   @Override
   public void flush() throws IOException {
     super.flush();
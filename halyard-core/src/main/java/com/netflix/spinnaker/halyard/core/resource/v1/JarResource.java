@@ -16,9 +16,10 @@
 
 package com.netflix.spinnaker.halyard.core.resource.v1;
 
-import com.amazonaws.util.IOUtils;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 public class JarResource extends TemplatedResource {
   @Override
@@ -28,8 +29,14 @@ public class JarResource extends TemplatedResource {
     if (contents == null) {
       throw new IllegalArgumentException("Path " + path + " could not be found in the JAR");
     }
-    try {
-      return IOUtils.toString(contents);
+    try (InputStream is = contents) {
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        result.write(buffer, 0, read);
+      }
+      return new String(result.toByteArray(), StandardCharsets.UTF_8);
     } catch (IOException e) {
       throw new RuntimeException("Path " + path + " could not be opened", e);
     }
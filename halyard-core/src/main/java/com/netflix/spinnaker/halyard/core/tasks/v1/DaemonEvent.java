@@ -8,7 +8,11 @@ public class DaemonEvent {
   String message;
   // What the larger goal of this event is. e.g. when validating a gce account, the stage could be "Validating all config"
   String stage;
+  // The position of that stage in the task, since a task may run several stages with the same name.
+  Integer stageIndex;
   // A changing (optional) message modifying the current event.
   String detail;
   Long timestamp;
+  // Assigned by the owning task's event log, increases by one with every event the task writes.
+  Long sequence;
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded log of the events written by a single task.
+ *
+ * Every event is assigned a monotonically increasing sequence number (starting at 0) when it is added. Only the most
+ * recent "capacity" events are retained; older events are overwritten. Writers take a lock to store an event and then
+ * publish it, so every sequence number up to the last published one is readable. Bulk reads never block: they
+ * copy whichever published slots still hold the sequence number they expect, so a reader racing a writer sees a
+ * consistent (if slightly stale) tail of the log, and a cursor taken from getLastSequence never skips an event. Reads
+ * by index take the write lock briefly instead.
+ */
+public class DaemonEventLog extends AbstractList<DaemonEvent> {
+  private final AtomicReferenceArray<DaemonEvent> slots;
+  private final Object writeLock = new Object();
+  // Guarded by writeLock.
+  private long nextSequence;
+  // The number of events stored so far, only advanced once the event is in its slot.
+  private volatile long published;
+
+  public DaemonEventLog(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Event log capacity must be positive, got " + capacity);
+    }
+
+    this.slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  @Override
+  public boolean add(DaemonEvent event) {
+    synchronized (writeLock) {
+      long sequence = nextSequence++;
+      event.setSequence(sequence);
+      slots.set(slot(sequence), event);
+      published = sequence + 1;
+    }
+
+    return true;
+  }
+
+  /**
+   * @return the sequence number of the most recently published event, or -1 if none have been added.
+   */
+  public long getLastSequence() {
+    return published - 1;
+  }
+
+  /**
+   * @param sequence is the last sequence number the caller has seen (-1 to read everything retained).
+   * @return all retained events with a sequence number strictly greater than the one supplied, oldest first.
+   */
+  public List<DaemonEvent> since(long sequence) {
+    long end = published;
+    long start = Math.max(sequence + 1, end - slots.length());
+    start = Math.max(start, 0);
+
+    List<DaemonEvent> result = new ArrayList<>((int) Math.max(end - start, 0));
+    for (long i = start; i < end; i++) {
+      DaemonEvent event = slots.get(slot(i));
+      // The slot was already overwritten by a newer event.
+      if (event != null && event.getSequence() == i) {
+        result.add(event);
+      }
+    }
+
+    return result;
+  }
+
+  public List<DaemonEvent> snapshot() {
+    return since(-1);
+  }
+
+  @Override
+  public Iterator<DaemonEvent> iterator() {
+    return snapshot().iterator();
+  }
+
+  /**
+   * @param index counts from the oldest retained event. Read straight from the ring under the write lock, so that the
+   * slot can't be overwritten mid-read and iterating by index doesn't copy the log on every call.
+   */
+  @Override
+  public DaemonEvent get(int index) {
+    synchronized (writeLock) {
+      long size = Math.min(published, slots.length());
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for an event log of size " + size);
+      }
+
+      return slots.get(slot(published - size + index));
+    }
+  }
+
+  @Override
+  public int size() {
+    return (int) Math.min(published, slots.length());
+  }
+
+  @Override
+  public Object[] toArray() {
+    return snapshot().toArray();
+  }
+
+  @Override
+  public <T> T[] toArray(T[] a) {
+    return snapshot().toArray(a);
+  }
+
+  private int slot(long sequence) {
+    return (int) (sequence % slots.length());
+  }
+}
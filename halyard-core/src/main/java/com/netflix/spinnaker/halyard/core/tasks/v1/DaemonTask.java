@@ -4,14 +4,21 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.netflix.spinnaker.halyard.core.DaemonResponse;
 import com.netflix.spinnaker.halyard.core.job.v1.JobExecutor;
 import com.netflix.spinnaker.halyard.core.job.v1.JobExecutorLocal;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * This represents a long-running task managed by the Daemon that can be polled for status information.
@@ -20,25 +27,180 @@ import java.util.function.Supplier;
 @Data
 @Slf4j
 public class DaemonTask<C, T> {
-  List<DaemonEvent> events = new ArrayList<>();
-  List<DaemonTask> children = new ArrayList<>();
+  static final int DEFAULT_MAX_EVENTS = 1000;
+
+  // Backed by a bounded DaemonEventLog in the daemon, a plain list once deserialized by a client.
+  List<DaemonEvent> events;
+  List<DaemonTask> children = new CopyOnWriteArrayList<>();
   final String name;
   final String uuid;
   @JsonIgnore final JobExecutor jobExecutor;
-  State state = State.NOT_STARTED;
+  volatile State state = State.NOT_STARTED;
+  // Incremented on every state or stage change or new child, lets clients tell whether anything besides events changed.
+  // Only serialized through its getter, since clients read it as a plain number.
+  transient final AtomicLong version = new AtomicLong();
   DaemonResponse<T> response;
   Exception fatalError;
+  @JsonIgnore volatile boolean cancelled;
   @JsonIgnore C context;
   @JsonIgnore String currentStage;
+  // Timing is only kept by the daemon, see DaemonTaskTrace for how it's exported.
+  @JsonIgnore Long submittedAt;
+  @JsonIgnore Long startedAt;
+  @JsonIgnore Long endedAt;
+  @JsonIgnore List<DaemonTaskSpan> stageSpans = new CopyOnWriteArrayList<>();
+  @JsonIgnore transient final List<Consumer<DaemonTask>> terminalListeners = new ArrayList<>();
+  @JsonIgnore transient boolean terminalListenersRun;
+  // Set for tasks run inline by TaskRepository#runInline, which are never registered so there's nothing to journal.
+  @JsonIgnore transient boolean inline;
+  // The halconfig batch the task reads and edits, handed down from whoever submitted it, see DaemonTaskHandler#getBatchId.
+  @JsonIgnore transient String batchId;
+  // A task shared by several requests is returned to each of them, but its timing must only be recorded once.
+  @Getter(AccessLevel.NONE) @JsonIgnore transient final AtomicBoolean timingRecorded = new AtomicBoolean();
+  // Bumped whenever this task or any task below it changes, so a client streaming this task can block until there is
+  // something new to send without being woken by every other task in the daemon.
+  @Getter(AccessLevel.NONE) @JsonIgnore transient final Object changeMonitor = new Object();
+  @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) @JsonIgnore transient long changeCount;
+  // Set on children so their changes also wake whoever is streaming the task that spawned them.
+  @JsonIgnore transient volatile DaemonTask parent;
 
   public DaemonTask(String name) {
+    this(name, DEFAULT_MAX_EVENTS);
+  }
+
+  public DaemonTask(String name, int maxEvents) {
+    this(name, UUID.randomUUID().toString(), maxEvents);
+    this.submittedAt = System.currentTimeMillis();
+  }
+
+  // Used to rebuild a task from the TaskJournal.
+  DaemonTask(String name, String uuid, int maxEvents) {
     this.name = name;
-    this.uuid = UUID.randomUUID().toString();
+    this.uuid = uuid;
     this.jobExecutor = new JobExecutorLocal();
+    this.events = new DaemonEventLog(maxEvents);
+  }
+
+  public long getVersion() {
+    return version.get();
+  }
+
+  public void setVersion(long version) {
+    this.version.set(version);
+  }
+
+  /**
+   * @return a counter that increases whenever this task or one of its children changes; pass it to awaitChange.
+   */
+  public long getChangeCount() {
+    synchronized (changeMonitor) {
+      return changeCount;
+    }
+  }
+
+  /**
+   * Block until this task or one of its children has changed since the supplied change count was read, or the
+   * timeout elapses.
+   *
+   * @param seenChangeCount is the result of an earlier call to getChangeCount.
+   * @param timeoutMillis is the longest to wait.
+   */
+  public void awaitChange(long seenChangeCount, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    synchronized (changeMonitor) {
+      long remaining = timeoutMillis;
+      while (changeCount == seenChangeCount && remaining > 0) {
+        changeMonitor.wait(remaining);
+        remaining = deadline - System.currentTimeMillis();
+      }
+    }
+  }
+
+  void signalChange() {
+    synchronized (changeMonitor) {
+      changeCount++;
+      changeMonitor.notifyAll();
+    }
+
+    DaemonTask parent = this.parent;
+    if (parent != null) {
+      parent.signalChange();
+    }
+  }
+
+  void addChild(DaemonTask child) {
+    child.parent = this;
+    children.add(child);
+  }
+
+  public void setState(State state) {
+    long now = System.currentTimeMillis();
+    if (state == State.RUNNING && startedAt == null) {
+      startedAt = now;
+    } else if (state.isTerminal() && endedAt == null) {
+      endedAt = now;
+      closeStageSpan(now);
+    }
+
+    this.state = state;
+    version.incrementAndGet();
+    journal(TaskJournal.stateEntry(this));
+    signalChange();
+  }
+
+  /**
+   * Sets the state without notifying anyone, only for rebuilding a task from the TaskJournal.
+   */
+  void restoreState(State state, long timestamp) {
+    if (state == State.RUNNING && startedAt == null) {
+      startedAt = timestamp;
+    } else if (state.isTerminal() && endedAt == null) {
+      endedAt = timestamp;
+      closeStageSpan(timestamp);
+    }
+
+    this.state = state;
+  }
+
+  void restoreStage(String name, long timestamp) {
+    closeStageSpan(timestamp);
+    openStageSpan(name, timestamp);
+    currentStage = name;
+  }
+
+  /**
+   * @param sequence is the last event sequence number the caller has seen.
+   * @return the retained events written after that sequence number.
+   */
+  public List<DaemonEvent> eventsSince(long sequence) {
+    if (events instanceof DaemonEventLog) {
+      return ((DaemonEventLog) events).since(sequence);
+    }
+
+    return events.stream()
+        .filter(e -> e.getSequence() != null && e.getSequence() > sequence)
+        .collect(Collectors.toList());
+  }
+
+  public long lastEventSequence() {
+    if (events instanceof DaemonEventLog) {
+      return ((DaemonEventLog) events).getLastSequence();
+    }
+
+    return events.stream()
+        .map(DaemonEvent::getSequence)
+        .filter(s -> s != null)
+        .reduce(-1L, Math::max);
   }
 
   void newStage(String name) {
+    long now = System.currentTimeMillis();
+    closeStageSpan(now);
+    openStageSpan(name, now);
     currentStage = name;
+    version.incrementAndGet();
+    journal(TaskJournal.entry(TaskJournal.Type.STAGE, this).setStage(name).setTimestamp(now));
+    signalChange();
   }
 
   void writeMessage(String message) {
@@ -46,11 +208,77 @@ public class DaemonTask<C, T> {
       throw new IllegalStateException("Illegal attempt to write an event when no stage has started");
     }
 
-    events.add(new DaemonEvent()
+    DaemonEvent event = new DaemonEvent()
         .setStage(currentStage)
+        .setStageIndex(stageSpans.size() - 1)
         .setMessage(message)
-        .setTimestamp(System.currentTimeMillis())
-    );
+        .setTimestamp(System.currentTimeMillis());
+    events.add(event);
+    journal(TaskJournal.entry(TaskJournal.Type.EVENT, this).setEvent(event));
+    signalChange();
+  }
+
+  // Stage names can repeat, so each stage is identified by its position in the task.
+  private void openStageSpan(String name, long now) {
+    int index = stageSpans.size();
+    stageSpans.add(new DaemonTaskSpan(name, now)
+        .setAttribute("spanId", uuid + "/" + index)
+        .setAttribute("stageIndex", Integer.toString(index)));
+  }
+
+  private void closeStageSpan(long now) {
+    if (!stageSpans.isEmpty()) {
+      DaemonTaskSpan last = stageSpans.get(stageSpans.size() - 1);
+      if (last.isOpen()) {
+        last.setEndedAt(now);
+      }
+    }
+  }
+
+  /**
+   * Run a callback once this task has reached a terminal state, immediately if it already has.
+   */
+  public void whenTerminal(Consumer<DaemonTask> listener) {
+    synchronized (terminalListeners) {
+      if (!terminalListenersRun) {
+        terminalListeners.add(listener);
+        return;
+      }
+    }
+
+    runTerminalListener(listener);
+  }
+
+  /**
+   * @return true for the first caller only, who is then responsible for recording this task's timing.
+   */
+  public boolean claimTimingRecord() {
+    return timingRecorded.compareAndSet(false, true);
+  }
+
+  private void journal(TaskJournal.Entry entry) {
+    if (!inline) {
+      TaskRepository.journal(entry);
+    }
+  }
+
+  void runTerminalListeners() {
+    List<Consumer<DaemonTask>> listeners;
+    synchronized (terminalListeners) {
+      terminalListenersRun = true;
+      listeners = new ArrayList<>(terminalListeners);
+      terminalListeners.clear();
+    }
+
+    listeners.forEach(this::runTerminalListener);
+  }
+
+  private void runTerminalListener(Consumer<DaemonTask> listener) {
+    try {
+      listener.accept(this);
+    } catch (Exception e) {
+      log.warn("Terminal listener for task " + this + " failed: ", e);
+    }
   }
 
   public void consumeTaskTree(Consumer<DaemonTask> c) {
@@ -62,10 +290,11 @@ public class DaemonTask<C, T> {
     NOT_STARTED,
     RUNNING,
     SUCCESS,
-    FATAL;
+    FATAL,
+    CANCELLED;
 
     public boolean isTerminal() {
-      return this == SUCCESS || this == FATAL;
+      return this == SUCCESS || this == FATAL || this == CANCELLED;
     }
   }
 
@@ -73,9 +302,29 @@ public class DaemonTask<C, T> {
     jobExecutor.cancelAllJobs();
   }
 
+  /**
+   * Flag this task as cancelled and kill any jobs it's running. The task's own thread is responsible for noticing
+   * (see checkCancelled) and unwinding.
+   */
+  void cancel() {
+    cancelled = true;
+    jobExecutor.cancelAllJobs();
+    signalChange();
+  }
+
+  void checkCancelled() {
+    if (cancelled) {
+      throw new DaemonTaskInterrupted("Task " + this + " was cancelled");
+    }
+  }
+
   public <C, P> DaemonTask<C, P> spawnChild(Supplier<DaemonResponse<P>> childRunner, String name) {
+    checkCancelled();
     DaemonTask child = TaskRepository.submitTask(childRunner, name);
-    children.add(child);
+    addChild(child);
+    version.incrementAndGet();
+    journal(TaskJournal.entry(TaskJournal.Type.CHILD, this).setChild(child.getUuid()));
+    signalChange();
     return child;
   }
 
@@ -89,9 +338,13 @@ public class DaemonTask<C, T> {
     while (!childTask.getState().isTerminal()) {
       try {
         synchronized (childTask) {
-          childTask.wait();
+          if (!childTask.getState().isTerminal()) {
+            childTask.wait();
+          }
         }
-      } catch (InterruptedException ignored) {
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DaemonTaskInterrupted("Interrupted while waiting on child " + childTask, e);
       }
     }
 
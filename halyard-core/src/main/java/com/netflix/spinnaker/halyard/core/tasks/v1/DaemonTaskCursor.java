@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records how much of a task tree a client has already seen: for every task, the last state version and event
+ * sequence number that were sent to it.
+ *
+ * Clients treat the encoded form as opaque and echo back whatever the daemon last handed them.
+ */
+public class DaemonTaskCursor {
+  private static final String TASK_SEPARATOR = ",";
+  private static final String FIELD_SEPARATOR = ":";
+
+  private final Map<String, Position> positions = new LinkedHashMap<>();
+
+  public static DaemonTaskCursor parse(String encoded) {
+    DaemonTaskCursor result = new DaemonTaskCursor();
+    if (encoded == null || encoded.isEmpty()) {
+      return result;
+    }
+
+    for (String task : encoded.split(TASK_SEPARATOR)) {
+      String[] fields = task.split(FIELD_SEPARATOR);
+      if (fields.length != 3) {
+        throw new IllegalArgumentException("Malformed task cursor entry \"" + task + "\"");
+      }
+
+      result.positions.put(fields[0], new Position()
+          .setVersion(Long.parseLong(fields[1]))
+          .setSequence(Long.parseLong(fields[2])));
+    }
+
+    return result;
+  }
+
+  public String encode() {
+    return positions.entrySet()
+        .stream()
+        .map(e -> String.join(FIELD_SEPARATOR, e.getKey(), e.getValue().getVersion() + "", e.getValue().getSequence() + ""))
+        .collect(Collectors.joining(TASK_SEPARATOR));
+  }
+
+  public Position get(String uuid) {
+    return positions.getOrDefault(uuid, new Position());
+  }
+
+  public void put(String uuid, long version, long sequence) {
+    positions.put(uuid, new Position().setVersion(version).setSequence(sequence));
+  }
+
+  @Data
+  public static class Position {
+    long version = -1;
+    long sequence = -1;
+  }
+}
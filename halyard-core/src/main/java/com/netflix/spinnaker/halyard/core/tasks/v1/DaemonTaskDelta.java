@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import com.netflix.spinnaker.halyard.core.DaemonResponse;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask.State;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The changes made to a task tree since a client last polled it.
+ *
+ * Every task in the tree is present so clients can follow its shape, but each only carries the events written since
+ * the supplied cursor. The response and fatal error are only sent once the task is terminal.
+ */
+@Data
+public class DaemonTaskDelta<T> {
+  String uuid;
+  String name;
+  State state;
+  String stage;
+  long version;
+  List<DaemonEvent> events = new ArrayList<>();
+  List<DaemonTaskDelta> children = new ArrayList<>();
+  DaemonResponse<T> response;
+  Exception fatalError;
+  // Only set on the root of the tree, pass this back to receive the next delta.
+  String cursor;
+
+  public static <T> DaemonTaskDelta<T> since(DaemonTask<?, T> task, String encodedCursor) {
+    DaemonTaskCursor previous = DaemonTaskCursor.parse(encodedCursor);
+    DaemonTaskCursor next = new DaemonTaskCursor();
+    DaemonTaskDelta<T> result = since(task, previous, next);
+    result.setCursor(next.encode());
+    return result;
+  }
+
+  private static <T> DaemonTaskDelta<T> since(DaemonTask<?, T> task, DaemonTaskCursor previous, DaemonTaskCursor next) {
+    DaemonTaskCursor.Position position = previous.get(task.getUuid());
+    // Read the version before anything else so a concurrent change is re-sent next time rather than lost.
+    long version = task.getVersion();
+    State state = task.getState();
+    long sequence = task.lastEventSequence();
+
+    DaemonTaskDelta<T> result = new DaemonTaskDelta<T>()
+        .setUuid(task.getUuid())
+        .setName(task.getName())
+        .setState(state)
+        .setStage(task.getCurrentStage())
+        .setVersion(version)
+        .setEvents(task.eventsSince(position.getSequence()));
+
+    result.getEvents().removeIf(e -> e.getSequence() > sequence);
+
+    if (state.isTerminal()) {
+      result.setResponse(task.getResponse());
+      result.setFatalError(task.getFatalError());
+    }
+
+    next.put(task.getUuid(), version, Math.max(sequence, position.getSequence()));
+
+    for (DaemonTask child : task.getChildren()) {
+      result.getChildren().add(since(child, previous, next));
+    }
+
+    return result;
+  }
+
+  /**
+   * @param encodedCursor is the cursor this delta was computed from.
+   * @return true iff this delta carries any event, state, stage or child the holder of that cursor hasn't seen.
+   */
+  public boolean changedSince(String encodedCursor) {
+    return !cursor.equals(encodedCursor);
+  }
+
+  public void consumeTaskTree(Consumer<DaemonTaskDelta> c) {
+    c.accept(this);
+    children.forEach((t) -> t.consumeTaskTree(c));
+  }
+}
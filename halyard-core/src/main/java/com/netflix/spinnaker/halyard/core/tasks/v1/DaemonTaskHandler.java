@@ -15,6 +15,9 @@ import java.util.function.Supplier;
 public class DaemonTaskHandler {
   private static ThreadLocal<DaemonTask> localTask = new ThreadLocal<>();
 
+  // Only set on request threads, tasks carry their own batch id.
+  private static final ThreadLocal<String> localBatchId = new ThreadLocal<>();
+
   static void setTask(DaemonTask task) {
     localTask.set(task);
   }
@@ -67,6 +70,58 @@ public class DaemonTaskHandler {
     return result;
   }
 
+  /**
+   * Like submitTask, but tasks submitted with the same key while an earlier one is still running share its result.
+   * Tasks spawned as children always run independently, since their parent reaps them directly.
+   *
+   * @see TaskRepository#submitSharedTask
+   */
+  public static <C, T> DaemonTask<C, T> submitSharedTask(Supplier<DaemonResponse<T>> taskSupplier, String name, String key) {
+    if (getTask() != null) {
+      return submitTask(taskSupplier, name);
+    }
+
+    return TaskRepository.submitSharedTask(taskSupplier, name, key);
+  }
+
+  /**
+   * Run a task to completion on the calling thread rather than submitting it. Only for work that's cheap and can't
+   * block, since nothing can poll or cancel the task while it runs.
+   *
+   * @see TaskRepository#runInline
+   */
+  public static <C, T> DaemonTask<C, T> runInline(Supplier<DaemonResponse<T>> taskSupplier, String name) {
+    if (getTask() != null) {
+      return submitTask(taskSupplier, name);
+    }
+
+    return TaskRepository.runInline(taskSupplier, name);
+  }
+
+  /**
+   * @return the halconfig batch the running task belongs to or, outside of a task, the one the current request belongs
+   * to. Tasks are handed this when they are submitted, so a request's tasks (and theirs) all see the same batch.
+   */
+  public static String getBatchId() {
+    DaemonTask task = getTask();
+    return task != null ? task.getBatchId() : localBatchId.get();
+  }
+
+  /**
+   * @param batchId is the halconfig batch the running task, or outside of a task the current request, belongs to; or
+   * null for none.
+   */
+  public static void setBatchId(String batchId) {
+    DaemonTask task = getTask();
+    if (task != null) {
+      task.setBatchId(batchId);
+    } else if (batchId == null) {
+      localBatchId.remove();
+    } else {
+      localBatchId.set(batchId);
+    }
+  }
+
   public static void setContext(Object context) {
     localTask.get().setContext(context);
   }
@@ -74,6 +129,7 @@ public class DaemonTaskHandler {
   public static void newStage(String name) {
     DaemonTask task = getTask();
     if (task != null) {
+      task.checkCancelled();
       log.info("Stage change by " + task + ": " + name);
       task.newStage(name);
     }
@@ -82,8 +138,29 @@ public class DaemonTaskHandler {
   public static void message(String message) {
     DaemonTask task = getTask();
     if (task != null) {
+      task.checkCancelled();
       log.info("Message by " + task + ": " + message);
       task.writeMessage(message);
     }
   }
+
+  /**
+   * Sleep in a way that lets the running task be cancelled.
+   *
+   * @param millis is how long to sleep for.
+   * @throws DaemonTaskInterrupted if the thread was interrupted or the running task was cancelled.
+   */
+  public static void safeSleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DaemonTaskInterrupted("Interrupted while sleeping", e);
+    }
+
+    DaemonTask task = getTask();
+    if (task != null) {
+      task.checkCancelled();
+    }
+  }
 }
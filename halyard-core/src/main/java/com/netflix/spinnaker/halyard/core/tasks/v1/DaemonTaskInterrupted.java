@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+/**
+ * Thrown from a task's own thread once it notices it has been cancelled, to unwind whatever it was doing.
+ */
+public class DaemonTaskInterrupted extends RuntimeException {
+  public DaemonTaskInterrupted(String message) {
+    super(message);
+  }
+
+  public DaemonTaskInterrupted(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A timed section of a task's execution, e.g. one of its stages.
+ */
+@Data
+public class DaemonTaskSpan {
+  String name;
+  Long startedAt;
+  // Null while the span is still open.
+  Long endedAt;
+  Map<String, String> attributes = new HashMap<>();
+
+  public DaemonTaskSpan(String name, long startedAt) {
+    this.name = name;
+    this.startedAt = startedAt;
+  }
+
+  public boolean isOpen() {
+    return endedAt == null;
+  }
+
+  public DaemonTaskSpan setAttribute(String key, String value) {
+    attributes.put(key, value);
+    return this;
+  }
+}
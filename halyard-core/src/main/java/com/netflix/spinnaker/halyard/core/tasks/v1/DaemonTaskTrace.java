@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports a task tree's timing in the Chrome trace event format, which chrome://tracing, Perfetto and most
+ * OpenTelemetry tooling can load. Every task is a span on its own track, with its stages as spans nested inside it and
+ * its events as instant markers. Spans that are still open are closed at the time of export.
+ */
+public class DaemonTaskTrace {
+  private static final int PID = 1;
+
+  public static Map<String, Object> export(DaemonTask root) {
+    List<Map<String, Object>> traceEvents = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    addTask(traceEvents, root, root, null, now);
+
+    Map<String, Object> result = new HashMap<>();
+    result.put("traceEvents", traceEvents);
+    result.put("displayTimeUnit", "ms");
+    return result;
+  }
+
+  private static void addTask(List<Map<String, Object>> traceEvents, DaemonTask root, DaemonTask task, DaemonTask parent, long now) {
+    // Chrome trace threads are numbered, so tracks are assigned in the order tasks are visited.
+    int tid = countTracks(traceEvents) + 1;
+
+    Map<String, Object> threadName = new HashMap<>();
+    threadName.put("name", "thread_name");
+    threadName.put("ph", "M");
+    threadName.put("pid", PID);
+    threadName.put("tid", tid);
+    threadName.put("args", singleton("name", task.getName()));
+    traceEvents.add(threadName);
+
+    if (task.getStartedAt() != null) {
+      Map<String, Object> args = new HashMap<>();
+      args.put("traceId", root.getUuid());
+      args.put("spanId", task.getUuid());
+      args.put("parentSpanId", parent == null ? null : parent.getUuid());
+      args.put("state", task.getState().toString());
+      traceEvents.add(span(task.getName(), "task", task.getStartedAt(), task.getEndedAt(), now, tid, args));
+
+      List<DaemonTaskSpan> stages = task.getStageSpans();
+      for (DaemonTaskSpan stage : stages) {
+        Map<String, Object> stageArgs = new HashMap<>(stage.getAttributes());
+        stageArgs.put("traceId", root.getUuid());
+        stageArgs.put("parentSpanId", task.getUuid());
+        traceEvents.add(span(stage.getName(), "stage", stage.getStartedAt(), stage.getEndedAt(), now, tid, stageArgs));
+      }
+
+      List<DaemonEvent> events = task.getEvents();
+      for (DaemonEvent event : events) {
+        Map<String, Object> instant = new HashMap<>();
+        instant.put("name", event.getMessage());
+        instant.put("cat", "event");
+        instant.put("ph", "i");
+        instant.put("s", "t");
+        instant.put("ts", micros(event.getTimestamp()));
+        instant.put("pid", PID);
+        instant.put("tid", tid);
+        instant.put("args", singleton("stage", event.getStage()));
+        traceEvents.add(instant);
+      }
+    }
+
+    List<DaemonTask> children = task.getChildren();
+    for (DaemonTask child : children) {
+      addTask(traceEvents, root, child, task, now);
+    }
+  }
+
+  private static Map<String, Object> span(String name, String category, long startedAt, Long endedAt, long now, int tid, Map<String, Object> args) {
+    long end = endedAt == null ? now : endedAt;
+    args.put("open", endedAt == null);
+
+    Map<String, Object> result = new HashMap<>();
+    result.put("name", name);
+    result.put("cat", category);
+    result.put("ph", "X");
+    result.put("ts", micros(startedAt));
+    result.put("dur", micros(end - startedAt));
+    result.put("pid", PID);
+    result.put("tid", tid);
+    result.put("args", args);
+    return result;
+  }
+
+  private static int countTracks(List<Map<String, Object>> traceEvents) {
+    return (int) traceEvents.stream().filter(e -> "M".equals(e.get("ph"))).count();
+  }
+
+  private static Map<String, Object> singleton(String key, Object value) {
+    Map<String, Object> result = new HashMap<>();
+    result.put(key, value);
+    return result;
+  }
+
+  private static long micros(long millis) {
+    return millis * 1000;
+  }
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.halyard.core.DaemonResponse;
+import com.netflix.spinnaker.halyard.core.error.v1.HalException;
+import com.netflix.spinnaker.halyard.core.problem.v1.Problem;
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemBuilder;
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask.State;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only file recording every task's submission, state changes, stages, events and final response, one JSON
+ * entry per line. Replaying it rebuilds the tasks a previous daemon was tracking, so a client can reattach to a task
+ * after the daemon restarts and find out how far it got.
+ *
+ * The journal is compacted (rewritten to hold only the tasks currently retained) on startup and whenever it grows
+ * past its maximum size, which keeps it roughly bounded by the task repository's own retention limits.
+ *
+ * Appending only queues an entry; a single background thread serializes and writes the queue every
+ * FLUSH_INTERVAL_MILLIS, so task threads never serialize responses or wait on the disk. The same thread runs
+ * compaction. A crash can lose the entries appended since the last flush.
+ */
+@Slf4j
+public class TaskJournal {
+  private static final ObjectMapper objectMapper = new ObjectMapper()
+      .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+  private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+  private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "task-journal-flusher");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private final Path path;
+  private final long maxBytes;
+  private Writer writer;
+  private long size;
+  // Raised above maxBytes if even the retained tasks take up more than that, so the journal isn't rewritten constantly.
+  private long compactionThreshold;
+  // Entries appended since the last flush, written by the flusher thread.
+  private List<Entry> pending = new ArrayList<>();
+  // Set while a snapshot is being written, during which pending entries are held back for the new journal.
+  private boolean rewriting;
+  private ScheduledFuture<?> flushing;
+  // Run by the flusher thread once the journal has outgrown its compaction threshold.
+  private Runnable compactor;
+
+  public enum Type {
+    SUBMITTED,
+    CHILD,
+    STAGE,
+    EVENT,
+    STATE,
+    RELEASED
+  }
+
+  @Data
+  public static class Entry {
+    Type type;
+    String uuid;
+    Long timestamp;
+    String name;
+    String child;
+    String stage;
+    DaemonEvent event;
+    State state;
+    JsonNode response;
+    String fatalError;
+    // A terminal task's response, converted to the response field when the entry is written rather than when the
+    // task finishes.
+    @JsonIgnore DaemonResponse<?> unserializedResponse;
+  }
+
+  /**
+   * The tasks found in a journal, and which of them were still retained by the daemon that wrote it.
+   */
+  @Data
+  public static class Replay {
+    Map<String, DaemonTask> tasks = new LinkedHashMap<>();
+    Set<String> released = new HashSet<>();
+    Map<String, Long> lastUpdated = new LinkedHashMap<>();
+  }
+
+  public TaskJournal(Path path, long maxBytes) {
+    this.path = path;
+    this.maxBytes = maxBytes;
+    this.compactionThreshold = maxBytes;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * @param compactor rewrites the journal (see rewrite) once it grows too large. It's run on the flusher thread.
+   */
+  public synchronized void setCompactor(Runnable compactor) {
+    this.compactor = compactor;
+  }
+
+  /**
+   * Rebuild every task recorded in the journal. Unreadable entries (e.g. a line cut short by a crash) are skipped.
+   */
+  public Replay replay(int maxEvents) throws IOException {
+    flush();
+    Replay result = new Replay();
+    File file = path.toFile();
+    if (!file.exists()) {
+      return result;
+    }
+
+    List<String[]> links = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+
+        Entry entry;
+        try {
+          entry = objectMapper.readValue(line, Entry.class);
+        } catch (IOException e) {
+          log.warn("Skipping unreadable task journal entry: " + line);
+          continue;
+        }
+
+        if (entry.getType() == Type.SUBMITTED) {
+          result.tasks.put(entry.getUuid(), new DaemonTask(entry.getName(), entry.getUuid(), maxEvents));
+        }
+
+        DaemonTask task = result.tasks.get(entry.getUuid());
+        if (task == null) {
+          continue;
+        }
+
+        result.lastUpdated.put(entry.getUuid(), entry.getTimestamp());
+        apply(task, entry, links, result.released);
+      }
+    }
+
+    for (String[] link : links) {
+      DaemonTask parent = result.tasks.get(link[0]);
+      DaemonTask child = result.tasks.get(link[1]);
+      if (parent != null && child != null && parent.getChildren().stream().noneMatch(c -> c == child)) {
+        parent.addChild(child);
+      }
+    }
+
+    return result;
+  }
+
+  private static void apply(DaemonTask task, Entry entry, List<String[]> links, Set<String> released) {
+    long timestamp = entry.getTimestamp() == null ? 0 : entry.getTimestamp();
+    switch (entry.getType()) {
+      case SUBMITTED:
+        break;
+      case CHILD:
+        links.add(new String[]{entry.getUuid(), entry.getChild()});
+        break;
+      case STAGE:
+        task.restoreStage(entry.getStage(), timestamp);
+        break;
+      case EVENT:
+        task.getEvents().add(entry.getEvent());
+        break;
+      case STATE:
+        task.restoreState(entry.getState(), timestamp);
+        if (entry.getResponse() != null) {
+          task.setResponse(readResponse(entry.getResponse()));
+        }
+
+        if (entry.getFatalError() != null) {
+          task.setFatalError(new HalException(Problem.Severity.FATAL, entry.getFatalError()));
+        }
+        break;
+      case RELEASED:
+        released.add(task.getUuid());
+        break;
+    }
+  }
+
+  /**
+   * Mark a task that was still running when its daemon stopped as having failed for that reason.
+   */
+  static void markInterrupted(DaemonTask task) {
+    Problem problem = new ProblemBuilder(Problem.Severity.FATAL,
+        "Halyard restarted while task \"" + task.getName() + "\" was running, so it did not finish.")
+        .setRemediation("Check what state your deployment was left in, and re-run the command if needed.")
+        .build();
+    task.setResponse(new DaemonResponse<>(null, new ProblemSet(problem)));
+    task.setFatalError(new HalException(problem));
+    task.restoreState(State.FATAL, System.currentTimeMillis());
+  }
+
+  /**
+   * Replace the journal's contents with just enough entries to rebuild the given tasks, then keep appending to it.
+   *
+   * @param retained are the tasks a client may still ask for.
+   * @param all are the retained tasks and every task they reference, which need to be journaled to rebuild the trees.
+   */
+  public void rewrite(Collection<DaemonTask> retained, Collection<DaemonTask> all) throws IOException {
+    Set<String> snapshotted = new HashSet<>();
+    all.forEach(t -> snapshotted.add(t.getUuid()));
+    synchronized (this) {
+      // The snapshot covers everything appended so far for the tasks in it. Entries for other tasks (e.g. one submitted
+      // since the caller listed them), and whatever is appended while the snapshot is written, go in the new journal.
+      pending.removeIf(e -> snapshotted.contains(e.getUuid()));
+      rewriting = true;
+    }
+
+    // Written without holding the lock, so task threads can keep appending meanwhile.
+    long written = 0;
+    Path next = path.resolveSibling(path.getFileName() + ".next");
+    try {
+      File parent = path.toFile().getParentFile();
+      if (parent != null && !parent.exists() && !parent.mkdirs()) {
+        throw new IOException("Unable to create directory " + parent);
+      }
+
+      try (Writer snapshot = open(next, false)) {
+        for (DaemonTask task : all) {
+          written += writeSnapshot(snapshot, task, retained.contains(task));
+        }
+      }
+    } catch (IOException e) {
+      synchronized (this) {
+        rewriting = false;
+      }
+
+      throw e;
+    }
+
+    synchronized (this) {
+      closeWriter();
+      rewriting = false;
+      Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      size = written;
+      compactionThreshold = Math.max(maxBytes, 2 * size);
+      writer = open(path, true);
+      if (flushing == null) {
+        flushing = flusher.scheduleWithFixedDelay(this::flushAndCompact, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private long writeSnapshot(Writer out, DaemonTask task, boolean retained) throws IOException {
+    long now = System.currentTimeMillis();
+    long written = write(out, entry(Type.SUBMITTED, task).setName(task.getName()).setTimestamp(task.getStartedAt() == null ? now : task.getStartedAt()));
+
+    if (task.getStartedAt() != null) {
+      written += write(out, entry(Type.STATE, task).setState(State.RUNNING).setTimestamp(task.getStartedAt()));
+    }
+
+    List<DaemonTaskSpan> stages = task.getStageSpans();
+    List<DaemonEvent> events = task.getEvents();
+    int nextEvent = 0;
+    for (int i = 0; i < stages.size(); i++) {
+      DaemonTaskSpan stage = stages.get(i);
+      written += write(out, entry(Type.STAGE, task).setStage(stage.getName()).setTimestamp(stage.getStartedAt()));
+      while (nextEvent < events.size() && inStage(events.get(nextEvent), i, stage)) {
+        written += write(out, entry(Type.EVENT, task).setEvent(events.get(nextEvent++)));
+      }
+    }
+
+    for (; nextEvent < events.size(); nextEvent++) {
+      written += write(out, entry(Type.EVENT, task).setEvent(events.get(nextEvent)));
+    }
+
+    List<DaemonTask> children = task.getChildren();
+    for (DaemonTask child : children) {
+      written += write(out, entry(Type.CHILD, task).setChild(child.getUuid()));
+    }
+
+    if (task.getState().isTerminal()) {
+      written += write(out, stateEntry(task));
+    }
+
+    if (!retained) {
+      written += write(out, entry(Type.RELEASED, task));
+    }
+
+    return written;
+  }
+
+  // Events journaled before stages were indexed can only be matched by name.
+  private static boolean inStage(DaemonEvent event, int index, DaemonTaskSpan stage) {
+    if (event.getStageIndex() != null) {
+      return event.getStageIndex() == index;
+    }
+
+    return stage.getName().equals(event.getStage());
+  }
+
+  /**
+   * Queue an entry to be written by the next flush.
+   */
+  public synchronized void append(Entry entry) {
+    if (writer == null) {
+      return;
+    }
+
+    if (entry.getTimestamp() == null) {
+      entry.setTimestamp(System.currentTimeMillis());
+    }
+
+    pending.add(entry);
+  }
+
+  synchronized void flush() {
+    if (writer == null || rewriting || pending.isEmpty()) {
+      return;
+    }
+
+    for (Entry entry : pending) {
+      try {
+        size += write(writer, entry);
+      } catch (IOException e) {
+        log.warn("Failed to write to task journal " + path + ": ", e);
+      }
+    }
+
+    pending = new ArrayList<>();
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      log.warn("Failed to flush task journal " + path + ": ", e);
+    }
+  }
+
+  private void flushAndCompact() {
+    flush();
+
+    Runnable compaction;
+    synchronized (this) {
+      compaction = writer != null && size > compactionThreshold ? compactor : null;
+    }
+
+    // Outside the lock, since compacting reads every retained task and then calls rewrite.
+    if (compaction != null) {
+      compaction.run();
+    }
+  }
+
+  private static long write(Writer out, Entry entry) throws IOException {
+    if (entry.getTimestamp() == null) {
+      entry.setTimestamp(System.currentTimeMillis());
+    }
+
+    if (entry.getUnserializedResponse() != null && entry.getResponse() == null) {
+      try {
+        entry.setResponse(objectMapper.valueToTree(entry.getUnserializedResponse()));
+      } catch (IllegalArgumentException e) {
+        log.warn("Unable to journal the response of task " + entry.getUuid() + ": ", e);
+      }
+    }
+
+    String line = objectMapper.writeValueAsString(entry) + "\n";
+    out.write(line);
+    return line.length();
+  }
+
+  public synchronized void close() {
+    if (flushing != null) {
+      flushing.cancel(false);
+      flushing = null;
+    }
+
+    closeWriter();
+  }
+
+  private void closeWriter() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        log.warn("Failed to close task journal " + path + ": ", e);
+      }
+
+      writer = null;
+    }
+  }
+
+  static Entry entry(Type type, DaemonTask task) {
+    return new Entry().setType(type).setUuid(task.getUuid());
+  }
+
+  static Entry stateEntry(DaemonTask task) {
+    Entry result = entry(Type.STATE, task).setState(task.getState());
+    if (task.getState().isTerminal()) {
+      result.setUnserializedResponse(task.getResponse());
+
+      if (task.getFatalError() != null) {
+        result.setFatalError(task.getFatalError().getMessage());
+      }
+
+      if (task.getEndedAt() != null) {
+        result.setTimestamp(task.getEndedAt());
+      }
+    }
+
+    return result;
+  }
+
+  private static DaemonResponse<Object> readResponse(JsonNode node) {
+    ProblemSet problemSet = new ProblemSet();
+    JsonNode problems = node.path("problemSet").path("problems");
+    for (JsonNode problem : problems) {
+      List<String> options = new ArrayList<>();
+      problem.path("options").forEach(o -> options.add(o.asText()));
+      problemSet.add(new Problem(
+          text(problem, "message"),
+          text(problem, "remediation"),
+          options.isEmpty() ? null : options,
+          Problem.Severity.valueOf(problem.path("severity").asText(Problem.Severity.FATAL.toString())),
+          text(problem, "location")
+      ));
+    }
+
+    JsonNode body = node.get("responseBody");
+    Object responseBody = body == null || body.isNull() ? null : objectMapper.convertValue(body, Object.class);
+    return new DaemonResponse<>(responseBody, problemSet);
+  }
+
+  private static String text(JsonNode node, String field) {
+    JsonNode value = node.get(field);
+    return value == null || value.isNull() ? null : value.asText();
+  }
+
+  private static Writer open(Path path, boolean append) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path.toFile(), append), StandardCharsets.UTF_8));
+  }
+}
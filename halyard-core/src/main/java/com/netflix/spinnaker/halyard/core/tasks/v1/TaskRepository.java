@@ -9,65 +9,242 @@ import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask.State;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * All stored running/recently completed tasks.
+ *
+ * Terminal tasks are normally removed once a client polls them, but clients can disappear before that happens. A
+ * background reaper evicts terminal tasks older than a configurable TTL, and the oldest terminal tasks first whenever
+ * more than the configured maximum number of tasks are retained.
+ *
+ * When a TaskJournal is opened, every change to a task is also journaled, so the repository can be rebuilt after a
+ * restart.
  */
 @Slf4j
 public class TaskRepository {
   static final Map<String, DaemonTaskStatus> tasks = new ConcurrentHashMap<>();
 
+  private static final AtomicLong evicted = new AtomicLong();
+
+  // Tasks computing a shared result, keyed by whatever identifies the computation, only while they are running.
+  static final Map<String, DaemonTask> sharedTasks = new ConcurrentHashMap<>();
+
+  private static final AtomicLong coalesced = new AtomicLong();
+
+  private static ScheduledExecutorService reaper;
+
+  private static volatile int maxEventsPerTask = DaemonTask.DEFAULT_MAX_EVENTS;
+
+  // Null unless openJournal was called.
+  private static volatile TaskJournal journal;
+
+  // Rough per-object overheads used when estimating how much memory retained tasks are holding on to.
+  private static final long TASK_OVERHEAD_BYTES = 512;
+  private static final long EVENT_OVERHEAD_BYTES = 96;
+
   static public List<String> getTasks() {
     return new ArrayList<>(tasks.keySet());
   }
 
   static public <C, T> DaemonTask<C, T> submitTask(Supplier<DaemonResponse<T>> runner, String name) {
-    DaemonTask<C, T> task = new DaemonTask<>(name);
+    DaemonTask<C, T> task = new DaemonTask<>(name, maxEventsPerTask);
+    task.setBatchId(DaemonTaskHandler.getBatchId());
+    DaemonTaskStatus status = new DaemonTaskStatus().setTask(task);
     String uuid = task.getUuid();
     log.info("Scheduling task " + task);
+    journal(TaskJournal.entry(TaskJournal.Type.SUBMITTED, task).setName(name));
     Runnable r = () -> {
       log.info("Starting task " + task);
-      DaemonTaskHandler.setTask(task);
-      task.setState(State.RUNNING);
       try {
-        DaemonResponse<T> response = runner.get();
-        task.setResponse(response);
-        task.setState(State.SUCCESS);
-      } catch (HalException e) {
+        run(task, runner);
+      } finally {
+        status.setCompletedAt(System.currentTimeMillis());
+        task.runTerminalListeners();
+        // Notify after changing state to avoid data-race where threads are notified before thread appears terminal
+        synchronized (task) {
+          task.notifyAll();
+        }
+      }
+      log.info("Task " + task + " completed");
+    };
+
+    Thread t = new Thread(r);
+    status.setRunner(t);
+    tasks.put(uuid, status);
+    t.start();
+
+    return task;
+  }
+
+  /**
+   * Run a task to completion on the calling thread, for work cheap enough that scheduling and polling it would cost
+   * more than the work itself. The task is never registered, so it can't be polled, cancelled or journaled; callers
+   * hand it back already terminal instead.
+   */
+  static public <C, T> DaemonTask<C, T> runInline(Supplier<DaemonResponse<T>> runner, String name) {
+    DaemonTask<C, T> task = new DaemonTask<>(name, maxEventsPerTask);
+    task.setInline(true);
+    task.setBatchId(DaemonTaskHandler.getBatchId());
+    DaemonTask previous = DaemonTaskHandler.getTask();
+    log.info("Running task " + task + " inline");
+    try {
+      run(task, runner);
+      task.runTerminalListeners();
+    } finally {
+      // The calling thread is likely pooled, so don't leave it looking like it's running a task.
+      DaemonTaskHandler.setTask(previous);
+    }
+
+    return task;
+  }
+
+  private static <C, T> void run(DaemonTask<C, T> task, Supplier<DaemonResponse<T>> runner) {
+    DaemonTaskHandler.setTask(task);
+    task.setState(State.RUNNING);
+    try {
+      task.checkCancelled();
+      DaemonResponse<T> response = runner.get();
+      task.setResponse(response);
+      task.setState(State.SUCCESS);
+    } catch (DaemonTaskInterrupted e) {
+      markCancelled(task, e);
+    } catch (HalException e) {
+      // Killing a task's jobs or interrupting it often surfaces as an ordinary failure.
+      if (task.isCancelled()) {
+        markCancelled(task, e);
+      } else {
         log.info("Task " + task + " failed for reason: ", e);
         task.setResponse(new DaemonResponse<>(null, new ProblemSet(e.getProblems())));
         task.setFatalError(e);
         task.setState(State.FATAL);
-      } catch (Exception e) {
+      }
+    } catch (Exception e) {
+      if (task.isCancelled()) {
+        markCancelled(task, e);
+      } else {
         log.warn("Task " + task + " failed for unknown reason: ", e);
         Problem problem = new ProblemBuilder(Problem.Severity.FATAL, "Unknown exception: " + e).build();
         task.setResponse(new DaemonResponse<>(null, new ProblemSet(problem)));
         task.setFatalError(e);
         task.setState(State.FATAL);
-      } finally {
-        task.cleanupResources();
-        // Notify after changing state to avoid data-race where threads are notified before thread appears terminal
-        synchronized (task) {
-          task.notifyAll();
+      }
+    } finally {
+      task.cleanupResources();
+    }
+  }
+
+  /**
+   * Submit a task whose result can be shared. If a task was already submitted with the same key and is still running,
+   * the new task doesn't repeat the work, it waits on the running task and reports its result instead. Callers still
+   * get their own task to poll (and release) independently of one another.
+   *
+   * @param key must identify everything the runner's result depends on.
+   */
+  static public <C, T> DaemonTask<C, T> submitSharedTask(Supplier<DaemonResponse<T>> runner, String name, String key) {
+    DaemonTask<C, T> leader;
+    synchronized (sharedTasks) {
+      leader = sharedTasks.get(key);
+      if (leader == null || leader.getState().isTerminal()) {
+        DaemonTask<C, T> task = submitTask(runner, name);
+        sharedTasks.put(key, task);
+        task.whenTerminal(t -> sharedTasks.remove(key, t));
+        return task;
+      }
+    }
+
+    log.info("Coalescing task \"" + name + "\" onto " + leader);
+    coalesced.incrementAndGet();
+    DaemonTask<C, T> finalLeader = leader;
+    return submitTask(() -> awaitShared(finalLeader, runner), name);
+  }
+
+  private static <T> DaemonResponse<T> awaitShared(DaemonTask<?, T> leader, Supplier<DaemonResponse<T>> runner) {
+    DaemonTaskHandler.newStage("Waiting on identical task " + leader);
+
+    // Spin due to spurious wakeups
+    while (!leader.getState().isTerminal()) {
+      try {
+        synchronized (leader) {
+          if (!leader.getState().isTerminal()) {
+            leader.wait();
+          }
         }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DaemonTaskInterrupted("Interrupted while waiting on " + leader, e);
       }
-      log.info("Task " + task + " completed");
-    };
+    }
 
-    Thread t = new Thread(r);
-    tasks.put(uuid, new DaemonTaskStatus()
-        .setRunner(t)
-        .setTask(task));
-    t.start();
+    switch (leader.getState()) {
+      case SUCCESS:
+        return leader.getResponse();
+      case FATAL:
+        Exception e = leader.getFatalError();
+        throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+      case CANCELLED:
+        // Whoever owned the shared task gave up on it, that's no reason for this one to fail.
+        DaemonTaskHandler.newStage("Identical task was cancelled, running this one instead");
+        return runner.get();
+      default:
+        throw new IllegalStateException("Unknown terminal state " + leader.getState());
+    }
+  }
+
+  private static void markCancelled(DaemonTask task, Exception e) {
+    log.info("Task " + task + " was cancelled");
+    Problem problem = new ProblemBuilder(Problem.Severity.FATAL, "Task \"" + task.getName() + "\" was cancelled.").build();
+    task.setResponse(new DaemonResponse<>(null, new ProblemSet(problem)));
+    task.setFatalError(e);
+    task.setState(State.CANCELLED);
+  }
+
+  /**
+   * Cancel a task and all of its descendants. Cancellation is cooperative: each task's jobs are killed and its thread
+   * interrupted, and the task ends in the CANCELLED state once its thread unwinds.
+   *
+   * @param uuid is the task to cancel.
+   * @return the cancelled task, or null if no such task exists.
+   */
+  static public <C, T> DaemonTask<C, T> cancelTask(String uuid) {
+    DaemonTaskStatus status = tasks.get(uuid);
+    if (status == null) {
+      return null;
+    }
 
+    DaemonTask<C, T> task = status.getTask();
+    task.consumeTaskTree(TaskRepository::cancel);
     return task;
   }
 
+  private static void cancel(DaemonTask task) {
+    if (task.getState().isTerminal()) {
+      return;
+    }
+
+    log.info("Cancelling task " + task);
+    task.cancel();
+
+    DaemonTaskStatus status = tasks.get(task.getUuid());
+    if (status != null && status.getRunner() != null) {
+      status.getRunner().interrupt();
+    }
+  }
+
   static public <C, T> DaemonTask<C, T> getTask(String uuid) {
     DaemonTaskStatus status = tasks.get(uuid);
     if (status == null) {
@@ -81,22 +258,212 @@ public class TaskRepository {
         break;
       case FATAL:
         log.warn("Task " + task + " encountered a fatal exception");
+      case CANCELLED:
       case SUCCESS:
         log.info("Terminating task " + task);
         try {
-          status.getRunner().join();
+          // Tasks restored from the journal have no runner.
+          if (status.getRunner() != null) {
+            status.getRunner().join();
+          }
         } catch (InterruptedException ignored) {
         }
 
-        tasks.remove(uuid);
+        if (tasks.remove(uuid) != null) {
+          journal(TaskJournal.entry(TaskJournal.Type.RELEASED, task));
+        }
     }
 
     return task;
   }
 
+  /**
+   * Unlike getTask, this never releases a terminal task from the repository.
+   *
+   * @return the task with the given uuid, or null if no such task is stored.
+   */
+  static public <C, T> DaemonTask<C, T> peekTask(String uuid) {
+    DaemonTaskStatus status = tasks.get(uuid);
+    return status == null ? null : status.getTask();
+  }
+
+  static void journal(TaskJournal.Entry entry) {
+    TaskJournal current = journal;
+    if (current != null) {
+      current.append(entry);
+    }
+  }
+
+  private static void compactJournal(TaskJournal current) {
+    if (journal != current) {
+      return;
+    }
+
+    // Tasks are compared by identity: DaemonTask's equals and hashCode would walk entire task trees.
+    Set<DaemonTask> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+    tasks.values().forEach(s -> retained.add(s.getTask()));
+    Set<DaemonTask> all = Collections.newSetFromMap(new IdentityHashMap<>());
+    retained.forEach(t -> t.consumeTaskTree(all::add));
+
+    try {
+      current.rewrite(retained, all);
+    } catch (IOException e) {
+      log.warn("Failed to compact task journal " + current.getPath() + ", no longer journaling tasks: ", e);
+      journal = null;
+      current.close();
+    }
+  }
+
+  /**
+   * Rebuild the tasks recorded in a journal left behind by a previous daemon, and journal all tasks from now on.
+   * Tasks that were still running when that daemon stopped are marked as failed, and tasks that had already been
+   * collected by a client or were older than the TTL are dropped.
+   *
+   * @param ttlMillis is how long a terminal task is retained before it is dropped.
+   */
+  static public synchronized void openJournal(TaskJournal next, long ttlMillis) {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+
+    long now = System.currentTimeMillis();
+    try {
+      TaskJournal.Replay replay = next.replay(maxEventsPerTask);
+      for (DaemonTask task : replay.getTasks().values()) {
+        if (!task.getState().isTerminal()) {
+          log.info("Task " + task + " was interrupted by a restart");
+          TaskJournal.markInterrupted(task);
+        }
+
+        Long lastUpdated = replay.getLastUpdated().get(task.getUuid());
+        boolean expired = lastUpdated == null || now - lastUpdated > ttlMillis;
+        if (!replay.getReleased().contains(task.getUuid()) && !expired && !tasks.containsKey(task.getUuid())) {
+          tasks.put(task.getUuid(), new DaemonTaskStatus().setTask(task).setCompletedAt(now));
+        }
+      }
+
+      log.info("Restored " + tasks.size() + " tasks from task journal " + next.getPath());
+    } catch (IOException e) {
+      log.warn("Failed to read task journal " + next.getPath() + ", starting with no tasks: ", e);
+    }
+
+    journal = next;
+    next.setCompactor(() -> compactJournal(next));
+    compactJournal(next);
+  }
+
+  static public synchronized void closeJournal() {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+  }
+
+  /**
+   * @param maxEvents is how many of its most recent events each newly submitted task retains.
+   */
+  static public void setMaxEventsPerTask(int maxEvents) {
+    maxEventsPerTask = maxEvents;
+  }
+
+  /**
+   * Start the background reaper. Calling this more than once replaces the previously running reaper.
+   *
+   * @param ttlMillis is how long a terminal task is retained before it is evicted.
+   * @param maxTasks is the most tasks retained at once; only terminal tasks are ever evicted to satisfy this.
+   * @param intervalMillis is how often the reaper runs.
+   */
+  static public synchronized void startReaper(long ttlMillis, int maxTasks, long intervalMillis) {
+    if (reaper != null) {
+      reaper.shutdownNow();
+    }
+
+    reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "task-repository-reaper");
+      t.setDaemon(true);
+      return t;
+    });
+
+    log.info("Reaping terminal tasks older than " + ttlMillis + "ms, retaining at most " + maxTasks + " tasks");
+    reaper.scheduleWithFixedDelay(() -> {
+      try {
+        reap(ttlMillis, maxTasks);
+      } catch (Exception e) {
+        log.warn("Failed to reap tasks: ", e);
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  static void reap(long ttlMillis, int maxTasks) {
+    long now = System.currentTimeMillis();
+    List<Map.Entry<String, DaemonTaskStatus>> terminal = tasks.entrySet()
+        .stream()
+        .filter(e -> e.getValue().getCompletedAt() != null)
+        .sorted(Comparator.comparing(e -> e.getValue().getCompletedAt()))
+        .collect(Collectors.toList());
+
+    int overCapacity = tasks.size() - maxTasks;
+    for (Map.Entry<String, DaemonTaskStatus> entry : terminal) {
+      boolean expired = now - entry.getValue().getCompletedAt() > ttlMillis;
+      if (!expired && overCapacity <= 0) {
+        // Entries are sorted oldest first, nothing after this can be expired either.
+        break;
+      }
+
+      if (tasks.remove(entry.getKey()) != null) {
+        log.info("Evicting " + (expired ? "expired" : "excess") + " task " + entry.getValue().getTask());
+        evicted.incrementAndGet();
+        journal(TaskJournal.entry(TaskJournal.Type.RELEASED, entry.getValue().getTask()));
+        overCapacity--;
+      }
+    }
+  }
+
+  static public long countLiveTasks() {
+    return tasks.values().stream().filter(s -> s.getCompletedAt() == null).count();
+  }
+
+  static public long countTerminalTasks() {
+    return tasks.values().stream().filter(s -> s.getCompletedAt() != null).count();
+  }
+
+  static public long countEvictedTasks() {
+    return evicted.get();
+  }
+
+  static public long countCoalescedTasks() {
+    return coalesced.get();
+  }
+
+  /**
+   * Children are stored alongside their parents, so summing over every stored task already accounts for whole trees.
+   * Responses aren't counted, since their size can't be estimated without serializing them.
+   *
+   * @return a rough estimate of the heap retained by all stored tasks and their events.
+   */
+  static public long estimateRetainedBytes() {
+    return tasks.values().stream().mapToLong(s -> estimateRetainedBytes(s.getTask())).sum();
+  }
+
+  private static long estimateRetainedBytes(DaemonTask task) {
+    long result = TASK_OVERHEAD_BYTES;
+    List<DaemonEvent> events = task.getEvents();
+    for (DaemonEvent event : events) {
+      result += EVENT_OVERHEAD_BYTES + 2 * (length(event.getMessage()) + length(event.getStage()) + length(event.getDetail()));
+    }
+
+    return result;
+  }
+
+  private static long length(String s) {
+    return s == null ? 0 : s.length();
+  }
+
   @Data
   static private class DaemonTaskStatus {
     DaemonTask task;
     Thread runner;
+    Long completedAt;
   }
 }
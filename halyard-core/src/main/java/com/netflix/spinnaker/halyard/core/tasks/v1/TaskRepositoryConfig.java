@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import com.netflix.spectator.api.Registry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(TaskRepositoryProperties.class)
+public class TaskRepositoryConfig {
+  @Autowired
+  TaskRepositoryProperties properties;
+
+  @Autowired
+  Registry registry;
+
+  @Value("${halyard.halconfig.directory:~/.hal}")
+  String halconfigDirectory;
+
+  @PostConstruct
+  void init() {
+    TaskRepository.setMaxEventsPerTask(properties.getMaxEventsPerTask());
+    if (properties.isJournalEnabled()) {
+      String path = properties.getJournalPath();
+      if (path == null) {
+        path = Paths.get(halconfigDirectory, "task-journal").toString();
+      }
+
+      path = path.replaceFirst("^~", System.getProperty("user.home"));
+      TaskRepository.openJournal(new TaskJournal(Paths.get(path), properties.getJournalMaxBytes()),
+          TimeUnit.SECONDS.toMillis(properties.getTtlSeconds()));
+    }
+
+    TaskRepository.startReaper(
+        TimeUnit.SECONDS.toMillis(properties.getTtlSeconds()),
+        properties.getMaxTasks(),
+        TimeUnit.SECONDS.toMillis(properties.getReapIntervalSeconds())
+    );
+
+    registry.gauge(registry.createId("tasks.live"), this, c -> TaskRepository.countLiveTasks());
+    registry.gauge(registry.createId("tasks.terminal"), this, c -> TaskRepository.countTerminalTasks());
+    registry.gauge(registry.createId("tasks.evicted"), this, c -> TaskRepository.countEvictedTasks());
+    registry.gauge(registry.createId("tasks.coalesced"), this, c -> TaskRepository.countCoalescedTasks());
+    registry.gauge(registry.createId("tasks.retainedBytes"), this, c -> TaskRepository.estimateRetainedBytes());
+  }
+
+  @PreDestroy
+  void shutdown() {
+    TaskRepository.closeJournal();
+  }
+}
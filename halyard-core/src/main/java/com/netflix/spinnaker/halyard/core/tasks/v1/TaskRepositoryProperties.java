@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("halyard.tasks")
+public class TaskRepositoryProperties {
+  // How long a terminal task is kept around for a client to collect it.
+  private long ttlSeconds = 600;
+  // The most tasks (including children) that are retained at once.
+  private int maxTasks = 1000;
+  private long reapIntervalSeconds = 30;
+  // How many of its most recent events each task retains.
+  private int maxEventsPerTask = 1000;
+  // Whether tasks are journaled to disk so they can be restored after a restart.
+  private boolean journalEnabled = true;
+  // Defaults to a file in the halconfig directory.
+  private String journalPath;
+  // The journal is compacted once it grows past this.
+  private long journalMaxBytes = 16 * 1024 * 1024;
+}
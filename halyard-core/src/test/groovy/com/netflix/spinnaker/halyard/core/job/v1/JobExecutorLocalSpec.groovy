@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.job.v1
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class JobExecutorLocalSpec extends Specification {
+  void "a finished job's status can be collected more than once"() {
+    setup:
+    def executor = new JobExecutorLocal()
+    def jobId = executor.startJob(new JobRequest().setTokenizedCommand(["echo", "hi"]))
+
+    when:
+    def first = executor.waitForJob(jobId).get(10, TimeUnit.SECONDS)
+    def second = executor.waitForJob(jobId).get(10, TimeUnit.SECONDS)
+    def polled = executor.updateJob(jobId)
+
+    then:
+    [first, second, polled].every { it.state == JobStatus.State.COMPLETED && it.result == JobStatus.Result.SUCCESS }
+    polled.stdOut.trim() == "hi"
+    !executor.jobExists(jobId)
+  }
+
+  void "a finished job is forgotten once it's been kept long enough"() {
+    setup:
+    def executor = new JobExecutorLocal()
+    executor.finishedJobRetentionMillis = 0
+    def jobId = executor.startJob(new JobRequest().setTokenizedCommand(["true"]))
+    executor.waitForJob(jobId).get(10, TimeUnit.SECONDS)
+    sleep(10)
+
+    expect:
+    executor.updateJob(jobId) == null
+  }
+}
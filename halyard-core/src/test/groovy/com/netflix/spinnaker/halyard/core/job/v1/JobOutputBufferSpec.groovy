@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.halyard.core.job.v1
+
+import spock.lang.Specification
+
+class JobOutputBufferSpec extends Specification {
+  void "output is read from the offset asked for"() {
+    setup:
+    def buffer = new JobOutputBuffer()
+    buffer.write("hello ".bytes)
+    def first = buffer.read(0)
+    buffer.write("world".bytes)
+
+    when:
+    def second = buffer.read(first.nextOffset)
+
+    then:
+    first.data == "hello "
+    second.data == "world"
+    second.offset == 6
+    second.nextOffset == 11
+    !second.truncated
+    buffer.read(0).data == "hello world"
+  }
+
+  void "only roughly the most recent output is retained"() {
+    setup:
+    def chunk = JobOutputBuffer.CHUNK_BYTES
+    def buffer = new JobOutputBuffer(chunk, null)
+
+    when:
+    buffer.write(("a" * chunk).bytes)
+    buffer.write(("b" * chunk).bytes)
+    buffer.write("c".bytes)
+    def output = buffer.read(0)
+
+    then:
+    output.truncated
+    output.offset == chunk
+    output.data == ("b" * chunk) + "c"
+    output.nextOffset == 2 * chunk + 1
+  }
+
+  void "all output is also written to the spill file"() {
+    setup:
+    def spill = File.createTempFile("job-output", ".stdout")
+    def buffer = new JobOutputBuffer(16, spill.toPath())
+
+    when:
+    buffer.write(("x" * 100).bytes)
+    buffer.closeSpill()
+
+    then:
+    spill.text == "x" * 100
+
+    cleanup:
+    spill.delete()
+  }
+
+  void "deleting the spill removes the rotated file too"() {
+    setup:
+    def spill = File.createTempFile("job-output", ".stdout")
+    def rotated = new File(spill.path + ".1")
+    def buffer = new JobOutputBuffer(16, spill.toPath())
+
+    when:
+    buffer.write(new byte[(int) JobOutputBuffer.MAX_SPILL_BYTES])
+    buffer.write("x".bytes)
+
+    then:
+    rotated.exists()
+
+    when:
+    buffer.deleteSpill()
+
+    then:
+    !spill.exists()
+    !rotated.exists()
+
+    cleanup:
+    spill.delete()
+    rotated.delete()
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1
+
+import spock.lang.Specification
+
+class DaemonEventLogSpec extends Specification {
+  void "events are assigned increasing sequence numbers"() {
+    setup:
+    def log = new DaemonEventLog(10)
+
+    when:
+    3.times { log.add(new DaemonEvent().setMessage("m" + it)) }
+
+    then:
+    log.collect { it.sequence } == [0L, 1L, 2L]
+    log.lastSequence == 2L
+  }
+
+  void "only the most recent events are retained"() {
+    setup:
+    def log = new DaemonEventLog(3)
+
+    when:
+    5.times { log.add(new DaemonEvent().setMessage("m" + it)) }
+
+    then:
+    log.size() == 3
+    log.collect { it.message } == ["m2", "m3", "m4"]
+    log.collect { it.sequence } == [2L, 3L, 4L]
+  }
+
+  void "reads from a sequence number return only newer events"() {
+    setup:
+    def log = new DaemonEventLog(5)
+    4.times { log.add(new DaemonEvent().setMessage("m" + it)) }
+
+    expect:
+    log.since(sequence).collect { it.message } == expected
+
+    where:
+    sequence || expected
+    -1L      || ["m0", "m1", "m2", "m3"]
+    1L       || ["m2", "m3"]
+    3L       || []
+  }
+
+  void "reads from a sequence number that was overwritten return the retained tail"() {
+    setup:
+    def log = new DaemonEventLog(2)
+    5.times { log.add(new DaemonEvent().setMessage("m" + it)) }
+
+    expect:
+    log.since(0L).collect { it.sequence } == [3L, 4L]
+  }
+
+  void "a reader following the last sequence never skips an event written concurrently"() {
+    setup:
+    def log = new DaemonEventLog(100000)
+    def writers = (0..<4).collect { w ->
+      Thread.start { 10000.times { log.add(new DaemonEvent().setMessage("w" + w)) } }
+    }
+
+    when:
+    def seen = []
+    long cursor = -1
+    while (writers.any { it.alive } || cursor < log.lastSequence) {
+      long last = log.lastSequence
+      seen.addAll(log.since(cursor).findAll { it.sequence <= last }.collect { it.sequence })
+      cursor = last
+    }
+
+    then:
+    seen == (0L..<40000L).toList()
+  }
+
+  void "indexed reads count from the oldest retained event"() {
+    setup:
+    def log = new DaemonEventLog(3)
+    5.times { log.add(new DaemonEvent().setMessage("m" + it)) }
+
+    expect:
+    (0..<log.size()).collect { log.get(it).message } == ["m2", "m3", "m4"]
+
+    when:
+    log.get(3)
+
+    then:
+    thrown(IndexOutOfBoundsException)
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DaemonTaskSpec extends Specification {
+  void "a change to one task doesn't wake clients waiting on another"() {
+    setup:
+    def watched = new DaemonTask("watched")
+    def other = new DaemonTask("other")
+    def seen = watched.getChangeCount()
+
+    when:
+    other.newStage("unrelated")
+
+    then:
+    watched.getChangeCount() == seen
+    other.getChangeCount() > 0
+  }
+
+  void "a change to a child wakes clients waiting on its parent"() {
+    setup:
+    def parent = new DaemonTask("parent")
+    def child = new DaemonTask("child")
+    parent.addChild(child)
+    def seen = parent.getChangeCount()
+    def woken = new CountDownLatch(1)
+
+    Thread.start {
+      parent.awaitChange(seen, TimeUnit.SECONDS.toMillis(10))
+      woken.countDown()
+    }
+
+    when:
+    child.newStage("working")
+
+    then:
+    woken.await(5, TimeUnit.SECONDS)
+    parent.getChangeCount() > seen
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1
+
+import com.netflix.spinnaker.halyard.core.DaemonResponse
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask.State
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class TaskJournalSpec extends Specification {
+  TaskJournal journal
+
+  void setup() {
+    def dir = Files.createTempDirectory("task-journal")
+    journal = new TaskJournal(dir.resolve("journal"), 1024 * 1024)
+    journal.rewrite([], [])
+  }
+
+  void cleanup() {
+    journal.close()
+  }
+
+  void "tasks are rebuilt from their journaled entries"() {
+    setup:
+    def parent = new DaemonTask("parent", 10)
+    def child = new DaemonTask("child", 10)
+
+    when:
+    journal.append(TaskJournal.entry(TaskJournal.Type.SUBMITTED, parent).setName("parent"))
+    journal.append(TaskJournal.entry(TaskJournal.Type.SUBMITTED, child).setName("child"))
+    journal.append(TaskJournal.entry(TaskJournal.Type.CHILD, parent).setChild(child.uuid))
+    journal.append(TaskJournal.entry(TaskJournal.Type.STAGE, parent).setStage("Deploying"))
+    journal.append(TaskJournal.entry(TaskJournal.Type.EVENT, parent).setEvent(new DaemonEvent().setStage("Deploying").setMessage("m0")))
+    child.response = new DaemonResponse<>("done", new ProblemSet())
+    child.state = State.SUCCESS
+    journal.append(TaskJournal.stateEntry(child))
+    journal.append(TaskJournal.entry(TaskJournal.Type.RELEASED, child))
+    def replay = journal.replay(10)
+
+    then:
+    replay.tasks.size() == 2
+    def restored = replay.tasks[parent.uuid]
+    restored.name == "parent"
+    restored.currentStage == "Deploying"
+    restored.events.collect { it.message } == ["m0"]
+    restored.children.collect { it.uuid } == [child.uuid]
+    restored.children[0].state == State.SUCCESS
+    restored.children[0].response.responseBody == "done"
+    replay.released == [child.uuid] as Set
+  }
+
+  void "interrupted tasks are marked as failed"() {
+    setup:
+    def task = new DaemonTask("deploy", 10)
+    journal.append(TaskJournal.entry(TaskJournal.Type.SUBMITTED, task).setName("deploy"))
+    journal.append(TaskJournal.entry(TaskJournal.Type.STATE, task).setState(State.RUNNING))
+
+    when:
+    def restored = journal.replay(10).tasks[task.uuid]
+    TaskJournal.markInterrupted(restored)
+
+    then:
+    restored.state == State.FATAL
+    restored.fatalError != null
+    !restored.response.problemSet.empty
+  }
+
+  void "compaction keeps events under their own stage when stage names repeat"() {
+    setup:
+    def task = new DaemonTask("deploy", 10)
+    task.restoreStage("Waiting", 1)
+    task.restoreStage("Waiting", 2)
+    task.events.add(new DaemonEvent().setStage("Waiting").setStageIndex(1).setMessage("done waiting"))
+
+    when:
+    journal.rewrite([task], [task])
+    journal.flush()
+    def types = journal.path.toFile().readLines().collect { new JsonSlurper().parseText(it).type }
+
+    then:
+    types == ["SUBMITTED", "STAGE", "STAGE", "EVENT"]
+  }
+
+  void "appended entries are flushed in the background"() {
+    setup:
+    def task = new DaemonTask("deploy", 10)
+
+    when:
+    journal.append(TaskJournal.entry(TaskJournal.Type.SUBMITTED, task).setName("deploy"))
+    def deadline = System.currentTimeMillis() + 5000
+    while (journal.path.toFile().length() == 0 && System.currentTimeMillis() < deadline) {
+      sleep(10)
+    }
+
+    then:
+    journal.path.toFile().readLines().size() == 1
+  }
+
+  void "a terminal task's response is only serialized when its entry is written"() {
+    setup:
+    def task = new DaemonTask("deploy", 10)
+    task.response = new DaemonResponse<>("done", new ProblemSet())
+    task.state = State.SUCCESS
+
+    when:
+    def entry = TaskJournal.stateEntry(task)
+
+    then:
+    entry.response == null
+    entry.unserializedResponse.is(task.response)
+
+    when:
+    journal.append(TaskJournal.entry(TaskJournal.Type.SUBMITTED, task).setName("deploy"))
+    journal.append(entry)
+    journal.flush()
+
+    then:
+    new JsonSlurper().parseText(journal.path.toFile().readLines()[1]).response.responseBody == "done"
+  }
+
+  void "compaction runs on the flusher thread once the journal outgrows its threshold"() {
+    setup:
+    def small = new TaskJournal(Files.createTempDirectory("task-journal").resolve("journal"), 256)
+    small.rewrite([], [])
+    def compacted = new CountDownLatch(1)
+    String compactingThread = null
+    small.setCompactor({
+      compactingThread = Thread.currentThread().name
+      compacted.countDown()
+    })
+    def task = new DaemonTask("deploy", 10)
+
+    when:
+    20.times { small.append(TaskJournal.entry(TaskJournal.Type.EVENT, task).setEvent(new DaemonEvent().setMessage("m" + it))) }
+
+    then:
+    compacted.await(5, TimeUnit.SECONDS)
+    compactingThread == "task-journal-flusher"
+
+    cleanup:
+    small.close()
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.core.tasks.v1
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spinnaker.halyard.core.DaemonResponse
+import com.netflix.spinnaker.halyard.core.error.v1.HalException
+import com.netflix.spinnaker.halyard.core.problem.v1.Problem
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask.State
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+class TaskRepositorySpec extends Specification {
+  CountDownLatch finish = new CountDownLatch(1)
+
+  void cleanup() {
+    finish.countDown()
+    TaskRepository.tasks.clear()
+  }
+
+  void "inline tasks complete on the calling thread without being registered"() {
+    setup:
+    def thread = null
+    def context = null
+
+    when:
+    def task = TaskRepository.runInline({
+      thread = Thread.currentThread()
+      DaemonTaskHandler.setContext("context")
+      context = DaemonTaskHandler.getContext()
+      return new DaemonResponse<>("body", new ProblemSet())
+    }, "read")
+
+    then:
+    thread == Thread.currentThread()
+    context == "context"
+    task.state == State.SUCCESS
+    task.response.responseBody == "body"
+    TaskRepository.peekTask(task.uuid) == null
+    DaemonTaskHandler.getTask() == null
+  }
+
+  void "inline tasks that fail are reported as fatal"() {
+    when:
+    def task = TaskRepository.runInline({
+      throw new HalException(Problem.Severity.FATAL, "no such account")
+    }, "read")
+
+    then:
+    task.state == State.FATAL
+    task.fatalError instanceof HalException
+    task.response.problemSet.problems.collect { it.message } == ["no such account"]
+    DaemonTaskHandler.getTask() == null
+  }
+
+  void "the reaper evicts expired terminal tasks but never live ones"() {
+    setup:
+    long evicted = TaskRepository.countEvictedTasks()
+    def live = submitLive()
+    def done = [submitTerminal(), submitTerminal()]
+    sleep(5)
+
+    when:
+    TaskRepository.reap(0, 100)
+
+    then:
+    TaskRepository.peekTask(live.uuid) == live
+    done.every { TaskRepository.peekTask(it.uuid) == null }
+    TaskRepository.countEvictedTasks() == evicted + 2
+  }
+
+  void "the reaper evicts the oldest terminal tasks when over capacity"() {
+    setup:
+    def live = submitLive()
+    def oldest = submitTerminal()
+    sleep(5)
+    def older = submitTerminal()
+    sleep(5)
+    def newest = submitTerminal()
+
+    when:
+    TaskRepository.reap(Long.MAX_VALUE, 2)
+
+    then:
+    TaskRepository.peekTask(oldest.uuid) == null
+    TaskRepository.peekTask(older.uuid) == null
+    TaskRepository.peekTask(newest.uuid) == newest
+    TaskRepository.peekTask(live.uuid) == live
+  }
+
+  void "live tasks are retained even when over capacity"() {
+    setup:
+    def live = [submitLive(), submitLive()]
+
+    when:
+    TaskRepository.reap(0, 0)
+
+    then:
+    live.every { TaskRepository.peekTask(it.uuid) == it }
+  }
+
+  void "gauges report the tasks in each state and the heap their events retain"() {
+    setup:
+    def registry = new DefaultRegistry()
+    def config = new TaskRepositoryConfig(
+        properties: new TaskRepositoryProperties(journalEnabled: false),
+        registry: registry)
+    config.init()
+
+    when:
+    submitLive()
+    submitTerminal()
+    double before = gauge(registry, "tasks.retainedBytes")
+    def chatty = TaskRepository.submitTask({
+      DaemonTaskHandler.newStage("Talking")
+      10.times { DaemonTaskHandler.message("message " + it) }
+      return new DaemonResponse<>(null, new ProblemSet())
+    }, "chatty")
+    awaitTerminal(chatty)
+
+    then:
+    gauge(registry, "tasks.live") == 1
+    gauge(registry, "tasks.terminal") == 2
+    gauge(registry, "tasks.retainedBytes") > before
+  }
+
+  private DaemonTask submitLive() {
+    def task = TaskRepository.submitTask({
+      finish.await()
+      return new DaemonResponse<>(null, new ProblemSet())
+    }, "live")
+
+    while (task.state != State.RUNNING) {
+      sleep(1)
+    }
+
+    return task
+  }
+
+  private static DaemonTask submitTerminal() {
+    def task = TaskRepository.submitTask({ new DaemonResponse<>(null, new ProblemSet()) }, "terminal")
+    awaitTerminal(task)
+    return task
+  }
+
+  private static void awaitTerminal(DaemonTask task) {
+    synchronized (task) {
+      while (!task.state.terminal) {
+        task.wait(100)
+      }
+    }
+
+    // The task is marked terminal just before the repository records its completion.
+    while (TaskRepository.tasks[task.uuid]?.completedAt == null) {
+      sleep(1)
+    }
+  }
+
+  private static double gauge(DefaultRegistry registry, String name) {
+    return registry.get(registry.createId(name)).measure().first().value()
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.netflix.spinnaker.halyard.deploy.services.v1;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.spinnaker.halyard.config.config.v1.HalconfigDirectoryStructure;
 import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser;
 import com.netflix.spinnaker.halyard.config.model.v1.node.Account;
@@ -24,9 +25,12 @@ import com.netflix.spinnaker.halyard.config.model.v1.node.DeploymentEnvironment;
 import com.netflix.spinnaker.halyard.config.model.v1.node.NodeDiff;
 import com.netflix.spinnaker.halyard.config.services.v1.AccountService;
 import com.netflix.spinnaker.halyard.config.services.v1.DeploymentService;
+import com.netflix.spinnaker.halyard.core.AtomicFileWriter;
 import com.netflix.spinnaker.halyard.core.RemoteAction;
 import com.netflix.spinnaker.halyard.core.error.v1.HalException;
 import com.netflix.spinnaker.halyard.core.registry.v1.BillOfMaterials;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskTrace;
 import com.netflix.spinnaker.halyard.deploy.config.v1.ConfigParser;
 import com.netflix.spinnaker.halyard.deploy.deployment.v1.*;
 import com.netflix.spinnaker.halyard.deploy.services.v1.GenerateService.ResolvedConfiguration;
@@ -37,8 +41,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -80,6 +88,12 @@ public class DeployService {
   @Autowired
   ConfigParser configParser;
 
+  @Autowired
+  ObjectMapper objectMapper;
+
+  // How many task traces are kept per deployment.
+  private static final int MAX_TRACES = 20;
+
   public NodeDiff configDiff(String deploymentName) {
     try {
       DeploymentConfiguration deploymentConfiguration = deploymentService.getDeploymentConfiguration(deploymentName);
@@ -143,6 +157,43 @@ public class DeployService {
     return action;
   }
 
+  /**
+   * Record how long each stage of a finished task spent, so slow deploys can be diagnosed after the fact. Every task
+   * gets its own file, named after its uuid, and only the most recent MAX_TRACES are kept. This runs once the task is
+   * over, so failures are logged rather than reported to the user.
+   */
+  public void persistTrace(String deploymentName, DaemonTask task) {
+    Path path = halconfigDirectoryStructure.getTracePath(deploymentName, task.getUuid());
+    AtomicFileWriter writer = null;
+    try {
+      writer = new AtomicFileWriter(path);
+      writer.write(objectMapper.writeValueAsString(DaemonTaskTrace.export(task)));
+      writer.commit();
+    } catch (IOException e) {
+      log.warn("Failed to write trace of task " + task + " to " + path + ": ", e);
+    } finally {
+      if (writer != null) {
+        writer.close();
+      }
+    }
+
+    pruneTraces(deploymentName);
+  }
+
+  private void pruneTraces(String deploymentName) {
+    File[] traces = halconfigDirectoryStructure.getTraceDirectory(deploymentName).toFile().listFiles((dir, name) -> name.endsWith(".json"));
+    if (traces == null || traces.length <= MAX_TRACES) {
+      return;
+    }
+
+    Arrays.sort(traces, Comparator.comparingLong(File::lastModified).reversed());
+    for (int i = MAX_TRACES; i < traces.length; i++) {
+      if (!traces[i].delete()) {
+        log.warn("Failed to delete old trace " + traces[i]);
+      }
+    }
+  }
+
   private Deployer getDeployer(DeploymentConfiguration deploymentConfiguration) {
     DeploymentEnvironment.DeploymentType type = deploymentConfiguration.getDeploymentEnvironment().getType();
     switch (type) {
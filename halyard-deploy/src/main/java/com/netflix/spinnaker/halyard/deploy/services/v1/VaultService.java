@@ -17,28 +17,65 @@
 
 package com.netflix.spinnaker.halyard.deploy.services.v1;
 
-import com.amazonaws.util.IOUtils;
+import com.google.gson.annotations.SerializedName;
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigDirectoryStructure;
 import com.netflix.spinnaker.halyard.config.model.v1.node.DeploymentConfiguration;
 import com.netflix.spinnaker.halyard.core.error.v1.HalException;
-import com.netflix.spinnaker.halyard.core.job.v1.JobExecutor;
-import com.netflix.spinnaker.halyard.core.job.v1.JobRequest;
-import com.netflix.spinnaker.halyard.core.job.v1.JobStatus;
 import com.netflix.spinnaker.halyard.core.problem.v1.Problem;
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemBuilder;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskInterrupted;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import retrofit.RestAdapter;
+import retrofit.RetrofitError;
+import retrofit.client.OkClient;
+import retrofit.client.Response;
+import retrofit.http.Body;
+import retrofit.http.GET;
+import retrofit.http.Header;
+import retrofit.http.PUT;
+import retrofit.http.Path;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Writes secrets to vault's KV API over a pooled, keep-alive HTTP client. A batch of secrets is written in parallel,
+ * and a secret whose contents vault already holds under an earlier name is not written again; instead, that name is
+ * handed back so the caller can point at it.
+ *
+ * Secrets are only reused among those published for the same owner (e.g. one version of a server group), since an
+ * owner's secrets may be deleted along with it, and nothing published for another owner may point at them.
+ */
+@Slf4j
 @Component
 public class VaultService {
   @Autowired
-  JobExecutor jobExecutor;
+  OkClient okClient;
+
+  @Autowired
+  RestAdapter.LogLevel retrofitLogLevel;
+
+  @Autowired
+  HalconfigDirectoryStructure halconfigDirectoryStructure;
 
   @Autowired
   String vaultSecretPrefix;
@@ -46,39 +83,206 @@ public class VaultService {
   @Autowired
   Integer vaultTimeoutSeconds;
 
-  public void publishSecret(DeploymentConfiguration deploymentConfiguration, String name, Path path) {
+  @Value("${spinnaker.vault.parallelism:8}")
+  int parallelism = 8;
+
+  private final Map<String, VaultKv> clients = new ConcurrentHashMap<>();
+
+  // Vault address + owner + content hash -> the name of a secret already holding those contents.
+  private final Map<String, String> publishedSecrets = new ConcurrentHashMap<>();
+
+  private ExecutorService executor;
+
+  interface VaultKv {
+    @GET("/v1/{path}")
+    SecretResponse read(@Header("X-Vault-Token") String token, @Path(value = "path", encode = false) String path);
+
+    @PUT("/v1/{path}")
+    Response write(@Header("X-Vault-Token") String token, @Path(value = "path", encode = false) String path, @Body Map<String, String> data);
+  }
+
+  @Data
+  static class SecretResponse {
+    @SerializedName("data")
+    Map<String, String> data = new HashMap<>();
+  }
+
+  @Data
+  public static class Secret {
+    String name;
+    // Exactly one of these is set.
+    java.nio.file.Path path;
     String contents;
+  }
+
+  public String publishSecret(DeploymentConfiguration deploymentConfiguration, String owner, String name, java.nio.file.Path path) {
+    return publishSecrets(deploymentConfiguration, owner, new Secret().setName(name).setPath(path)).get(name);
+  }
+
+  public String publishSecret(DeploymentConfiguration deploymentConfiguration, String owner, String name, String contents) {
+    return publishSecrets(deploymentConfiguration, owner, new Secret().setName(name).setContents(contents)).get(name);
+  }
+
+  public Map<String, String> publishSecrets(DeploymentConfiguration deploymentConfiguration, String owner, Secret... secrets) {
+    List<Secret> list = new ArrayList<>();
+    for (Secret secret : secrets) {
+      list.add(secret);
+    }
+
+    return publishSecrets(deploymentConfiguration, owner, list);
+  }
+
+  /**
+   * @param owner identifies whatever the secrets are published for, and are deleted along with.
+   * @return the name each requested secret was published under. This is the requested name, unless vault already
+   * held identical contents under another name published for the same owner.
+   */
+  public Map<String, String> publishSecrets(DeploymentConfiguration deploymentConfiguration, String owner, List<Secret> secrets) {
+    String address = deploymentConfiguration.getDeploymentEnvironment().getVault().getAddress();
+    String token = vaultToken(deploymentConfiguration.getName());
+    VaultKv vault = clients.computeIfAbsent(address, a -> new RestAdapter.Builder()
+        .setClient(okClient)
+        .setLogLevel(retrofitLogLevel)
+        .setEndpoint(a)
+        .build()
+        .create(VaultKv.class));
+
+    Map<String, Future<String>> pending = new HashMap<>();
+    for (Secret secret : secrets) {
+      pending.put(secret.getName(), getExecutor().submit(() -> publish(vault, address + "/" + owner, token, secret)));
+    }
+
+    // Every request gets the configured timeout, but only parallelism-many of them are in flight at once.
+    long batches = (secrets.size() + parallelism - 1) / parallelism;
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(vaultTimeoutSeconds) * Math.max(batches, 1);
+
+    Map<String, String> result = new HashMap<>();
     try {
-      contents = IOUtils.toString(new FileInputStream(path.toFile()));
-    } catch (IOException e) {
-      throw new HalException(Problem.Severity.FATAL, "Failed to read config file " + path.toString() + ": " + e.getMessage());
+      for (Map.Entry<String, Future<String>> entry : pending.entrySet()) {
+        long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+        result.put(entry.getKey(), entry.getValue().get(remaining, TimeUnit.MILLISECONDS));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DaemonTaskInterrupted("Interrupted while publishing secrets", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof HalException) {
+        throw (HalException) e.getCause();
+      }
+
+      throw new HalException(Problem.Severity.FATAL, "Failed to publish secrets: " + e.getCause().getMessage(), e);
+    } catch (TimeoutException e) {
+      throw new HalException(Problem.Severity.FATAL, "Timed out publishing secrets to vault at " + address);
+    } finally {
+      pending.values().forEach(f -> f.cancel(true));
+    }
+
+    return result;
+  }
+
+  private String publish(VaultKv vault, String scope, String token, Secret secret) {
+    String contents = secret.getContents();
+    if (contents == null) {
+      try {
+        contents = new String(Files.readAllBytes(secret.getPath()));
+      } catch (IOException e) {
+        throw new HalException(Problem.Severity.FATAL, "Failed to read config file " + secret.getPath() + ": " + e.getMessage());
+      }
+    }
+
+    String hash = sha256(contents);
+    String cacheKey = scope + "/" + hash;
+    String existing = publishedSecrets.get(cacheKey);
+    if (existing != null && hash.equals(readHash(vault, token, existing))) {
+      log.info("Secret " + secret.getName() + " is unchanged, reusing " + existing);
+      return existing;
+    }
+
+    Map<String, String> data = new HashMap<>();
+    data.put("contents", Base64.getEncoder().encodeToString(contents.getBytes()));
+    data.put("sha256", hash);
+
+    try {
+      vault.write(token, vaultSecretPrefix + secret.getName(), data);
+    } catch (RetrofitError e) {
+      throw new HalException(Problem.Severity.FATAL, "Failed to publish secret " + secret.getName() + ": " + describe(e), e);
+    }
+
+    publishedSecrets.put(cacheKey, secret.getName());
+    return secret.getName();
+  }
+
+  private String readHash(VaultKv vault, String token, String name) {
+    try {
+      return vault.read(token, vaultSecretPrefix + name).getData().get("sha256");
+    } catch (RetrofitError e) {
+      // Most likely deleted since, in which case it's simply written again.
+      log.info("Unable to read back secret " + name + ": " + describe(e));
+      return null;
+    }
+  }
+
+  /**
+   * Uses the same token the vault CLI would, falling back to the one halyard stored when it initialized this
+   * deployment's vault.
+   */
+  String vaultToken(String deploymentName) {
+    String token = System.getenv("VAULT_TOKEN");
+    if (token != null && !token.isEmpty()) {
+      return token;
+    }
+
+    List<File> candidates = new ArrayList<>();
+    candidates.add(halconfigDirectoryStructure.getVaultTokenPath(deploymentName).toFile());
+    candidates.add(new File(System.getProperty("user.home"), ".vault-token"));
+
+    for (File candidate : candidates) {
+      if (candidate.exists()) {
+        try {
+          return new String(Files.readAllBytes(candidate.toPath())).trim();
+        } catch (IOException e) {
+          log.warn("Unable to read vault token from " + candidate + ": " + e.getMessage());
+        }
+      }
     }
 
-    publishSecret(deploymentConfiguration, name, contents);
+    throw new HalException(
+        new ProblemBuilder(Problem.Severity.FATAL, "No vault token was found.")
+            .setRemediation("Set VAULT_TOKEN, or make sure the token halyard stored when it set up vault still exists.").build()
+    );
   }
 
-  public void publishSecret(DeploymentConfiguration deploymentConfiguration, String name, String contents) {
-    String vaultAddress = deploymentConfiguration.getDeploymentEnvironment().getVault().getAddress();
-    String encodedContents = Base64.getEncoder().encodeToString(contents.getBytes());
-    String secretName = vaultSecretPrefix + name;
+  private static String sha256(String contents) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(contents.getBytes());
+      StringBuilder result = new StringBuilder();
+      for (byte b : digest) {
+        result.append(String.format("%02x", b));
+      }
 
-    List<String> command = new ArrayList<>();
-    command.add("vault");
-    command.add("write");
-    command.add("--address");
-    command.add(vaultAddress);
-    command.add(secretName);
-    command.add(encodedContents);
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
-    JobRequest request = new JobRequest()
-        .setTokenizedCommand(command)
-        .setTimeoutMillis(TimeUnit.SECONDS.toMillis(vaultTimeoutSeconds));
+  private static String describe(RetrofitError e) {
+    if (e.getResponse() == null) {
+      return e.getMessage();
+    }
 
-    String id = jobExecutor.startJob(request);
-    JobStatus status = jobExecutor.backoffWait(id, 100, 1000);
+    return e.getResponse().getStatus() + " " + e.getResponse().getReason();
+  }
 
-    if (!status.getResult().equals(JobStatus.Result.SUCCESS)) {
-      throw new HalException(Problem.Severity.FATAL, "Failed to publish secret " + name + ": " + status.getStdOut() + status.getStdErr());
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(parallelism, r -> {
+        Thread thread = new Thread(r, "vault-publisher");
+        thread.setDaemon(true);
+        return thread;
+      });
     }
+
+    return executor;
   }
 }
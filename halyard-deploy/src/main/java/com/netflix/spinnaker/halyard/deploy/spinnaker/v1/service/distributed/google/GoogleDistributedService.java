@@ -38,7 +38,6 @@ import org.apache.commons.lang.RandomStringUtils;
 
 import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -100,12 +99,15 @@ public interface GoogleDistributedService<T> extends DistributedService<T, Googl
 
     SpinnakerMonitoringDaemonService monitoringService = getMonitoringDaemonService();
     String name = getServiceName();
-    List<ConfigSource> configSources = new ArrayList<>();
     ServiceSettings monitoringSettings = resolvedConfiguration.getServiceSettings(monitoringService);
     String stagingPath = getSpinnakerStagingPath();
     VaultService vaultService = getVaultService();
     DeploymentConfiguration deploymentConfiguration = details.getDeploymentConfiguration();
 
+    // Collected first and published as one batch, so they're written to vault in parallel.
+    List<VaultService.Secret> secrets = new ArrayList<>();
+    Map<String, String> mountPoints = new LinkedHashMap<>();
+
     if (thisServiceSettings.isMonitored() && monitoringSettings.isEnabled()) {
       Map<String, Profile> monitoringProfiles = resolvedConfiguration.getProfilesForService(monitoringService.getType());
 
@@ -115,11 +117,8 @@ public interface GoogleDistributedService<T> extends DistributedService<T, Googl
       }
 
       String secretName = secretName(profile.getName(), version);
-      String mountPoint = Paths.get(profile.getOutputFile()).toString();
-      Path stagedFile = Paths.get(profile.getStagedFile(stagingPath));
-      vaultService.publishSecret(deploymentConfiguration, secretName, stagedFile);
-
-      configSources.add(new ConfigSource().setId(secretName).setMountPath(mountPoint));
+      secrets.add(new VaultService.Secret().setName(secretName).setPath(Paths.get(profile.getStagedFile(stagingPath))));
+      mountPoints.put(secretName, Paths.get(profile.getOutputFile()).toString());
 
       profile = monitoringProfiles.get("monitoring.yml");
       if (profile == null) {
@@ -127,11 +126,8 @@ public interface GoogleDistributedService<T> extends DistributedService<T, Googl
       }
 
       secretName = secretName(profile.getName(), version);
-      mountPoint = Paths.get(profile.getOutputFile()).toString();
-      stagedFile = Paths.get(profile.getStagedFile(stagingPath));
-      vaultService.publishSecret(deploymentConfiguration, secretName, stagedFile);
-
-      configSources.add(new ConfigSource().setId(secretName).setMountPath(mountPoint));
+      secrets.add(new VaultService.Secret().setName(secretName).setPath(Paths.get(profile.getStagedFile(stagingPath))));
+      mountPoints.put(secretName, Paths.get(profile.getOutputFile()).toString());
     }
 
     Map<String, Profile> serviceProfiles = resolvedConfiguration.getProfilesForService(thisService.getType());
@@ -141,20 +137,24 @@ public interface GoogleDistributedService<T> extends DistributedService<T, Googl
       Profile profile = entry.getValue();
       requiredFiles.addAll(profile.getRequiredFiles());
 
-      String mountPoint = profile.getOutputFile();
       String secretName = secretName("profile-" + profile.getName(), version);
-      Path stagedFile = Paths.get(profile.getStagedFile(stagingPath));
-      vaultService.publishSecret(deploymentConfiguration, secretName, stagedFile);
-
-      configSources.add(new ConfigSource().setId(secretName).setMountPath(mountPoint));
+      secrets.add(new VaultService.Secret().setName(secretName).setPath(Paths.get(profile.getStagedFile(stagingPath))));
+      mountPoints.put(secretName, profile.getOutputFile());
     }
 
     for (String file : requiredFiles) {
-      String mountPoint = Paths.get(file).toString();
       String secretName = secretName("dependencies-" + file, version);
-      vaultService.publishSecret(deploymentConfiguration, secretName, Paths.get(file));
+      secrets.add(new VaultService.Secret().setName(secretName).setPath(Paths.get(file)));
+      mountPoints.put(secretName, Paths.get(file).toString());
+    }
+
+    // Only secrets written for this server group are reused, since older ones are deleted along with their server group.
+    String owner = String.join("-", "hal", getService().getType().getCanonicalName(), version + "");
+    Map<String, String> published = vaultService.publishSecrets(deploymentConfiguration, owner, secrets);
 
-      configSources.add(new ConfigSource().setId(secretName).setMountPath(mountPoint));
+    List<ConfigSource> configSources = new ArrayList<>();
+    for (Map.Entry<String, String> entry : mountPoints.entrySet()) {
+      configSources.add(new ConfigSource().setId(published.get(entry.getKey())).setMountPath(entry.getValue()));
     }
 
     return configSources;
@@ -263,10 +263,7 @@ public interface GoogleDistributedService<T> extends DistributedService<T, Googl
           .stream()
           .filter(RunningServiceDetails.Instance::isRunning)
           .count();
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException ignored) {
-      }
+      DaemonTaskHandler.safeSleep(1000);
     }
   }
 
@@ -25,8 +25,10 @@ import com.google.api.services.compute.model.Operation;
 import com.netflix.spinnaker.clouddriver.google.security.GoogleNamedAccountCredentials;
 import com.netflix.spinnaker.halyard.config.model.v1.providers.google.GoogleAccount;
 import com.netflix.spinnaker.halyard.config.problem.v1.ConfigProblemSetBuilder;
+import com.netflix.spinnaker.halyard.config.validate.v1.providers.google.GoogleNamedAccountCredentialsFactory;
 import com.netflix.spinnaker.halyard.core.error.v1.HalException;
 import com.netflix.spinnaker.halyard.core.job.v1.JobExecutor;
+import com.netflix.spinnaker.halyard.core.job.v1.JobOutputBuffer;
 import com.netflix.spinnaker.halyard.core.job.v1.JobRequest;
 import com.netflix.spinnaker.halyard.core.job.v1.JobStatus;
 import com.netflix.spinnaker.halyard.core.problem.v1.Problem;
@@ -82,16 +84,17 @@ class GoogleProviderUtils {
       command.add("-N");
       command.add("-L");
       command.add(String.format("%d:localhost:%d", service.getPort(), service.getPort()));
-      JobRequest request = new JobRequest().setTokenizedCommand(command);
+      JobRequest request = new JobRequest()
+          .setTokenizedCommand(command)
+          .setMaxOutputBytes(JobOutputBuffer.LONG_RUNNING_MAX_BYTES)
+          .setSpillOutput(true)
+          .setLongRunning(true);
 
       DaemonTaskHandler.message("Opening port " + service.getPort() + " against instance " + instanceName);
       proxy.setJobId(jobExecutor.startJob(request));
 
       // Wait for the proxy to spin up.
-      try {
-        Thread.sleep(TimeUnit.SECONDS.toMillis(5));
-      } catch (InterruptedException ignored) {
-      }
+      DaemonTaskHandler.safeSleep(TimeUnit.SECONDS.toMillis(5));
 
       JobStatus status = jobExecutor.updateJob(proxy.jobId);
 
@@ -146,10 +149,7 @@ class GoogleProviderUtils {
             .map(e -> e.getCode() + ": " + e.getMessage()).collect(Collectors.toList())));
       }
       operation = operationSupplier.get();
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException ignored) {
-      }
+      DaemonTaskHandler.safeSleep(1000);
     }
   }
 
@@ -233,7 +233,7 @@ class GoogleProviderUtils {
 
   static Compute getCompute(AccountDeploymentDetails<GoogleAccount> details) {
     ConfigProblemSetBuilder problemSetBuilder = new ConfigProblemSetBuilder(null);
-    GoogleNamedAccountCredentials credentials = details.getAccount().getNamedAccountCredentials("", problemSetBuilder);
+    GoogleNamedAccountCredentials credentials = GoogleNamedAccountCredentialsFactory.build(details.getAccount(), "", problemSetBuilder);
 
     if (credentials == null) {
       throw new HalException(problemSetBuilder.build().getProblems());
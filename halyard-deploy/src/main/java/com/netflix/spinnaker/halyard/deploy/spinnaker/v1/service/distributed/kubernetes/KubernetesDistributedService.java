@@ -553,10 +553,7 @@ public interface KubernetesDistributedService<T> extends DistributedService<T, K
 
         RunningServiceDetails runningServiceDetails = getRunningServiceDetails(details, settings);
         while (runningServiceDetails.getHealthy() > 0) {
-          try {
-            Thread.sleep(TimeUnit.SECONDS.toMillis(5));
-          } catch (InterruptedException ignored) {
-          }
+          DaemonTaskHandler.safeSleep(TimeUnit.SECONDS.toMillis(5));
           runningServiceDetails = getRunningServiceDetails(details, settings);
         }
       } else {
@@ -570,10 +567,7 @@ public interface KubernetesDistributedService<T> extends DistributedService<T, K
 
     RunningServiceDetails runningServiceDetails = getRunningServiceDetails(details, settings);
     while (runningServiceDetails.getHealthy() == 0) {
-      try {
-        Thread.sleep(TimeUnit.SECONDS.toMillis(5));
-      } catch (InterruptedException ignored) {
-      }
+      DaemonTaskHandler.safeSleep(TimeUnit.SECONDS.toMillis(5));
       runningServiceDetails = getRunningServiceDetails(details, settings);
     }
   }
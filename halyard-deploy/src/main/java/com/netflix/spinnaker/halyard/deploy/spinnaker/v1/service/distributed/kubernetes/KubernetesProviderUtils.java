@@ -22,6 +22,7 @@ import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesConfigPar
 import com.netflix.spinnaker.halyard.config.model.v1.providers.kubernetes.KubernetesAccount;
 import com.netflix.spinnaker.halyard.core.error.v1.HalException;
 import com.netflix.spinnaker.halyard.core.job.v1.JobExecutor;
+import com.netflix.spinnaker.halyard.core.job.v1.JobOutputBuffer;
 import com.netflix.spinnaker.halyard.core.job.v1.JobRequest;
 import com.netflix.spinnaker.halyard.core.job.v1.JobStatus;
 import com.netflix.spinnaker.halyard.core.problem.v1.Problem.Severity;
@@ -51,6 +52,11 @@ class KubernetesProviderUtils {
   // Map from deployment name -> the port & job managing the connection.
   private static ConcurrentHashMap<String, Proxy> proxyMap = new ConcurrentHashMap<>();
 
+  // kubectl prints the port it's serving on once the proxy is up, see openProxy.
+  private static final Pattern PROXY_PORT_PATTERN = Pattern.compile(":(\\d+)\\s");
+  private static final long PROXY_POLL_MILLIS = 250;
+  private static final long PROXY_STARTUP_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
   @Data
   static class Proxy {
     String jobId;
@@ -78,29 +84,42 @@ class KubernetesProviderUtils {
       List<String> command = kubectlAccountCommand(details);
       command.add("proxy");
       command.add("--port=0"); // select a random port
-      JobRequest request = new JobRequest().setTokenizedCommand(command);
+      JobRequest request = new JobRequest()
+          .setTokenizedCommand(command)
+          .setMaxOutputBytes(JobOutputBuffer.LONG_RUNNING_MAX_BYTES)
+          .setSpillOutput(true)
+          .setLongRunning(true);
 
       proxy.jobId = jobExecutor.startJob(request);
 
-      // Wait for the proxy to spin up.
-      try {
-        Thread.sleep(TimeUnit.SECONDS.toMillis(5));
-      } catch (InterruptedException ignored) {
-      }
-
-      JobStatus status = jobExecutor.updateJob(proxy.jobId);
+      // Wait for the proxy to spin up, polling only for the output written since the last poll.
+      StringBuilder stdOut = new StringBuilder();
+      StringBuilder stdErr = new StringBuilder();
+      long deadline = System.currentTimeMillis() + PROXY_STARTUP_MILLIS;
+      JobStatus status = new JobStatus();
+      Matcher matcher;
+      boolean connected;
+      do {
+        DaemonTaskHandler.safeSleep(PROXY_POLL_MILLIS);
+        status = jobExecutor.updateJob(proxy.jobId, status.getStdOutOffset(), status.getStdErrOffset());
+        if (status == null) {
+          throw new HalException(Severity.FATAL, "Lost track of the proxy against account " + account.getName());
+        }
+
+        stdOut.append(status.getStdOut());
+        stdErr.append(status.getStdErr());
+        matcher = PROXY_PORT_PATTERN.matcher(stdOut);
+        connected = matcher.find();
+      } while (!connected && status.getState() != JobStatus.State.COMPLETED && System.currentTimeMillis() < deadline);
 
       // This should be a long-running job.
       if (status.getState() == JobStatus.State.COMPLETED) {
         throw new HalException(Severity.FATAL,
             "Unable to establish a proxy against account " + account.getName()
-                + ":\n" + status.getStdOut() + "\n" + status.getStdErr());
+                + ":\n" + stdOut + "\n" + stdErr);
       }
 
-      String connectionMessage = status.getStdOut();
-      Pattern portPattern = Pattern.compile(":(\\d+)");
-      Matcher matcher = portPattern.matcher(connectionMessage);
-      if (matcher.find()) {
+      if (connected) {
         proxy.setPort(Integer.valueOf(matcher.group(1)));
         proxyMap.put(details.getDeploymentName(), proxy);
         DaemonTaskHandler.message("Connected to kubernetes cluster for account "
@@ -109,7 +128,7 @@ class KubernetesProviderUtils {
       } else {
         throw new HalException(Severity.FATAL,
             "Could not parse connection information from:\n"
-                + connectionMessage + "(" + status.getStdErr() + ")");
+                + stdOut + "(" + stdErr + ")");
       }
     }
 
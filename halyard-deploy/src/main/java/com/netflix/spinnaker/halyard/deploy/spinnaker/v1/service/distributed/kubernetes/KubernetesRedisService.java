@@ -20,9 +20,11 @@ package com.netflix.spinnaker.halyard.deploy.spinnaker.v1.service.distributed.ku
 import com.netflix.spinnaker.halyard.config.model.v1.node.DeploymentConfiguration;
 import com.netflix.spinnaker.halyard.config.model.v1.providers.kubernetes.KubernetesAccount;
 import com.netflix.spinnaker.halyard.core.error.v1.HalException;
+import com.netflix.spinnaker.halyard.core.job.v1.JobOutputBuffer;
 import com.netflix.spinnaker.halyard.core.job.v1.JobRequest;
 import com.netflix.spinnaker.halyard.core.job.v1.JobStatus;
 import com.netflix.spinnaker.halyard.core.problem.v1.Problem;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskHandler;
 import com.netflix.spinnaker.halyard.deploy.deployment.v1.AccountDeploymentDetails;
 import com.netflix.spinnaker.halyard.deploy.services.v1.ArtifactService;
 import com.netflix.spinnaker.halyard.deploy.spinnaker.v1.SpinnakerRuntimeSettings;
@@ -60,13 +62,14 @@ public class KubernetesRedisService extends RedisService implements KubernetesDi
   public Jedis connect(AccountDeploymentDetails<KubernetesAccount> details, SpinnakerRuntimeSettings runtimeSettings) {
     ServiceSettings settings = runtimeSettings.getServiceSettings(this);
     List<String> command = Arrays.stream(connectCommand(details, runtimeSettings).split(" ")).collect(Collectors.toList());
-    JobRequest request = new JobRequest().setTokenizedCommand(command);
+    JobRequest request = new JobRequest()
+        .setTokenizedCommand(command)
+        .setMaxOutputBytes(JobOutputBuffer.LONG_RUNNING_MAX_BYTES)
+        .setSpillOutput(true)
+        .setLongRunning(true);
     String jobId = getJobExecutor().startJob(request);
     // Wait for the proxy to spin up.
-    try {
-      Thread.sleep(TimeUnit.SECONDS.toMillis(5));
-    } catch (InterruptedException ignored) {
-    }
+    DaemonTaskHandler.safeSleep(TimeUnit.SECONDS.toMillis(5));
 
     JobStatus status = getJobExecutor().updateJob(jobId);
 
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.halyard.deploy.services.v1
+
+import com.google.gson.Gson
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigDirectoryStructure
+import com.netflix.spinnaker.halyard.config.model.v1.node.DeploymentConfiguration
+import com.netflix.spinnaker.halyard.config.model.v1.node.DeploymentEnvironment
+import com.netflix.spinnaker.halyard.core.error.v1.HalException
+import com.squareup.okhttp.OkHttpClient
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import retrofit.RestAdapter
+import retrofit.client.OkClient
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+class VaultServiceSpec extends Specification {
+  HttpServer server
+  Map<String, String> stored = new ConcurrentHashMap<>()
+  AtomicInteger writes = new AtomicInteger()
+  String token = "s3cr3t"
+  VaultService vaultService
+  DeploymentConfiguration deploymentConfiguration
+
+  // A stand-in for vault's KV API that keeps secrets in memory.
+  void setup() {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+    server.createContext("/v1/", { HttpExchange exchange ->
+      String path = exchange.requestURI.path - "/v1/"
+      int status
+      String body = ""
+      if (exchange.requestHeaders.getFirst("X-Vault-Token") != token) {
+        status = 403
+      } else if (exchange.requestMethod == "PUT") {
+        writes.incrementAndGet()
+        stored[path] = exchange.requestBody.text
+        status = 204
+      } else if (stored.containsKey(path)) {
+        body = "{\"data\": ${stored[path]}}"
+        status = 200
+      } else {
+        status = 404
+      }
+
+      byte[] bytes = body.bytes
+      exchange.sendResponseHeaders(status, bytes.length ?: -1)
+      if (bytes.length) {
+        exchange.responseBody.write(bytes)
+      }
+      exchange.close()
+    })
+    server.start()
+
+    def halDirectory = Files.createTempDirectory("hal")
+    def deploymentName = "default"
+    def directoryStructure = new HalconfigDirectoryStructure(halconfigDirectory: halDirectory.toString())
+    directoryStructure.getVaultTokenPath(deploymentName).toFile().text = token
+
+    vaultService = new VaultService() {
+      @Override
+      String vaultToken(String name) {
+        // Skip VAULT_TOKEN & ~/.vault-token, which may be set wherever the tests run.
+        return directoryStructure.getVaultTokenPath(name).toFile().text
+      }
+    }
+    vaultService.okClient = new OkClient(new OkHttpClient())
+    vaultService.retrofitLogLevel = RestAdapter.LogLevel.NONE
+    vaultService.halconfigDirectoryStructure = directoryStructure
+    vaultService.vaultSecretPrefix = "secret/spinnaker/"
+    vaultService.vaultTimeoutSeconds = 10
+    vaultService.parallelism = 4
+
+    deploymentConfiguration = new DeploymentConfiguration()
+    deploymentConfiguration.name = deploymentName
+    deploymentConfiguration.deploymentEnvironment = new DeploymentEnvironment()
+    deploymentConfiguration.deploymentEnvironment.vault = new DeploymentEnvironment.Vault(address: "http://127.0.0.1:${server.address.port}")
+  }
+
+  void cleanup() {
+    server.stop(0)
+  }
+
+  void "publishes a batch of secrets"() {
+    setup:
+    def secrets = (1..10).collect { new VaultService.Secret(name: "secret-$it", contents: "contents-$it") }
+
+    when:
+    def published = vaultService.publishSecrets(deploymentConfiguration, "v000", secrets)
+
+    then:
+    published == secrets.collectEntries { [(it.name): it.name] }
+    writes.get() == 10
+    def data = new Gson().fromJson(stored["secret/spinnaker/secret-3"], Map)
+    new String(Base64.decoder.decode(data.contents as String)) == "contents-3"
+  }
+
+  void "reuses a secret whose contents are unchanged"() {
+    setup:
+    vaultService.publishSecret(deploymentConfiguration, "v000", "first", "same")
+
+    when:
+    def name = vaultService.publishSecret(deploymentConfiguration, "v000", "second", "same")
+
+    then:
+    name == "first"
+    writes.get() == 1
+  }
+
+  void "never reuses a secret published for another owner"() {
+    setup:
+    vaultService.publishSecret(deploymentConfiguration, "v000", "first", "same")
+
+    when:
+    def name = vaultService.publishSecret(deploymentConfiguration, "v001", "second", "same")
+
+    then:
+    name == "second"
+    writes.get() == 2
+  }
+
+  void "publishes a secret read from a file"() {
+    setup:
+    def file = Files.createTempFile("secret", ".yml")
+    file.toFile().text = "from: file"
+
+    when:
+    def name = vaultService.publishSecret(deploymentConfiguration, "v000", "file", file)
+
+    then:
+    name == "file"
+    def data = new Gson().fromJson(stored["secret/spinnaker/file"], Map)
+    new String(Base64.decoder.decode(data.contents as String)) == "from: file"
+
+    cleanup:
+    Files.deleteIfExists(file)
+  }
+
+  void "rewrites a secret that has since disappeared"() {
+    setup:
+    vaultService.publishSecret(deploymentConfiguration, "v000", "first", "same")
+    stored.clear()
+
+    when:
+    def name = vaultService.publishSecret(deploymentConfiguration, "v000", "second", "same")
+
+    then:
+    name == "second"
+    writes.get() == 2
+  }
+
+  void "reports a rejected write"() {
+    setup:
+    token = "wrong"
+
+    when:
+    vaultService.publishSecret(deploymentConfiguration, "v000", "first", "contents")
+
+    then:
+    HalException e = thrown()
+    e.problems.problems[0].message.contains("403")
+  }
+}
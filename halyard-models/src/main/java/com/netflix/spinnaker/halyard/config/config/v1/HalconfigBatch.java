@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.config.config.v1;
+
+import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig;
+import lombok.Data;
+
+/**
+ * A halconfig being edited by a series of requests that are only written out together, once the batch is committed.
+ */
+@Data
+public class HalconfigBatch {
+  // Requests made as part of a batch carry its id in this header.
+  public static final String HEADER = "X-Halyard-Batch";
+
+  String id;
+  // Every edit made under this batch so far.
+  Halconfig staged;
+  // The version of the halconfig on disk when the batch was opened, to detect anyone else writing it in the meantime.
+  String baseVersion;
+  int edits;
+  long lastUsed;
+}
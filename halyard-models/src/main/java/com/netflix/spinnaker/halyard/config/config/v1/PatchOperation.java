@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.config.config.v1;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+/**
+ * One operation of a JSON Patch (RFC 6902), applied to a deployment configuration as it's serialized in the halconfig.
+ * Paths are JSON pointers relative to the deployment, e.g. "/providers/kubernetes/accounts/-".
+ */
+@Data
+public class PatchOperation {
+  public enum Op {
+    add,
+    remove,
+    replace,
+    move,
+    copy,
+    test
+  }
+
+  Op op;
+  String path;
+  // Only for move & copy.
+  String from;
+  // Only for add, replace & test.
+  JsonNode value;
+}
@@ -18,7 +18,7 @@ package com.netflix.spinnaker.halyard.config.model.v1.node;
 
 import com.netflix.spinnaker.halyard.config.model.v1.security.Security;
 import com.netflix.spinnaker.halyard.config.problem.v1.ConfigProblemSetBuilder;
-import com.netflix.spinnaker.halyard.config.services.v1.VersionsService;
+import com.netflix.spinnaker.halyard.config.services.v1.VersionsProvider;
 import com.netflix.spinnaker.halyard.core.registry.v1.Versions.Version;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -99,7 +99,7 @@ public class DeploymentConfiguration extends Node {
   }
 
   protected List<String> versionOptions(ConfigProblemSetBuilder psBuilder) {
-    VersionsService service = psBuilder.getContext().getBean(VersionsService.class);
+    VersionsProvider service = psBuilder.getContext().getBean(VersionsProvider.class);
     return service.getVersions().getVersions().stream().map(Version::getVersion).collect(Collectors.toList());
   }
 }
@@ -22,16 +22,16 @@ import com.netflix.spinnaker.halyard.config.model.v1.node.LocalFile;
 import com.netflix.spinnaker.halyard.config.model.v1.node.Validator;
 import com.netflix.spinnaker.halyard.config.problem.v1.ConfigProblemSetBuilder;
 import com.netflix.spinnaker.halyard.config.model.v1.providers.dockerRegistry.DockerRegistryProvider;
-import io.fabric8.kubernetes.api.model.Config;
-import io.fabric8.kubernetes.api.model.NamedContext;
-import io.fabric8.kubernetes.client.internal.KubeConfigUtils;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.yaml.snakeyaml.Yaml;
 
-import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.netflix.spinnaker.halyard.core.problem.v1.Problem.Severity.ERROR;
@@ -60,19 +60,29 @@ public class KubernetesAccount extends Account implements Cloneable {
   }
 
   protected List<String> contextOptions(ConfigProblemSetBuilder psBuilder) {
-    Config kubeconfig;
-    try {
-      File kubeconfigFileOpen = new File(getKubeconfigFile());
-      kubeconfig = KubeConfigUtils.parseConfig(kubeconfigFileOpen);
+    // Read as plain yaml rather than through the kubernetes client, which the model can't depend on.
+    Object kubeconfig;
+    try (InputStream is = new FileInputStream(getKubeconfigFile())) {
+      kubeconfig = new Yaml().load(is);
     } catch (IOException e) {
       psBuilder.addProblem(ERROR, e.getMessage());
       return null;
     }
 
-    return kubeconfig.getContexts()
-        .stream()
-        .map(NamedContext::getName)
-        .collect(Collectors.toList());
+    List<String> result = new ArrayList<>();
+    Object contexts = kubeconfig instanceof Map ? ((Map<?, ?>) kubeconfig).get("contexts") : null;
+    if (!(contexts instanceof List)) {
+      return result;
+    }
+
+    for (Object context : (List<?>) contexts) {
+      Object name = context instanceof Map ? ((Map<?, ?>) context).get("name") : null;
+      if (name instanceof String) {
+        result.add((String) name);
+      }
+    }
+
+    return result;
   }
 
   protected List<String> dockerRegistriesOptions(ConfigProblemSetBuilder psBuilder) {
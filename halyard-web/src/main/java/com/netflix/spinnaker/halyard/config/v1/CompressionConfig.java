@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.config.v1;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.embedded.ConfigurableEmbeddedServletContainer;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gzips larger responses (e.g. a whole halconfig) for clients that ask for it. Task streams are sent as
+ * text/event-stream, which is deliberately left out so events aren't held back in the compressor.
+ */
+@Configuration
+public class CompressionConfig implements EmbeddedServletContainerCustomizer {
+  @Value("${halyard.compression.enabled:true}")
+  boolean enabled;
+
+  @Value("${halyard.compression.minResponseBytes:2048}")
+  int minResponseBytes;
+
+  @Value("${halyard.compression.mimeTypes:application/json,application/x-yaml,text/plain,text/html}")
+  String mimeTypes;
+
+  @Override
+  public void customize(ConfigurableEmbeddedServletContainer container) {
+    if (!enabled || !(container instanceof TomcatEmbeddedServletContainerFactory)) {
+      return;
+    }
+
+    ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+      connector.setProperty("compression", String.valueOf(minResponseBytes));
+      connector.setProperty("compressableMimeType", mimeTypes);
+    });
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.config.v1;
+
+import com.netflix.spinnaker.halyard.controllers.v1.AdmissionInterceptor;
+import com.netflix.spinnaker.halyard.controllers.v1.BatchInterceptor;
+import com.netflix.spinnaker.halyard.controllers.v1.EtagInterceptor;
+import com.netflix.spinnaker.halyard.controllers.v1.HalconfigVersionInterceptor;
+import com.netflix.spinnaker.halyard.controllers.v1.RequestMetricsInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+@Configuration
+public class WebConfig extends WebMvcConfigurerAdapter {
+  @Autowired
+  RequestMetricsInterceptor requestMetricsInterceptor;
+
+  @Autowired
+  AdmissionInterceptor admissionInterceptor;
+
+  @Autowired
+  BatchInterceptor batchInterceptor;
+
+  @Autowired
+  HalconfigVersionInterceptor halconfigVersionInterceptor;
+
+  @Autowired
+  EtagInterceptor etagInterceptor;
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(requestMetricsInterceptor);
+    registry.addInterceptor(admissionInterceptor);
+    registry.addInterceptor(batchInterceptor);
+    registry.addInterceptor(halconfigVersionInterceptor);
+    registry.addInterceptor(etagInterceptor);
+  }
+}
@@ -48,6 +48,9 @@ public class AccountController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, List<Account>> accounts(@PathVariable String deploymentName, @PathVariable String providerName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -60,7 +63,7 @@ public class AccountController {
       builder.setValidateResponse(() -> accountService.validateAllAccounts(deploymentName, providerName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get all " + providerName + " accounts");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get all " + providerName + " accounts");
   }
 
   @RequestMapping(value = "/account/{accountName:.+}", method = RequestMethod.GET)
@@ -78,7 +81,7 @@ public class AccountController {
       builder.setValidateResponse(() -> accountService.validateAccount(deploymentName, providerName, accountName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get " + accountName + " account");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + accountName + " account");
   }
 
   @RequestMapping(value = "/options", method = RequestMethod.POST)
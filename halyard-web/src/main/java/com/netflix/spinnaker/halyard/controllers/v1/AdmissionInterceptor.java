@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Admits requests that submit mutating tasks through the TaskAdmission, answering 429 with a Retry-After header when
+ * one can't be admitted. A request's permit passes to the task it returns (see AdmissionAdvice), and is released here
+ * if it didn't return one.
+ */
+@Component
+public class AdmissionInterceptor extends HandlerInterceptorAdapter {
+  static final String PERMIT = AdmissionInterceptor.class.getName() + ".permit";
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  @Autowired
+  TaskAdmission taskAdmission;
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+    if (!(handler instanceof HandlerMethod) || !isMutating(request, (HandlerMethod) handler)) {
+      return true;
+    }
+
+    String deploymentName = null;
+    if (((HandlerMethod) handler).getMethodAnnotation(DeploymentExclusive.class) != null) {
+      Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+      deploymentName = variables == null ? null : variables.get("deploymentName");
+    }
+
+    try {
+      request.setAttribute(PERMIT, taskAdmission.admit(deploymentName));
+      return true;
+    } catch (TaskAdmission.RejectedException e) {
+      response.setHeader("Retry-After", Integer.toString(taskAdmission.getRetryAfterSeconds()));
+      response.sendError(TOO_MANY_REQUESTS, e.getMessage());
+      return false;
+    }
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    TaskAdmission.Permit permit = (TaskAdmission.Permit) request.getAttribute(PERMIT);
+    if (permit != null && !permit.isHeldByTask()) {
+      permit.release();
+    }
+  }
+
+  private static boolean isMutating(HttpServletRequest request, HandlerMethod handler) {
+    String method = request.getMethod();
+    return !method.equals("GET") && !method.equals("HEAD") && DaemonTask.class.isAssignableFrom(handler.getMethod().getReturnType());
+  }
+}
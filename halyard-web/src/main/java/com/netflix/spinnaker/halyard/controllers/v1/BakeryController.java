@@ -49,6 +49,9 @@ public class BakeryController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/defaults/", method = RequestMethod.GET)
   DaemonTask<Halconfig, BakeryDefaults> getBakeryDefaults(@PathVariable String deploymentName, @PathVariable String providerName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -62,7 +65,7 @@ public class BakeryController {
       builder.setValidateResponse(() -> bakeryService.validateBakeryDefaults(deploymentName, providerName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get " + providerName + " bakery defaults");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + providerName + " bakery defaults");
   }
 
   @RequestMapping(value = "/defaults/", method = RequestMethod.PUT)
@@ -105,7 +108,7 @@ public class BakeryController {
       builder.setValidateResponse(() -> bakeryService.validateAllBaseImages(deploymentName, providerName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get " + providerName + " base images");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + providerName + " base images");
   }
 
   @RequestMapping(value = "/defaults/baseImage/{baseImageId:.+}", method = RequestMethod.GET)
@@ -123,7 +126,7 @@ public class BakeryController {
       builder.setValidateResponse(() -> bakeryService.validateBaseImage(deploymentName, providerName, baseImageId));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get " + baseImageId + " base image");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + baseImageId + " base image");
   }
 
   @RequestMapping(value = "/defaults/baseImage/{baseImageId:.+}", method = RequestMethod.DELETE)
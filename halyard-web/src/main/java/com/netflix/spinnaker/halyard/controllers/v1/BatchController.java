@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser;
+import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig;
+import com.netflix.spinnaker.halyard.config.services.v1.DeploymentService;
+import com.netflix.spinnaker.halyard.core.DaemonResponse.UpdateRequestBuilder;
+import com.netflix.spinnaker.halyard.core.problem.v1.Problem.Severity;
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Groups a series of config edits into one transaction. Requests sent with the batch's id in its
+ * header (HalconfigBatch.HEADER) are applied to an in-memory copy of the halconfig, which is validated and written once on commit.
+ */
+@RestController
+@RequestMapping("/v1/batch")
+public class BatchController {
+  @Autowired
+  HalconfigParser halconfigParser;
+
+  @Autowired
+  DeploymentService deploymentService;
+
+  @RequestMapping(value = "/", method = RequestMethod.POST)
+  Map<String, String> openBatch() {
+    return Collections.singletonMap("id", halconfigParser.openBatch());
+  }
+
+  @RequestMapping(value = "/{batchId:.+}/commit/", method = RequestMethod.POST)
+  DaemonTask<Halconfig, Void> commitBatch(@PathVariable String batchId,
+      @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
+      @RequestParam(required = false, defaultValue = DefaultControllerValues.severity) Severity severity) {
+    UpdateRequestBuilder builder = new UpdateRequestBuilder();
+
+    builder.setUpdate(() -> halconfigParser.commitBatch(batchId));
+    builder.setSeverity(severity);
+
+    Supplier<ProblemSet> doValidate = ProblemSet::new;
+    if (validate) {
+      doValidate = () -> deploymentService.validateAllDeployments();
+    }
+
+    builder.setValidate(doValidate);
+    builder.setRevert(() -> halconfigParser.undoChanges());
+    builder.setSave(() -> halconfigParser.saveConfig());
+
+    return DaemonTaskHandler.submitTask(builder::build, "Commit batch");
+  }
+
+  @RequestMapping(value = "/{batchId:.+}/", method = RequestMethod.DELETE)
+  void abortBatch(@PathVariable String batchId, HttpServletResponse response) throws IOException {
+    if (!halconfigParser.abortBatch(batchId)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No open batch with id " + batchId);
+    }
+  }
+}
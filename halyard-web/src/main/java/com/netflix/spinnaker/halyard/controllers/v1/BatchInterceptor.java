@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigBatch;
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Marks requests that carry a batch id, so the halconfig they read and write is the batch's staged copy.
+ */
+@Component
+public class BatchInterceptor extends HandlerInterceptorAdapter {
+  @Autowired
+  HalconfigParser halconfigParser;
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+    String batchId = request.getHeader(HalconfigBatch.HEADER);
+    if (batchId == null) {
+      return true;
+    }
+
+    if (!halconfigParser.hasBatch(batchId)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No open batch with id " + batchId);
+      return false;
+    }
+
+    HalconfigParser.setCurrentBatch(batchId);
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    HalconfigParser.setCurrentBatch(null);
+  }
+}
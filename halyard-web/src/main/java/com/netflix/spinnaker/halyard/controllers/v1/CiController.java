@@ -42,6 +42,9 @@ public class CiController {
   @Autowired
   CiService ciService;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/{ciName:.+}", method = RequestMethod.GET)
   DaemonTask<Halconfig, Ci> ci(
       @PathVariable String deploymentName,
@@ -57,7 +60,7 @@ public class CiController {
       builder.setValidateResponse(() -> ciService.validateCi(deploymentName, ciName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get " + ciName + " ci");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + ciName + " ci");
   }
 
   @RequestMapping(value = "/{ciName:.+}/enabled", method = RequestMethod.PUT)
@@ -97,6 +100,6 @@ public class CiController {
       builder.setValidateResponse(() -> ciService.validateAllCis(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get all Continuous Integration services");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get all Continuous Integration services");
   }
 }
@@ -16,11 +16,11 @@
 
 package com.netflix.spinnaker.halyard.controllers.v1;
 
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser;
 import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig;
 import com.netflix.spinnaker.halyard.config.services.v1.ConfigService;
 import com.netflix.spinnaker.halyard.core.DaemonResponse.StaticRequestBuilder;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
-import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -35,17 +35,32 @@ public class ConfigController {
   @Autowired
   ConfigService configService;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
+  @Autowired
+  HalconfigParser halconfigParser;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, Halconfig> config() {
     StaticRequestBuilder<Halconfig> builder = new StaticRequestBuilder<>();
     builder.setBuildResponse(() -> configService.getConfig());
-    return DaemonTaskHandler.submitTask(builder::build, "Get halconfig");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get halconfig");
   }
 
   @RequestMapping(value = "/currentDeployment", method = RequestMethod.GET)
   DaemonTask<Halconfig, String> currentDeployment() {
     StaticRequestBuilder<String> builder = new StaticRequestBuilder<>();
     builder.setBuildResponse(() -> configService.getCurrentDeployment());
-    return DaemonTaskHandler.submitTask(builder::build, "Get current deployment");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get current deployment");
+  }
+
+  /**
+   * Cheap enough to answer directly, rather than as a task: clients call this to check whether what they read earlier
+   * is still current.
+   */
+  @RequestMapping(value = "/version", method = RequestMethod.GET)
+  String version() {
+    return halconfigParser.getHalconfigVersion();
   }
 }
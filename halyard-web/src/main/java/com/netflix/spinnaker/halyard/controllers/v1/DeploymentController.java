@@ -17,11 +17,12 @@
 package com.netflix.spinnaker.halyard.controllers.v1;
 
 import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser;
+import com.netflix.spinnaker.halyard.config.config.v1.PatchOperation;
 import com.netflix.spinnaker.halyard.config.model.v1.node.DeploymentConfiguration;
 import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig;
 import com.netflix.spinnaker.halyard.config.model.v1.node.NodeDiff;
 import com.netflix.spinnaker.halyard.config.services.v1.DeploymentService;
-import com.netflix.spinnaker.halyard.core.DaemonResponse;
+import com.netflix.spinnaker.halyard.config.services.v1.PatchService;
 import com.netflix.spinnaker.halyard.core.DaemonResponse.StaticRequestBuilder;
 import com.netflix.spinnaker.halyard.core.DaemonResponse.UpdateRequestBuilder;
 import com.netflix.spinnaker.halyard.core.RemoteAction;
@@ -56,8 +57,19 @@ public class DeploymentController {
   @Autowired
   HalconfigParser halconfigParser;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
+  @Autowired
+  PatchService patchService;
+
+  private <T> DaemonTask<Halconfig, T> traced(String deploymentName, DaemonTask<Halconfig, T> task) {
+    task.whenTerminal(t -> deployService.persistTrace(deploymentName, t));
+    return task;
+  }
+
   @RequestMapping(value = "/{deploymentName:.+}", method = RequestMethod.GET)
-  DaemonResponse<DeploymentConfiguration> deploymentConfiguration(@PathVariable String deploymentName,
+  DaemonTask<Halconfig, DeploymentConfiguration> deploymentConfiguration(@PathVariable String deploymentName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.severity) Severity severity) {
     StaticRequestBuilder<DeploymentConfiguration> builder = new StaticRequestBuilder<>();
@@ -69,11 +81,33 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateDeployment(deploymentName));
     }
 
-    return builder.build();
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + deploymentName + " deployment configuration");
+  }
+
+  @RequestMapping(value = "/{deploymentName:.+}", method = RequestMethod.PATCH)
+  DaemonTask<Halconfig, Void> patchDeploymentConfiguration(@PathVariable String deploymentName,
+      @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
+      @RequestParam(required = false, defaultValue = DefaultControllerValues.severity) Severity severity,
+      @RequestBody List<PatchOperation> operations) {
+    UpdateRequestBuilder builder = new UpdateRequestBuilder();
+
+    builder.setUpdate(() -> patchService.patchDeployment(deploymentName, operations));
+    builder.setSeverity(severity);
+
+    Supplier<ProblemSet> doValidate = ProblemSet::new;
+    if (validate) {
+      doValidate = () -> patchService.validatePatch(deploymentName, operations);
+    }
+
+    builder.setValidate(doValidate);
+    builder.setRevert(() -> halconfigParser.undoChanges());
+    builder.setSave(() -> halconfigParser.saveConfig());
+
+    return DaemonTaskHandler.submitTask(builder::build, "Patch " + deploymentName + " deployment configuration");
   }
 
   @RequestMapping(value = "/", method = RequestMethod.GET)
-  DaemonResponse<List<DeploymentConfiguration>> deploymentConfigurations(
+  DaemonTask<Halconfig, List<DeploymentConfiguration>> deploymentConfigurations(
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.severity) Severity severity) {
     StaticRequestBuilder<List<DeploymentConfiguration>> builder = new StaticRequestBuilder<>();
@@ -85,9 +119,10 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateAllDeployments());
     }
 
-    return builder.build();
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get all deployment configurations");
   }
 
+  @DeploymentExclusive
   @RequestMapping(value = "/{deploymentName:.+}/generate/", method = RequestMethod.POST)
   DaemonTask<Halconfig, Void> generateConfig(@PathVariable String deploymentName,
     @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -106,10 +141,11 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateDeployment(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Generate config");
+    return traced(deploymentName, DaemonTaskHandler.submitTask(builder::build, "Generate config"));
   }
 
 
+  @DeploymentExclusive
   @RequestMapping(value = "/{deploymentName:.+}/rollback/", method = RequestMethod.POST)
   DaemonTask<Halconfig, Void> rollback(@PathVariable String deploymentName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -128,9 +164,10 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateDeploymentShallow(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Rollback Spinnaker");
+    return traced(deploymentName, DaemonTaskHandler.submitTask(builder::build, "Rollback Spinnaker"));
   }
 
+  @DeploymentExclusive
   @RequestMapping(value = "/{deploymentName:.+}/deploy/", method = RequestMethod.POST)
   DaemonTask<Halconfig, RemoteAction> deploy(@PathVariable String deploymentName,
     @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -148,7 +185,7 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateDeployment(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Apply deployment");
+    return traced(deploymentName, DaemonTaskHandler.submitTask(builder::build, "Apply deployment"));
   }
 
   @RequestMapping(value = "/{deploymentName:.+}/configDiff/", method = RequestMethod.GET)
@@ -164,7 +201,7 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateDeployment(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Determine config diff");
+    return readTaskCoalescer.submit(builder::build, "Determine config diff");
   }
 
   @RequestMapping(value = "/{deploymentName:.+}/version/", method = RequestMethod.PUT)
@@ -202,7 +239,7 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateDeploymentShallow(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get Spinnaker version");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get Spinnaker version");
   }
 
   @RequestMapping(value = "/{deploymentName:.+}/details/{serviceName:.+}/", method = RequestMethod.GET)
@@ -219,6 +256,6 @@ public class DeploymentController {
       builder.setValidateResponse(() -> deploymentService.validateDeployment(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get running service details");
+    return readTaskCoalescer.submit(builder::build, "Get running service details");
   }
 }
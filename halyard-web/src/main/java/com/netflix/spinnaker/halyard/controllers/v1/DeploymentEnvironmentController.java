@@ -45,6 +45,9 @@ public class DeploymentEnvironmentController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, DeploymentEnvironment> getDeploymentEnvironment(@PathVariable String deploymentName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -53,7 +56,7 @@ public class DeploymentEnvironmentController {
 
     builder.setBuildResponse(() -> deploymentEnvironmentService.getDeploymentEnvironment(deploymentName));
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get the deployment environment");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get the deployment environment");
   }
 
   @RequestMapping(value = "/", method = RequestMethod.PUT)
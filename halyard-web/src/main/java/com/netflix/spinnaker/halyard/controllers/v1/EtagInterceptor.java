@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers a GET whose If-None-Match matches the ETag of its result with a 304 before its handler runs, so the result
+ * isn't computed again. Must run after the BatchInterceptor, since what a request reads depends on its batch.
+ *
+ * @see ReadTaskCoalescer#submitWithEtag
+ * @see EtagAdvice
+ */
+@Component
+public class EtagInterceptor extends HandlerInterceptorAdapter {
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+    if (!HttpMethod.GET.name().equals(request.getMethod())) {
+      return true;
+    }
+
+    String etag = readTaskCoalescer.getEtag(request);
+    if (etag == null) {
+      return true;
+    }
+
+    return !new ServletWebRequest(request, response).checkNotModified(etag);
+  }
+}
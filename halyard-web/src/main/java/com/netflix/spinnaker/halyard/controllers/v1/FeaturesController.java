@@ -44,6 +44,9 @@ public class FeaturesController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, Features> getFeatures(@PathVariable String deploymentName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -52,7 +55,7 @@ public class FeaturesController {
 
     builder.setBuildResponse(() -> featuresService.getFeatures(deploymentName));
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get features");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get features");
   }
 
   @RequestMapping(value = "/", method = RequestMethod.PUT)
@@ -0,0 +1,20 @@
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.netflix.spinnaker.halyard.core.job.v1.JobScheduler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/v1/jobs/")
+public class JobController {
+  /**
+   * Every external command the daemon is running or has queued, oldest first.
+   */
+  @RequestMapping(value = "/", method = RequestMethod.GET)
+  List<JobScheduler.ScheduledJob> getJobs() {
+    return JobScheduler.getJobs();
+  }
+}
@@ -47,6 +47,9 @@ public class MasterController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, List<Master>> masters(@PathVariable String deploymentName, @PathVariable String ciName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -59,7 +62,7 @@ public class MasterController {
       builder.setValidateResponse(() -> masterService.validateAllMasters(deploymentName, ciName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get all masters for " + ciName);
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get all masters for " + ciName);
   }
 
   @RequestMapping(value = "/{masterName:.+}", method = RequestMethod.GET)
@@ -77,7 +80,7 @@ public class MasterController {
       builder.setValidateResponse(() -> masterService.validateMaster(deploymentName, ciName, masterName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get the " + masterName + " master");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get the " + masterName + " master");
   }
 
   @RequestMapping(value = "/{masterName:.+}", method = RequestMethod.DELETE)
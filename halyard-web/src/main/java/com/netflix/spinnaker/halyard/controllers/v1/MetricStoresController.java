@@ -44,6 +44,9 @@ public class MetricStoresController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, MetricStores> getMetricStores(@PathVariable String deploymentName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -57,7 +60,7 @@ public class MetricStoresController {
       builder.setValidateResponse(() -> metricStoresService.validateMetricStores(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get all metric stores");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get all metric stores");
   }
 
   @RequestMapping(value = "/{metricStoreType:.+}", method = RequestMethod.GET)
@@ -74,7 +77,7 @@ public class MetricStoresController {
       builder.setValidateResponse(() -> metricStoresService.validateMetricStore(deploymentName, metricStoreType));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get " + metricStoreType + " metric store");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + metricStoreType + " metric store");
   }
 
   @RequestMapping(value = "/", method = RequestMethod.PUT)
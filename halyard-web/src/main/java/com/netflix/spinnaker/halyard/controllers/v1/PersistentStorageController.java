@@ -44,6 +44,9 @@ public class PersistentStorageController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, PersistentStorage> getPersistentStorage(@PathVariable String deploymentName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -57,7 +60,7 @@ public class PersistentStorageController {
       builder.setValidateResponse(() -> persistentStorageService.validatePersistentStorage(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get storage settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get storage settings");
   }
 
   @RequestMapping(value = "/", method = RequestMethod.PUT)
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.netflix.spectator.api.Measurement;
+import com.netflix.spectator.api.Meter;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.Endpoint;
+import org.springframework.boot.actuate.endpoint.mvc.MvcEndpoint;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Exposes everything in the Spectator registry at /prometheus, in Prometheus' text exposition format. Timers are
+ * broken down by their "statistic" tag (count, totalTime, ...) the same way Spectator measures them.
+ */
+@Component
+public class PrometheusEndpoint implements MvcEndpoint {
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  @Autowired
+  Registry registry;
+
+  @RequestMapping(method = RequestMethod.GET, produces = CONTENT_TYPE)
+  @ResponseBody
+  public String scrape() {
+    StringBuilder result = new StringBuilder();
+    for (Meter meter : registry) {
+      for (Measurement measurement : meter.measure()) {
+        result.append(metricName(measurement.id().name()));
+
+        StringBuilder labels = new StringBuilder();
+        for (Tag tag : measurement.id().tags()) {
+          labels.append(labels.length() == 0 ? "{" : ",")
+              .append(metricName(tag.key()))
+              .append("=\"")
+              .append(labelValue(tag.value()))
+              .append("\"");
+        }
+
+        if (labels.length() > 0) {
+          result.append(labels).append("}");
+        }
+
+        result.append(" ").append(measurement.value()).append("\n");
+      }
+    }
+
+    return result.toString();
+  }
+
+  private static String metricName(String name) {
+    return name.replaceAll("[^a-zA-Z0-9_:]", "_");
+  }
+
+  private static String labelValue(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  @Override
+  public String getPath() {
+    return "/prometheus";
+  }
+
+  @Override
+  public boolean isSensitive() {
+    return false;
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Class<? extends Endpoint> getEndpointType() {
+    return null;
+  }
+}
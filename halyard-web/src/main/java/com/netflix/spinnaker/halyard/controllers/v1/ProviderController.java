@@ -41,6 +41,9 @@ public class ProviderController {
   @Autowired
   ProviderService providerService;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/{providerName:.+}", method = RequestMethod.GET)
   DaemonTask<Halconfig, Provider> provider(
       @PathVariable String deploymentName,
@@ -56,7 +59,7 @@ public class ProviderController {
       builder.setValidateResponse(() -> providerService.validateProvider(deploymentName, providerName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get the " + providerName + " provider");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get the " + providerName + " provider");
   }
 
   @RequestMapping(value = "/{providerName:.+}/enabled", method = RequestMethod.PUT)
@@ -96,6 +99,6 @@ public class ProviderController {
       builder.setValidateResponse(() -> providerService.validateAllProviders(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get all providers");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get all providers");
   }
 }
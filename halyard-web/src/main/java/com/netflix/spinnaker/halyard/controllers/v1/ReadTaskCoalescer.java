@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser;
+import com.netflix.spinnaker.halyard.config.config.v1.StrictObjectMapper;
+import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig;
+import com.netflix.spinnaker.halyard.core.DaemonResponse;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Submits tasks for read-only requests so that identical requests arriving while one is still being computed share
+ * its result. Requests are identical when they have the same method, path and parameters, and the halconfig hasn't
+ * changed in between.
+ */
+@Component
+public class ReadTaskCoalescer {
+  /**
+   * Request attribute holding the ETag of a result computed on the request thread, for the EtagAdvice to send.
+   */
+  static final String ETAG = ReadTaskCoalescer.class.getName() + ".etag";
+
+  private static final int MAX_ETAGS = 1024;
+
+  @Autowired
+  HalconfigParser halconfigParser;
+
+  @Autowired
+  StrictObjectMapper objectMapper;
+
+  private final Map<String, String> etags = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_ETAGS;
+    }
+  });
+
+  public <T> DaemonTask<Halconfig, T> submit(Supplier<DaemonResponse<T>> runner, String name) {
+    return DaemonTaskHandler.submitSharedTask(runner, name, requestKey(currentRequest()));
+  }
+
+  /**
+   * Like submit, for reads whose response is determined by the halconfig alone. Since reading the halconfig is cheap,
+   * a non-validating read is answered on the request thread with a task that has already completed, whether or not it
+   * asked for "sync=true", sparing the client the round trips needed to poll it. Its response is sent a strong ETag,
+   * a hash of the serialized result, which is remembered until the halconfig changes so the EtagInterceptor can answer
+   * a matching conditional read with a 304. Validating reads aren't tagged, since the problems they report depend on
+   * more than the halconfig.
+   */
+  public <T> DaemonTask<Halconfig, T> submitWithEtag(Supplier<DaemonResponse<T>> runner, String name) {
+    HttpServletRequest request = currentRequest();
+    String key = requestKey(request);
+    if (Boolean.parseBoolean(request.getParameter("validate"))) {
+      return DaemonTaskHandler.submitSharedTask(runner, name, key);
+    }
+
+    DaemonTask<Halconfig, T> task = DaemonTaskHandler.runInline(runner, name);
+    DaemonResponse<T> response = task.getResponse();
+    if (task.getState() == DaemonTask.State.SUCCESS && response != null) {
+      String etag = etag(response.getResponseBody());
+      etags.put(key, etag);
+      request.setAttribute(ETAG, etag);
+    }
+
+    return task;
+  }
+
+  /**
+   * @return the ETag of the response to this request as of the current halconfig, or null if it isn't known or the
+   * request validates.
+   */
+  public String getEtag(HttpServletRequest request) {
+    if (Boolean.parseBoolean(request.getParameter("validate"))) {
+      return null;
+    }
+
+    return etags.get(requestKey(request));
+  }
+
+  private String etag(Object body) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(body));
+      StringBuilder result = new StringBuilder("\"");
+      for (byte b : digest) {
+        result.append(String.format("%02x", b));
+      }
+      return result.append("\"").toString();
+    } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+      throw new IllegalStateException("Unable to compute ETag", e);
+    }
+  }
+
+  private static HttpServletRequest currentRequest() {
+    return ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+  }
+
+  private String requestKey(HttpServletRequest request) {
+    Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+
+    StringBuilder key = new StringBuilder()
+        .append(request.getMethod())
+        .append(" ")
+        .append(request.getRequestURI());
+
+    // Whether the client waits for the result doesn't change what it is.
+    parameters.remove("sync");
+    for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+      key.append(" ")
+          .append(parameter.getKey())
+          .append("=")
+          .append(Arrays.toString(parameter.getValue()));
+    }
+
+    return key.append(" @ ").append(halconfigParser.getHalconfigVersion()).toString();
+  }
+}
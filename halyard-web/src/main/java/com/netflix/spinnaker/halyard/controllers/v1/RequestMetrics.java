@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long the daemon spends on each request, and on the tasks requests submit. Everything is tagged by the
+ * controller and method that handled the request, so slowness can be pinned on the HTTP layer (a slow request), task
+ * scheduling (a task that was queued for long) or the work itself (a task that ran for long).
+ */
+@Component
+public class RequestMetrics {
+  static final String REQUESTS = "halyard.requests";
+  static final String TASKS_QUEUED = "halyard.tasks.queued";
+  static final String TASKS_RUN = "halyard.tasks.run";
+
+  @Autowired
+  Registry registry;
+
+  void recordRequest(HandlerMethod handler, int status, long nanos) {
+    registry.timer(REQUESTS,
+        "controller", controller(handler.getMethod()),
+        "method", handler.getMethod().getName(),
+        "status", Integer.toString(status))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records the task's timing once it's terminal. Tasks spawned by the task are recorded along with it, since they're
+   * only complete once it is. A task shared by several requests is recorded against the first of them only.
+   */
+  void recordTask(DaemonTask<?, ?> task, Method handler) {
+    if (!task.claimTimingRecord()) {
+      return;
+    }
+
+    task.whenTerminal(t -> t.consumeTaskTree(c -> recordTask((DaemonTask) c, t, handler)));
+  }
+
+  private void recordTask(DaemonTask task, DaemonTask root, Method handler) {
+    Long submittedAt = task.getSubmittedAt();
+    Long startedAt = task.getStartedAt();
+    Long endedAt = task.getEndedAt();
+    if (startedAt == null || endedAt == null) {
+      return;
+    }
+
+    String[] tags = {
+        "controller", controller(handler),
+        "method", handler.getName(),
+        "state", task.getState().toString(),
+        "child", Boolean.toString(task != root)
+    };
+
+    if (submittedAt != null) {
+      registry.timer(TASKS_QUEUED, tags).record(startedAt - submittedAt, TimeUnit.MILLISECONDS);
+    }
+
+    registry.timer(TASKS_RUN, tags).record(endedAt - startedAt, TimeUnit.MILLISECONDS);
+  }
+
+  private static String controller(Method handler) {
+    return handler.getDeclaringClass().getSimpleName();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times every request handled by a controller. It should be the first interceptor, so requests answered by another
+ * interceptor (e.g. the EtagInterceptor's 304s) are timed too.
+ */
+@Component
+public class RequestMetricsInterceptor extends HandlerInterceptorAdapter {
+  private static final String STARTED_AT = RequestMetricsInterceptor.class.getName() + ".startedAt";
+
+  @Autowired
+  RequestMetrics requestMetrics;
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+    request.setAttribute(STARTED_AT, System.nanoTime());
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    Object startedAt = request.getAttribute(STARTED_AT);
+    if (handler instanceof HandlerMethod && startedAt != null) {
+      requestMetrics.recordRequest((HandlerMethod) handler, response.getStatus(), System.nanoTime() - (Long) startedAt);
+    }
+  }
+}
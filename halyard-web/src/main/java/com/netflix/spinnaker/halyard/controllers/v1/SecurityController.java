@@ -43,6 +43,9 @@ public class SecurityController {
   @Autowired
   ObjectMapper objectMapper;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, Security> getSecurity(@PathVariable String deploymentName,
       @RequestParam(required = false, defaultValue = DefaultControllerValues.validate) boolean validate,
@@ -56,7 +59,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateSecurity(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get all security settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get all security settings");
   }
 
   @RequestMapping(value = "/ui/", method = RequestMethod.GET)
@@ -72,7 +75,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateUiSecurity(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get UI security settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get UI security settings");
   }
 
   @RequestMapping(value = "/ui/", method = RequestMethod.PUT)
@@ -111,7 +114,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateUiSecurity(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get UI SSL settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get UI SSL settings");
   }
 
   @RequestMapping(value = "/ui/ssl/", method = RequestMethod.PUT)
@@ -171,7 +174,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateApiSecurity(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get API security settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get API security settings");
   }
 
   @RequestMapping(value = "/api/", method = RequestMethod.PUT)
@@ -210,7 +213,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateUiSecurity(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get API SSL settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get API SSL settings");
   }
 
   @RequestMapping(value = "/api/ssl/", method = RequestMethod.PUT)
@@ -293,7 +296,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateAuthz(deploymentName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get group membership settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get group membership settings");
   }
 
   @RequestMapping(value = "/authn/{methodName:.+}", method = RequestMethod.GET)
@@ -310,7 +313,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateAuthnMethod(deploymentName, methodName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get authentication settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get authentication settings");
   }
 
   @RequestMapping(value = "/authz/groupMembership/{roleProviderName:.+}", method = RequestMethod.GET)
@@ -327,7 +330,7 @@ public class SecurityController {
       builder.setValidateResponse(() -> securityService.validateRoleProvider(deploymentName, roleProviderName));
     }
 
-    return DaemonTaskHandler.submitTask(builder::build, "Get " + roleProviderName + " group membership settings");
+    return readTaskCoalescer.submitWithEtag(builder::build, "Get " + roleProviderName + " group membership settings");
   }
 
   @RequestMapping(value = "/", method = RequestMethod.PUT)
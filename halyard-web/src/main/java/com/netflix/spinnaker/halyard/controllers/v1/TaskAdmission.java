@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1;
+
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits how many mutating tasks run at once, and lets only one DeploymentExclusive task run per deployment. Requests
+ * that can't be admitted straight away wait for a while, unless too many are waiting already; either way, ones that
+ * still can't be admitted are rejected so the client can retry later.
+ */
+@Slf4j
+@Component
+public class TaskAdmission {
+  static final String QUEUED = "halyard.admission.queued";
+  static final String REJECTED = "halyard.admission.rejected";
+
+  @Value("${halyard.admission.maxMutatingTasks:8}")
+  int maxMutatingTasks;
+
+  @Value("${halyard.admission.maxQueued:16}")
+  int maxQueued;
+
+  @Value("${halyard.admission.queueTimeoutMillis:5000}")
+  long queueTimeoutMillis;
+
+  @Getter
+  @Value("${halyard.admission.retryAfterSeconds:10}")
+  int retryAfterSeconds;
+
+  @Autowired
+  Registry registry;
+
+  private Semaphore mutatingTasks;
+  private final Map<String, Semaphore> deployments = new ConcurrentHashMap<>();
+  private final AtomicInteger queued = new AtomicInteger();
+
+  @PostConstruct
+  void init() {
+    mutatingTasks = new Semaphore(maxMutatingTasks, true);
+    registry.gauge(QUEUED, queued);
+  }
+
+  /**
+   * @param deploymentName is the deployment the task needs to itself, or null if it can share it.
+   * @return a permit to run the task, which must be released once the task is done.
+   * @throws RejectedException if the task can't be admitted in time.
+   */
+  Permit admit(String deploymentName) {
+    if (queued.incrementAndGet() > maxQueued) {
+      queued.decrementAndGet();
+      throw reject("queue", "Too many requests are already waiting to run");
+    }
+
+    Semaphore deployment = deploymentName == null ? null : deployments.computeIfAbsent(deploymentName, k -> new Semaphore(1, true));
+    long deadline = System.currentTimeMillis() + queueTimeoutMillis;
+    try {
+      if (deployment != null && !deployment.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw reject("deployment", "Deployment \"" + deploymentName + "\" is busy with another deploy, generate or rollback");
+      }
+
+      long remaining = Math.max(0, deadline - System.currentTimeMillis());
+      if (!mutatingTasks.tryAcquire(remaining, TimeUnit.MILLISECONDS)) {
+        if (deployment != null) {
+          deployment.release();
+        }
+
+        throw reject("tasks", "Too many tasks that edit the halconfig or deploy are already running");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw reject("interrupted", "Interrupted while waiting to run");
+    } finally {
+      queued.decrementAndGet();
+    }
+
+    return new Permit(deployment);
+  }
+
+  private RejectedException reject(String reason, String message) {
+    registry.counter(REJECTED, "reason", reason).increment();
+    log.info("Rejected request: " + message);
+    return new RejectedException(message);
+  }
+
+  static class RejectedException extends RuntimeException {
+    RejectedException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Held by a request until it returns a task, and by the task from then until it's terminal.
+   */
+  class Permit {
+    private final Semaphore deployment;
+    private final AtomicBoolean released = new AtomicBoolean();
+    @Getter
+    private volatile boolean heldByTask;
+
+    private Permit(Semaphore deployment) {
+      this.deployment = deployment;
+    }
+
+    void holdUntilTerminal(DaemonTask<?, ?> task) {
+      heldByTask = true;
+      task.whenTerminal(t -> release());
+    }
+
+    void release() {
+      if (released.compareAndSet(false, true)) {
+        mutatingTasks.release();
+        if (deployment != null) {
+          deployment.release();
+        }
+      }
+    }
+  }
+}
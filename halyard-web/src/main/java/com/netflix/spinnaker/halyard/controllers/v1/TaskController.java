@@ -1,25 +1,164 @@
 package com.netflix.spinnaker.halyard.controllers.v1;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.spinnaker.halyard.config.model.v1.node.Halconfig;
+import com.netflix.spinnaker.halyard.core.error.v1.HalException;
+import com.netflix.spinnaker.halyard.core.problem.v1.Problem.Severity;
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemBuilder;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskCursor;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskDelta;
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskTrace;
 import com.netflix.spinnaker.halyard.core.tasks.v1.TaskRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @RestController
 @RequestMapping("/v1/tasks/")
 public class TaskController {
+  // How often an idle stream is sent a comment, so both ends notice a dropped connection.
+  private static final long HEARTBEAT_MILLIS = 1000;
+  // Every open stream holds a servlet thread, so a stream ends after this long even if its task hasn't, and the client
+  // reconnects with its cursor. This bounds how long a forgotten client can tie up a thread.
+  private static final long MAX_STREAM_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  @Autowired
+  ObjectMapper objectMapper;
+
   @RequestMapping(value = "/{uuid:.+}/", method = RequestMethod.GET)
   DaemonTask<Halconfig, Void> getTask(@PathVariable String uuid) {
     return TaskRepository.getTask(uuid);
   }
 
+  @RequestMapping(value = "/{uuid:.+}/", method = RequestMethod.DELETE)
+  void cancelTask(@PathVariable String uuid, HttpServletResponse response) throws IOException {
+    if (TaskRepository.cancelTask(uuid) == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No task with id " + uuid);
+    }
+  }
+
+  @RequestMapping(value = "/{uuid:.+}/delta/", method = RequestMethod.GET)
+  DaemonTaskDelta<Void> getTaskDelta(@PathVariable String uuid,
+      @RequestParam(required = false) String since) {
+    checkCursor(since);
+    DaemonTask<Halconfig, Void> task = TaskRepository.getTask(uuid);
+    if (task == null) {
+      return null;
+    }
+
+    return DaemonTaskDelta.since(task, since);
+  }
+
+  /**
+   * Exports the timing of the task and all of its children in the Chrome trace event format. This doesn't release a
+   * terminal task, but the trace is only available as long as the task is: until a client collects its final status,
+   * or the reaper evicts it. Generate, deploy and rollback tasks also leave their trace in the deployment's
+   * history/traces directory.
+   */
+  @RequestMapping(value = "/{uuid:.+}/trace/", method = RequestMethod.GET)
+  Map<String, Object> getTaskTrace(@PathVariable String uuid, HttpServletResponse response) throws IOException {
+    DaemonTask<Halconfig, Void> task = TaskRepository.peekTask(uuid);
+    if (task == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No task with id " + uuid);
+      return null;
+    }
+
+    return DaemonTaskTrace.export(task);
+  }
+
+  /**
+   * Streams task progress as server-sent events. Every "delta" event carries a DaemonTaskDelta with whatever changed
+   * since the previous one, and the stream ends after the delta that reports the task as terminal. A stream also ends
+   * once it has been open for MAX_STREAM_MILLIS, in which case the client resumes with a new stream from its cursor.
+   */
+  @RequestMapping(value = "/{uuid:.+}/stream/", method = RequestMethod.GET)
+  void streamTask(@PathVariable String uuid,
+      @RequestParam(required = false) String since,
+      HttpServletResponse response) throws IOException {
+    checkCursor(since);
+    DaemonTask<Halconfig, Void> task = TaskRepository.getTask(uuid);
+    if (task == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No task with id " + uuid);
+      return;
+    }
+
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter writer = response.getWriter();
+
+    String cursor = since;
+    boolean first = true;
+    long deadline = System.currentTimeMillis() + MAX_STREAM_MILLIS;
+    while (true) {
+      // Read the change count before the task so a change made while computing the delta isn't slept through.
+      long changeCount = task.getChangeCount();
+      DaemonTaskDelta<Void> delta = DaemonTaskDelta.since(task, cursor);
+      boolean terminal = delta.getState().isTerminal();
+
+      if (first || terminal || delta.changedSince(cursor)) {
+        writer.write("event: delta\n");
+        writer.write("data: " + objectMapper.writeValueAsString(delta) + "\n\n");
+        cursor = delta.getCursor();
+        first = false;
+      } else {
+        writer.write(":\n\n");
+      }
+
+      writer.flush();
+      if (writer.checkError()) {
+        log.info("Client stopped streaming task " + task);
+        return;
+      }
+
+      if (terminal) {
+        // Polling a terminal task is what releases it from the repository.
+        TaskRepository.getTask(uuid);
+        return;
+      }
+
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return;
+      }
+
+      try {
+        task.awaitChange(changeCount, Math.min(HEARTBEAT_MILLIS, remaining));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   List<String> getTasks() {
     return TaskRepository.getTasks();
   }
+
+  // Checked before the task is looked up, since polling a terminal task releases it.
+  private static void checkCursor(String since) {
+    try {
+      DaemonTaskCursor.parse(since);
+    } catch (IllegalArgumentException e) {
+      throw new HalException(
+          new ProblemBuilder(Severity.FATAL, "Malformed task cursor \"" + since + "\": " + e.getMessage())
+              .setRemediation("Pass back the cursor from the last delta you received, or leave it out to start over.")
+              .build(),
+          HttpServletResponse.SC_BAD_REQUEST);
+    }
+  }
 }
@@ -22,7 +22,6 @@ import com.netflix.spinnaker.halyard.core.DaemonResponse;
 import com.netflix.spinnaker.halyard.core.registry.v1.BillOfMaterials;
 import com.netflix.spinnaker.halyard.core.registry.v1.Versions;
 import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask;
-import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTaskHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -32,24 +31,27 @@ public class VersionsController {
   @Autowired
   VersionsService versionsService;
 
+  @Autowired
+  ReadTaskCoalescer readTaskCoalescer;
+
   @RequestMapping(value = "/", method = RequestMethod.GET)
   DaemonTask<Halconfig, Versions> config() {
     DaemonResponse.StaticRequestBuilder<Versions> builder = new DaemonResponse.StaticRequestBuilder<>();
     builder.setBuildResponse(() -> versionsService.getVersions());
-    return DaemonTaskHandler.submitTask(builder::build, "Get released versions");
+    return readTaskCoalescer.submit(builder::build, "Get released versions");
   }
 
   @RequestMapping(value = "/latest/", method = RequestMethod.GET)
   DaemonTask<Halconfig, String> latest() {
     DaemonResponse.StaticRequestBuilder<String> builder = new DaemonResponse.StaticRequestBuilder<>();
     builder.setBuildResponse(() -> versionsService.getLatest());
-    return DaemonTaskHandler.submitTask(builder::build, "Get latest released version");
+    return readTaskCoalescer.submit(builder::build, "Get latest released version");
   }
 
   @RequestMapping(value = "/bom/{version:.+}", method = RequestMethod.GET)
   DaemonTask<Halconfig, BillOfMaterials> bom(@PathVariable String version) {
     DaemonResponse.StaticRequestBuilder<BillOfMaterials> builder = new DaemonResponse.StaticRequestBuilder<>();
     builder.setBuildResponse(() -> versionsService.getBillOfMaterials(version));
-    return DaemonTaskHandler.submitTask(builder::build, "Get BOM for " + version);
+    return readTaskCoalescer.submit(builder::build, "Get BOM for " + version);
   }
 }
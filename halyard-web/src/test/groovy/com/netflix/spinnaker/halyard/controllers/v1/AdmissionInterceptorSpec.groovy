@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spinnaker.halyard.core.DaemonResponse
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask
+import com.netflix.spinnaker.halyard.core.tasks.v1.TaskRepository
+import org.springframework.http.server.ServletServerHttpRequest
+import org.springframework.web.method.HandlerMethod
+import org.springframework.web.servlet.HandlerMapping
+import spock.lang.Specification
+
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+import java.util.concurrent.CountDownLatch
+
+class AdmissionInterceptorSpec extends Specification {
+  DefaultRegistry registry = new DefaultRegistry()
+  TaskAdmission admission
+  AdmissionInterceptor interceptor
+  CountDownLatch finish = new CountDownLatch(1)
+
+  void setup() {
+    admission = new TaskAdmission(
+        maxMutatingTasks: 2,
+        maxQueued: 16,
+        queueTimeoutMillis: 50,
+        retryAfterSeconds: 7,
+        registry: registry)
+    admission.init()
+    interceptor = new AdmissionInterceptor(taskAdmission: admission)
+  }
+
+  void cleanup() {
+    finish.countDown()
+  }
+
+  void "a request is rejected with a 429 and Retry-After once too many are queued"() {
+    setup:
+    admission.maxQueued = 0
+    def response = Mock(HttpServletResponse)
+
+    when:
+    def proceed = interceptor.preHandle(request("edit"), response, handler("edit"))
+
+    then:
+    !proceed
+    1 * response.setHeader("Retry-After", "7")
+    1 * response.sendError(429, _)
+    registry.counter(TaskAdmission.REJECTED, "reason", "queue").count() == 1
+  }
+
+  void "a request is rejected once it has waited too long for a mutating task to finish"() {
+    setup:
+    2.times { admit("edit") }
+    def response = Mock(HttpServletResponse)
+
+    when:
+    def proceed = interceptor.preHandle(request("edit"), response, handler("edit"))
+
+    then:
+    !proceed
+    1 * response.setHeader("Retry-After", "7")
+    1 * response.sendError(429, _)
+    registry.counter(TaskAdmission.REJECTED, "reason", "tasks").count() == 1
+  }
+
+  void "only one deployment exclusive task runs per deployment"() {
+    setup:
+    admit("deploy", "first")
+    def response = Mock(HttpServletResponse)
+
+    when:
+    def proceed = interceptor.preHandle(request("deploy", "first"), response, handler("deploy"))
+
+    then:
+    !proceed
+    1 * response.sendError(429, _)
+    registry.counter(TaskAdmission.REJECTED, "reason", "deployment").count() == 1
+
+    when:
+    proceed = interceptor.preHandle(request("deploy", "second"), Mock(HttpServletResponse), handler("deploy"))
+
+    then:
+    proceed
+  }
+
+  void "reads and requests that don't submit a task aren't admitted"() {
+    setup:
+    2.times { admit("edit") }
+
+    expect:
+    interceptor.preHandle(request("edit", null, "GET"), Mock(HttpServletResponse), handler("edit"))
+    interceptor.preHandle(request("abort"), Mock(HttpServletResponse), handler("abort"))
+  }
+
+  void "the permit is released after the request if it returned no task"() {
+    setup:
+    def first = admit("deploy", "first")
+
+    when:
+    interceptor.afterCompletion(first, Mock(HttpServletResponse), handler("deploy"), null)
+
+    then:
+    interceptor.preHandle(request("deploy", "first"), Mock(HttpServletResponse), handler("deploy"))
+  }
+
+  void "the permit is held by the returned task until it is terminal"() {
+    setup:
+    def first = admit("deploy", "first")
+    DaemonTask task = TaskRepository.submitTask({
+      finish.await()
+      return new DaemonResponse<>(null, new ProblemSet())
+    }, "Deploy")
+
+    def terminal = new CountDownLatch(1)
+
+    when:
+    new AdmissionAdvice().beforeBodyWrite(task, null, null, null, new ServletServerHttpRequest(first), null)
+    // Terminal listeners run in order, so this one runs after the permit's.
+    task.whenTerminal { terminal.countDown() }
+    interceptor.afterCompletion(first, Mock(HttpServletResponse), handler("deploy"), null)
+
+    then:
+    !interceptor.preHandle(request("deploy", "first"), Mock(HttpServletResponse), handler("deploy"))
+
+    when:
+    finish.countDown()
+    terminal.await()
+
+    then:
+    interceptor.preHandle(request("deploy", "first"), Mock(HttpServletResponse), handler("deploy"))
+  }
+
+  private HttpServletRequest admit(String method, String deploymentName = null) {
+    def request = request(method, deploymentName)
+    assert interceptor.preHandle(request, Mock(HttpServletResponse), handler(method))
+    return request
+  }
+
+  private HttpServletRequest request(String method, String deploymentName = null, String httpMethod = "POST") {
+    Map<String, Object> attributes = [(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE): [deploymentName: deploymentName]]
+    return Stub(HttpServletRequest) {
+      getMethod() >> httpMethod
+      setAttribute(_, _) >> { String name, Object value -> attributes[name] = value }
+      getAttribute(_) >> { String name -> attributes[name] }
+    }
+  }
+
+  private static HandlerMethod handler(String method) {
+    return new HandlerMethod(new TestController(), TestController.getDeclaredMethods().find { it.name == method })
+  }
+
+  static class TestController {
+    @DeploymentExclusive
+    DaemonTask deploy() { null }
+
+    DaemonTask edit() { null }
+
+    void abort() { }
+  }
+}
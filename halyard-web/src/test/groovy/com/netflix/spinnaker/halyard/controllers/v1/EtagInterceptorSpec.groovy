@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1
+
+import com.netflix.spinnaker.halyard.config.config.v1.HalconfigParser
+import com.netflix.spinnaker.halyard.config.config.v1.StrictObjectMapper
+import com.netflix.spinnaker.halyard.core.DaemonResponse
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet
+import org.springframework.web.context.request.RequestContextHolder
+import org.springframework.web.context.request.ServletRequestAttributes
+import spock.lang.Specification
+
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+
+import java.security.MessageDigest
+
+class EtagInterceptorSpec extends Specification {
+  String halconfigVersion = "1"
+  int reads = 0
+  ReadTaskCoalescer coalescer
+  EtagInterceptor interceptor
+
+  void setup() {
+    def parser = Mock(HalconfigParser)
+    parser.getHalconfigVersion() >> { halconfigVersion }
+
+    coalescer = new ReadTaskCoalescer()
+    coalescer.halconfigParser = parser
+    coalescer.objectMapper = new StrictObjectMapper()
+
+    interceptor = new EtagInterceptor()
+    interceptor.readTaskCoalescer = coalescer
+  }
+
+  void cleanup() {
+    RequestContextHolder.resetRequestAttributes()
+  }
+
+  void "a read is sent a strong ETag of its serialized result"() {
+    when:
+    def request = read([sync: "true"])
+
+    then:
+    reads == 1
+    request.getAttribute(ReadTaskCoalescer.ETAG) == '"' + sha256(new StrictObjectMapper().writeValueAsBytes("body")) + '"'
+    coalescer.getEtag(request([sync: "true"])) == request.getAttribute(ReadTaskCoalescer.ETAG)
+  }
+
+  void "reads are tagged whether or not they are synchronous"() {
+    when:
+    def async = read([:])
+    def sync = read([sync: "true"])
+
+    then:
+    reads == 2
+    async.getAttribute(ReadTaskCoalescer.ETAG) != null
+    async.getAttribute(ReadTaskCoalescer.ETAG) == sync.getAttribute(ReadTaskCoalescer.ETAG)
+    coalescer.getEtag(request([:])) == async.getAttribute(ReadTaskCoalescer.ETAG)
+  }
+
+  void "a matching conditional read is answered with a 304 without computing the result"() {
+    setup:
+    String etag = read(parameters).getAttribute(ReadTaskCoalescer.ETAG)
+    def response = Mock(HttpServletResponse)
+    response.getStatus() >> 200
+
+    when:
+    def proceed = interceptor.preHandle(request(parameters, etag), response, null)
+
+    then:
+    !proceed
+    1 * response.setStatus(HttpServletResponse.SC_NOT_MODIFIED)
+    reads == 1
+
+    where:
+    parameters << [[sync: "true"], [:]]
+  }
+
+  void "a stale conditional read runs its handler"() {
+    setup:
+    read([:])
+    def response = Mock(HttpServletResponse)
+    response.getStatus() >> 200
+
+    when:
+    def proceed = interceptor.preHandle(request([:], '"stale"'), response, null)
+
+    then:
+    proceed
+    0 * response.setStatus(HttpServletResponse.SC_NOT_MODIFIED)
+  }
+
+  void "validating reads are never tagged"() {
+    when:
+    def request = request([sync: "true", validate: "true"])
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request))
+    coalescer.submitWithEtag({ reads++; new DaemonResponse<>("body", new ProblemSet()) }, "read")
+
+    then:
+    request.getAttribute(ReadTaskCoalescer.ETAG) == null
+    coalescer.getEtag(request) == null
+  }
+
+  void "changing the halconfig invalidates the ETag"() {
+    setup:
+    String etag = read([sync: "true"]).getAttribute(ReadTaskCoalescer.ETAG)
+    def response = Mock(HttpServletResponse)
+    response.getStatus() >> 200
+
+    when:
+    halconfigVersion = "2"
+    def proceed = interceptor.preHandle(request([sync: "true"], etag), response, null)
+
+    then:
+    proceed
+    coalescer.getEtag(request([sync: "true"])) == null
+    0 * response.setStatus(HttpServletResponse.SC_NOT_MODIFIED)
+
+    when:
+    read([sync: "true"])
+
+    then:
+    reads == 2
+    coalescer.getEtag(request([sync: "true"])) == etag
+  }
+
+  private HttpServletRequest read(Map<String, String> parameters) {
+    def request = request(parameters)
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request))
+    coalescer.submitWithEtag({ reads++; new DaemonResponse<>("body", new ProblemSet()) }, "read")
+    return request
+  }
+
+  private static String sha256(byte[] bytes) {
+    return MessageDigest.getInstance("SHA-256").digest(bytes).collect { String.format("%02x", it) }.join()
+  }
+
+  private HttpServletRequest request(Map<String, String> parameters, String ifNoneMatch = null) {
+    Map<String, Object> attributes = [:]
+    return Stub(HttpServletRequest) {
+      getMethod() >> "GET"
+      getRequestURI() >> "/v1/config/deployments/default/features/"
+      getParameter(_) >> { String name -> parameters[name] }
+      getParameterMap() >> parameters.collectEntries { k, v -> [(k): [v] as String[]] }
+      getHeader("If-None-Match") >> ifNoneMatch
+      setAttribute(_, _) >> { String name, Object value -> attributes[name] = value }
+      getAttribute(_) >> { String name -> attributes[name] }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1
+
+import com.netflix.spectator.api.DefaultRegistry
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class PrometheusEndpointSpec extends Specification {
+  DefaultRegistry registry = new DefaultRegistry()
+  PrometheusEndpoint endpoint = new PrometheusEndpoint(registry: registry)
+
+  void "meter names and tag keys are sanitized and tag values escaped"() {
+    setup:
+    registry.counter("profileCache.hits", "cache-name", 'say "hi"\\\n').increment()
+
+    when:
+    def line = endpoint.scrape().readLines().find { it.startsWith("profileCache_hits{") }
+
+    then:
+    line.contains('cache_name="say \\"hi\\"\\\\\\n"')
+    line.endsWith(" 1.0")
+  }
+
+  void "meters without tags have no label set"() {
+    setup:
+    registry.counter("halyard.admission.rejected").increment(2)
+
+    expect:
+    endpoint.scrape().readLines().contains("halyard_admission_rejected 2.0")
+  }
+
+  void "timers are broken down by statistic"() {
+    setup:
+    registry.timer("halyard.requests", "method", "read").record(5, TimeUnit.MILLISECONDS)
+
+    when:
+    def lines = endpoint.scrape().readLines().findAll { it.startsWith("halyard_requests{") }
+
+    then:
+    lines.any { it.contains('statistic="count"') && it.endsWith(" 1.0") }
+    lines.every { it.contains('method="read"') }
+  }
+}
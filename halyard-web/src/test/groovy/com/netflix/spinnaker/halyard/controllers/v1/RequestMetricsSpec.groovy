@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spinnaker.halyard.core.DaemonResponse
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet
+import com.netflix.spinnaker.halyard.core.tasks.v1.TaskRepository
+import org.springframework.web.method.HandlerMethod
+import spock.lang.Specification
+
+import java.lang.reflect.Method
+
+class RequestMetricsSpec extends Specification {
+  DefaultRegistry registry = new DefaultRegistry()
+  RequestMetrics metrics = new RequestMetrics(registry: registry)
+  Method handler = TestController.getDeclaredMethod("read")
+
+  void "requests are timed by controller, method and status"() {
+    when:
+    metrics.recordRequest(new HandlerMethod(new TestController(), handler), 200, 1000000)
+    metrics.recordRequest(new HandlerMethod(new TestController(), handler), 200, 3000000)
+
+    then:
+    def timer = registry.timer(RequestMetrics.REQUESTS, "controller", "TestController", "method", "read", "status", "200")
+    timer.count() == 2
+    timer.totalTime() == 4000000
+  }
+
+  void "a terminal task's queue and run time are recorded"() {
+    setup:
+    def task = TaskRepository.runInline({ new DaemonResponse<>("body", new ProblemSet()) }, "read")
+
+    when:
+    metrics.recordTask(task, handler)
+
+    then:
+    runTimer().count() == 1
+  }
+
+  void "a task returned to several requests is only recorded once"() {
+    setup:
+    def task = TaskRepository.runInline({ new DaemonResponse<>("body", new ProblemSet()) }, "read")
+
+    when:
+    3.times { metrics.recordTask(task, handler) }
+
+    then:
+    runTimer().count() == 1
+  }
+
+  private def runTimer() {
+    return registry.timer(RequestMetrics.TASKS_RUN,
+        "controller", "TestController",
+        "method", "read",
+        "state", "SUCCESS",
+        "child", "false")
+  }
+
+  static class TestController {
+    void read() { }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.halyard.controllers.v1
+
+import com.netflix.spinnaker.halyard.core.DaemonResponse
+import com.netflix.spinnaker.halyard.core.error.v1.HalException
+import com.netflix.spinnaker.halyard.core.problem.v1.ProblemSet
+import com.netflix.spinnaker.halyard.core.tasks.v1.DaemonTask
+import com.netflix.spinnaker.halyard.core.tasks.v1.TaskRepository
+import com.netflix.spinnaker.halyard.errors.v1.HalconfigExceptionHandler
+import spock.lang.Specification
+
+import javax.servlet.http.HttpServletResponse
+
+class TaskControllerSpec extends Specification {
+  TaskController controller = new TaskController()
+
+  void cleanup() {
+    TaskRepository.tasks.clear()
+  }
+
+  void "a malformed cursor is rejected as a bad request without releasing the task"() {
+    setup:
+    DaemonTask task = TaskRepository.submitTask({ new DaemonResponse<>(null, new ProblemSet()) }, "Done")
+    while (!task.state.terminal) {
+      sleep(10)
+    }
+
+    when:
+    controller.getTaskDelta(task.uuid, cursor)
+
+    then:
+    HalException e = thrown()
+    e.responseCode == HttpServletResponse.SC_BAD_REQUEST
+    e.problems.problems[0].remediation != null
+    TaskRepository.tasks.containsKey(task.uuid)
+
+    when:
+    def response = Mock(HttpServletResponse)
+    new HalconfigExceptionHandler().handleHalconfigException(response, e)
+
+    then:
+    1 * response.setStatus(HttpServletResponse.SC_BAD_REQUEST)
+
+    where:
+    cursor << ["not-a-cursor", "uuid:1:x", "uuid:1"]
+  }
+
+  void "a well formed cursor is accepted"() {
+    setup:
+    DaemonTask task = TaskRepository.submitTask({ new DaemonResponse<>(null, new ProblemSet()) }, "Done")
+    while (!task.state.terminal) {
+      sleep(10)
+    }
+
+    expect:
+    controller.getTaskDelta(task.uuid, task.uuid + ":0:-1").uuid == task.uuid
+  }
+}